@@ -0,0 +1,107 @@
+package main;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scoring an array of random hands and starter cards with
+ * {@code HandScorer.scoreAll}, one hand at a time with each scorer and at once
+ * with {@code BatchScorer}
+ *
+ * <p>
+ * {@code BatchScorer} only uses its Vector API kernel if the benchmark runs
+ * with {@code -jvmArgsAppend --add-modules=jdk.incubator.vector}. The
+ * {@code scalar} benchmarks always use the scalar kernel
+ *
+ * @author Reid Moffat
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchScoringBenchmark {
+
+	/**
+	 * The number of hands scored by each call
+	 */
+	private static final int HANDS = 4096;
+
+	private final long[] hands = new long[HANDS];
+
+	private final int[] starters = new int[HANDS];
+
+	private final int[] points = new int[HANDS];
+
+	private final byte[] bytePoints = new byte[HANDS];
+
+	@Setup
+	public void setUp() {
+		/* The same hands are used for every trial */
+		Random random = new Random(HANDS);
+		for (int i = 0; i < HANDS; i++) {
+			long cards = 0;
+			while (Long.bitCount(cards) < 5) {
+				cards |= 1L << random.nextInt(CardMask.DECK_SIZE);
+			}
+			this.starters[i] = Long.numberOfTrailingZeros(Long.highestOneBit(cards));
+			this.hands[i] = cards & ~(1L << this.starters[i]);
+		}
+	}
+
+	@Benchmark
+	public int[] bitmaskScore() {
+		HandScorer scorer = BitmaskHand::score;
+		scorer.scoreAll(this.hands, this.starters, this.points, 0, HANDS);
+		return this.points;
+	}
+
+	@Benchmark
+	public int[] rankTable() {
+		RankScoreTable.INSTANCE.scoreAll(this.hands, this.starters, this.points, 0, HANDS);
+		return this.points;
+	}
+
+	@Benchmark
+	public int[] batch() {
+		BatchScorer.INSTANCE.scoreAll(this.hands, this.starters, this.points, 0, HANDS);
+		return this.points;
+	}
+
+	@Benchmark
+	public int[] scalar() {
+		BatchScorer.SCALAR.scoreAll(this.hands, this.starters, this.points, 0, HANDS);
+		return this.points;
+	}
+
+	@Benchmark
+	public byte[] batchBytes() {
+		BatchScorer.INSTANCE.scoreAll(this.hands, this.starters, this.bytePoints, 0, HANDS);
+		return this.bytePoints;
+	}
+
+	@Benchmark
+	public int[] batchCribs() {
+		BatchScorer.INSTANCE.scoreAllCribs(this.hands, this.starters, this.points, 0, HANDS);
+		return this.points;
+	}
+
+	@Benchmark
+	public int[] scalarCribs() {
+		BatchScorer.SCALAR.scoreAllCribs(this.hands, this.starters, this.points, 0, HANDS);
+		return this.points;
+	}
+
+}
@@ -0,0 +1,111 @@
+package main;
+
+import java.util.HashSet;
+
+import card.Card;
+
+/**
+ * Named hands used by the benchmarks, written in the same notation the user
+ * enters cards in (see {@code UserInterface.checkValidCard})
+ * 
+ * @author Reid Moffat
+ */
+final class BenchmarkHands {
+
+	/**
+	 * This class only contains static methods and should not be initialized
+	 */
+	private BenchmarkHands() {
+	}
+
+	/**
+	 * Returns the four card hand and starter card (the last card) with a given
+	 * name
+	 * 
+	 * <ul>
+	 * <li>{@code twenty-nine}: the highest scoring hand</li>
+	 * <li>{@code double-double-run}: four runs of three and two pairs</li>
+	 * <li>{@code flush}: a five card flush</li>
+	 * <li>{@code sparse}: a hand with almost no points</li>
+	 * </ul>
+	 * 
+	 * @param name the name of the hand
+	 * @return the hand's cards, with the starter card last
+	 */
+	static String scored(String name) {
+		switch (name) {
+		case "twenty-nine":
+			return "5C 5D 5H JS 5S";
+		case "double-double-run":
+			return "3C 3D 4H 4S 5C";
+		case "flush":
+			return "2H 4H 8H QH 1H";
+		case "sparse":
+			return "1C 3D 9H QS 7C";
+		default:
+			throw new IllegalArgumentException("unknown hand " + name);
+		}
+	}
+
+	/**
+	 * Returns the dealt hand with a given name
+	 * 
+	 * <ul>
+	 * <li>{@code twenty-nine}: can keep the cards for the 29 hand</li>
+	 * <li>{@code multi-run}: overlapping runs with pairs</li>
+	 * <li>{@code sparse}: cards with few combinations</li>
+	 * </ul>
+	 * 
+	 * @param name  the name of the hand
+	 * @param cards the number of cards dealt (5 or 6)
+	 * @return the dealt cards
+	 */
+	static String dealt(String name, int cards) {
+		String hand;
+		switch (name) {
+		case "twenty-nine":
+			hand = "5C 5D 5H JS KC 9D";
+			break;
+		case "multi-run":
+			hand = "3C 3D 4H 4S 5C 6D";
+			break;
+		case "sparse":
+			hand = "1C 3D 7H 9S JC KD";
+			break;
+		default:
+			throw new IllegalArgumentException("unknown hand " + name);
+		}
+		return cards == 6 ? hand : hand.substring(0, hand.lastIndexOf(' '));
+	}
+
+	/**
+	 * Parses a space separated list of cards
+	 * 
+	 * @param hand the cards, for example {@code "5C 10D JS"}
+	 * @return the cards in order
+	 */
+	static Card[] parse(String hand) {
+		String[] names = hand.split(" ");
+		Card[] cards = new Card[names.length];
+		for (int i = 0; i < names.length; i++) {
+			cards[i] = UserInterface.checkValidCard(names[i]);
+		}
+		return cards;
+	}
+
+	/**
+	 * Returns a set of the first {@code count} cards
+	 * 
+	 * @param cards an array of {@code Card} objects
+	 * @param count the number of cards to include
+	 * @return a {@code HashSet} of the first {@code count} cards
+	 */
+	static HashSet<Card> set(Card[] cards, int count) {
+		HashSet<Card> set = new HashSet<Card>();
+		for (int i = 0; i < count; i++) {
+			set.add(cards[i]);
+		}
+		return set;
+	}
+
+}
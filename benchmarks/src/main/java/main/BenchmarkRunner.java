@@ -0,0 +1,40 @@
+package main;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate is reported
+ * alongside throughput and latency
+ * 
+ * <p>
+ * Accepts the same options as the JMH command line, for example a regular
+ * expression to only run some benchmarks
+ * 
+ * @author Reid Moffat
+ */
+public final class BenchmarkRunner {
+
+	/**
+	 * This class only contains static methods and should not be initialized
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Runs the benchmarks
+	 * 
+	 * @param args JMH command line options
+	 * @throws CommandLineOptionException if an option is invalid
+	 * @throws RunnerException            if a benchmark fails
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build())
+				.run();
+	}
+
+}
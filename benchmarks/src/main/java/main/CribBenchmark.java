@@ -0,0 +1,63 @@
+package main;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import card.Card;
+
+/**
+ * Measures the discard analysis of a six card deal including the expected
+ * points in the crib, which scores 45,540 cribs for each discard
+ * 
+ * @author Reid Moffat
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CribBenchmark {
+
+	/**
+	 * The name of the dealt hand (see {@code BenchmarkHands.dealt})
+	 */
+	@Param({ "twenty-nine", "multi-run" })
+	public String hand;
+
+	/**
+	 * The scorer used by the analyzer (see {@code ScoringMode})
+	 */
+	@Param({ "bitmask", "rank-table", "batch" })
+	public String scoring;
+
+	private long dealt;
+
+	private DiscardAnalyzer analyzer;
+
+	@Setup
+	public void setUp() throws IOException {
+		Card[] cards = BenchmarkHands.parse(BenchmarkHands.dealt(this.hand, 6));
+		this.dealt = CardMask.mask(BenchmarkHands.set(cards, 6));
+		this.analyzer = new DiscardAnalyzer(ScoringMode.fromName(this.scoring).scorer());
+	}
+
+	@Benchmark
+	public List<DiscardResult> analyzeWithCrib() {
+		return this.analyzer.analyze(this.dealt, true);
+	}
+
+}
@@ -0,0 +1,80 @@
+package main;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import card.Card;
+
+/**
+ * Measures the full discard analysis of a dealt hand: six cards (two players)
+ * dropping two, and five cards (three or four players) dropping one. The
+ * {@code best} benchmark finds only the best discard with
+ * {@code DiscardAnalyzer.best}
+ * 
+ * <p>
+ * {@code LegacyDiscardBenchmark} measures the same analysis done with
+ * {@code CribbageHand}
+ * 
+ * @author Reid Moffat
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiscardBenchmark {
+
+	/**
+	 * The name of the dealt hand (see {@code BenchmarkHands.dealt})
+	 */
+	@Param({ "twenty-nine", "multi-run", "sparse" })
+	public String hand;
+
+	/**
+	 * The number of cards dealt
+	 */
+	@Param({ "6", "5" })
+	public int cards;
+
+	/**
+	 * The scorer used by the analyzer (see {@code ScoringMode})
+	 */
+	@Param({ "bitmask", "rank-table", "batch" })
+	public String scoring;
+
+	private long dealt;
+
+	private DiscardAnalyzer analyzer;
+
+	@Setup
+	public void setUp() throws IOException {
+		Card[] dealtCards = BenchmarkHands.parse(BenchmarkHands.dealt(this.hand, this.cards));
+		this.dealt = CardMask.mask(BenchmarkHands.set(dealtCards, this.cards));
+		this.analyzer = new DiscardAnalyzer(ScoringMode.fromName(this.scoring).scorer());
+	}
+
+	@Benchmark
+	public List<DiscardResult> analyze() {
+		return this.analyzer.analyze(this.dealt);
+	}
+
+	@Benchmark
+	public List<DiscardResult> best() {
+		return this.analyzer.best(this.dealt, 1);
+	}
+
+}
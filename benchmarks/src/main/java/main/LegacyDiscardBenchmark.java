@@ -0,0 +1,85 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import card.Card;
+
+/**
+ * Measures the original discard analysis, which removes the dropped cards from
+ * a {@code CribbageHand} and scores it against every other card in the deck
+ * 
+ * @author Reid Moffat
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LegacyDiscardBenchmark {
+
+	/**
+	 * The name of the dealt hand (see {@code BenchmarkHands.dealt})
+	 */
+	@Param({ "twenty-nine", "multi-run", "sparse" })
+	public String hand;
+
+	/**
+	 * The number of cards dealt
+	 */
+	@Param({ "6", "5" })
+	public int cards;
+
+	private HashSet<Card> dealtSet;
+
+	private long dealt;
+
+	@Setup
+	public void setUp() {
+		this.dealtSet = BenchmarkHands.set(BenchmarkHands.parse(BenchmarkHands.dealt(this.hand, this.cards)),
+				this.cards);
+		this.dealt = CardMask.mask(this.dealtSet);
+	}
+
+	@Benchmark
+	public List<Integer> legacy() {
+		CribbageHand hand = new CribbageHand(new HashSet<Card>(this.dealtSet));
+		List<Integer> totals = new ArrayList<Integer>();
+		for (long discard : DiscardAnalyzer.discards(this.dealt)) {
+			HashSet<Card> dropped = CardMask.cards(discard);
+			for (Card card : dropped) {
+				hand.remove(card);
+			}
+
+			int total = 0;
+			for (int index = 0; index < CardMask.DECK_SIZE; index++) {
+				Card starter = CardMask.card(index);
+				if (!this.dealtSet.contains(starter)) {
+					total += hand.totalPoints(starter);
+				}
+			}
+			totals.add(total);
+
+			for (Card card : dropped) {
+				hand.add(card);
+			}
+		}
+		return totals;
+	}
+
+}
@@ -0,0 +1,73 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import card.Card;
+
+/**
+ * Measures solving the play for a kept hand, and for every discard of a six
+ * card deal
+ * 
+ * @author Reid Moffat
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeggingBenchmark {
+
+	/**
+	 * The name of the dealt hand, of which the first four cards are kept (see
+	 * {@code BenchmarkHands.dealt})
+	 */
+	@Param({ "twenty-nine", "multi-run", "sparse" })
+	public String hand;
+
+	/**
+	 * True if the player is the dealer
+	 */
+	@Param({ "false", "true" })
+	public boolean dealer;
+
+	private long dealt;
+
+	private long kept;
+
+	private PeggingSolver solver;
+
+	private DiscardAnalyzer analyzer;
+
+	@Setup
+	public void setUp() {
+		Card[] cards = BenchmarkHands.parse(BenchmarkHands.dealt(this.hand, 6));
+		this.dealt = CardMask.mask(BenchmarkHands.set(cards, 6));
+		this.kept = CardMask.mask(BenchmarkHands.set(cards, 4));
+		this.solver = new PeggingSolver();
+		this.analyzer = new DiscardAnalyzer(RankScoreTable.INSTANCE);
+	}
+
+	@Benchmark
+	public double keptHand() {
+		return this.solver.expectedPoints(this.kept, this.dealt & ~this.kept, this.dealer);
+	}
+
+	@Benchmark
+	public double[] everyDiscard() {
+		return this.analyzer.peggingPoints(this.dealt, this.dealer);
+	}
+
+}
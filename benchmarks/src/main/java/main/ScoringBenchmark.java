@@ -0,0 +1,101 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import card.Card;
+
+/**
+ * Measures scoring a single hand and starter card with each scorer
+ * 
+ * @author Reid Moffat
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+	/**
+	 * The name of the hand being scored (see {@code BenchmarkHands.scored})
+	 */
+	@Param({ "twenty-nine", "double-double-run", "flush", "sparse" })
+	public String hand;
+
+	private CribbageHand cribbageHand;
+
+	private BitmaskHand bitmaskHand;
+
+	private Card starter;
+
+	private long mask;
+
+	private int starterIndex;
+
+	private Path tablePath;
+
+	private ScoreTable fullTable;
+
+	@Setup
+	public void setUp() throws IOException {
+		Card[] cards = BenchmarkHands.parse(BenchmarkHands.scored(this.hand));
+		this.cribbageHand = new CribbageHand(BenchmarkHands.set(cards, 4));
+		this.bitmaskHand = new BitmaskHand(BenchmarkHands.set(cards, 4));
+		this.starter = cards[4];
+		this.mask = CardMask.mask(BenchmarkHands.set(cards, 4));
+		this.starterIndex = CardMask.index(this.starter);
+
+		/* The full table is generated into a temporary file for each trial */
+		this.tablePath = Files.createTempFile("hand-scores", ".dat");
+		Files.delete(this.tablePath);
+		this.fullTable = ScoreTable.open(this.tablePath);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.tablePath);
+	}
+
+	@Benchmark
+	public int cribbageHand() {
+		return this.cribbageHand.totalPoints(this.starter);
+	}
+
+	@Benchmark
+	public int bitmaskHand() {
+		return this.bitmaskHand.totalPoints(this.starter);
+	}
+
+	@Benchmark
+	public int bitmaskScore() {
+		return BitmaskHand.score(this.mask, this.starterIndex);
+	}
+
+	@Benchmark
+	public int rankTable() {
+		return RankScoreTable.INSTANCE.score(this.mask, this.starterIndex);
+	}
+
+	@Benchmark
+	public int fullTable() {
+		return this.fullTable.score(this.mask, this.starterIndex);
+	}
+
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import card.Card;
+
+/**
+ * Measures scoring a kept hand against all 46 starter cards left after a six
+ * card deal, one starter at a time and with {@code HandScorer.sweep}
+ * 
+ * @author Reid Moffat
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StarterSweepBenchmark {
+
+	/**
+	 * The name of the dealt hand, of which the first four cards are kept (see
+	 * {@code BenchmarkHands.dealt})
+	 */
+	@Param({ "twenty-nine", "multi-run", "sparse" })
+	public String hand;
+
+	private CribbageHand cribbageHand;
+
+	private Card[] starterCards;
+
+	private long kept;
+
+	private long starters;
+
+	private Path tablePath;
+
+	private ScoreTable fullTable;
+
+	@Setup
+	public void setUp() throws IOException {
+		Card[] cards = BenchmarkHands.parse(BenchmarkHands.dealt(this.hand, 6));
+		this.cribbageHand = new CribbageHand(BenchmarkHands.set(cards, 4));
+		this.kept = CardMask.mask(BenchmarkHands.set(cards, 4));
+		this.starters = CardMask.DECK & ~CardMask.mask(BenchmarkHands.set(cards, 6));
+		this.starterCards = CardMask.cards(this.starters).toArray(new Card[0]);
+
+		this.tablePath = Files.createTempFile("hand-scores", ".dat");
+		Files.delete(this.tablePath);
+		this.fullTable = ScoreTable.open(this.tablePath);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.tablePath);
+	}
+
+	@Benchmark
+	public int cribbageHand() {
+		int total = 0;
+		for (Card starter : this.starterCards) {
+			total += this.cribbageHand.totalPoints(starter);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public int bitmaskScore() {
+		return sweep(BitmaskHand::score);
+	}
+
+	@Benchmark
+	public int rankTable() {
+		return sweep(RankScoreTable.INSTANCE);
+	}
+
+	@Benchmark
+	public int fullTable() {
+		return sweep(this.fullTable);
+	}
+
+	@Benchmark
+	public int rankTableSweep() {
+		return RankScoreTable.INSTANCE.sweep(this.kept, this.starters, null);
+	}
+
+	@Benchmark
+	public int rankTableSweepHistogram() {
+		return RankScoreTable.INSTANCE.sweep(this.kept, this.starters, new int[HandScorer.MAX_POINTS + 1]);
+	}
+
+	@Benchmark
+	public int fullTableSweep() {
+		return this.fullTable.sweep(this.kept, this.starters, null);
+	}
+
+	/**
+	 * Sums the points of the kept hand over every starter card
+	 * 
+	 * @param scorer calculates the points in each hand and starter card
+	 * @return the total points
+	 */
+	private int sweep(HandScorer scorer) {
+		int total = 0;
+		for (long m = this.starters; m != 0; m &= m - 1) {
+			total += scorer.score(this.kept, Long.numberOfTrailingZeros(m));
+		}
+		return total;
+	}
+
+}
@@ -1,7 +1,5 @@
 package card;
 
-import java.util.Objects;
-
 /**
  * A class that represents cards in the standard 52-card playing card deck
  * 
@@ -9,6 +7,18 @@ import java.util.Objects;
  * Each card has a {@code Rank} and {@code Suit}
  * 
  * <p>
+ * Cards are immutable and there is exactly one instance of each of the 52
+ * cards, obtained with {@code Card.of}, so cards can be compared with
+ * {@code ==}. Each card also has an index (0-51):
+ * 
+ * <pre>
+ * index = suit ordinal * 13 + rank ordinal
+ * </pre>
+ * 
+ * which can be used to index arrays or as a bit position in a {@code long} set
+ * of cards, and its cribbage value (face cards are 10)
+ * 
+ * <p>
  * A constant, ordered array of all card {@code Ranks} and {@code Suits} can be
  * obtained with {@code Card.RANKS} and {@code Card.SUITS} respectively
  * 
@@ -29,15 +39,44 @@ public final class Card implements PlayingCard {
 	 */
 	public static final Suit[] SUITS = Suit.values();
 
+	/**
+	 * The number of cards in a deck
+	 */
+	public static final int DECK_SIZE = 52;
+
+	/**
+	 * Every card, in order of index
+	 */
+	private static final Card[] DECK = new Card[DECK_SIZE];
+
+	static {
+		for (Suit suit : SUITS) {
+			for (Rank rank : RANKS) {
+				Card card = new Card(rank, suit);
+				DECK[card.index] = card;
+			}
+		}
+	}
+
 	/**
 	 * This card's rank (ACE, TWO, THREE, ..., QUEEN or KING)
 	 */
-	private Rank rank;
+	private final Rank rank;
 
 	/**
 	 * This card's suit (CLUBS, DIAMONDS, HEARTS or SPADES)
 	 */
-	private Suit suit;
+	private final Suit suit;
+
+	/**
+	 * This card's index (0-51)
+	 */
+	private final int index;
+
+	/**
+	 * This card's cribbage value (1-10)
+	 */
+	private final int value;
 
 	/**
 	 * Initializes the card with a rank and suit
@@ -45,21 +84,36 @@ public final class Card implements PlayingCard {
 	 * @param rank the card's {@code Rank}
 	 * @param suit the card's {@code Suit}
 	 */
-	public Card(Rank rank, Suit suit) {
+	private Card(Rank rank, Suit suit) {
 		this.rank = rank;
 		this.suit = suit;
+		this.index = suit.ordinal() * RANKS.length + rank.ordinal();
+		this.value = Math.min(rank.getRankNumber(), 10);
 	}
 
 	/**
-	 * Sets the rank and suit of this card
+	 * Returns the card with a rank and suit
 	 * 
-	 * @param rank the card's new {@code Rank}
-	 * @param suit the card's new {@code Suit}
+	 * @param rank the card's {@code Rank}
+	 * @param suit the card's {@code Suit}
+	 * @return the only instance of the card
 	 */
-	@Override
-	public void setState(Rank rank, Suit suit) {
-		this.rank = rank;
-		this.suit = suit;
+	public static Card of(Rank rank, Suit suit) {
+		return DECK[suit.ordinal() * RANKS.length + rank.ordinal()];
+	}
+
+	/**
+	 * Returns the card with an index
+	 * 
+	 * @param index the card's index (0-51)
+	 * @return the only instance of the card
+	 * @throws IllegalArgumentException if the index is not between 0 and 51
+	 */
+	public static Card of(int index) {
+		if (index < 0 || index >= DECK_SIZE) {
+			throw new IllegalArgumentException("a card index must be between 0 and 51, not " + index);
+		}
+		return DECK[index];
 	}
 
 	/**
@@ -110,6 +164,33 @@ public final class Card implements PlayingCard {
 		return this.rank.getRankNumber();
 	}
 
+	/**
+	 * Returns the index of this card (suit ordinal * 13 + rank ordinal)
+	 * 
+	 * @return the index of this card (0-51)
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Returns the cribbage value of this card (aces are 1, face cards are 10)
+	 * 
+	 * @return the cribbage value of this card
+	 */
+	public int getValue() {
+		return this.value;
+	}
+
+	/**
+	 * Returns a bitmask with only the bit of this card's index set
+	 * 
+	 * @return {@code 1L << getIndex()}
+	 */
+	public long getMask() {
+		return 1L << this.index;
+	}
+
 	/**
 	 * Returns the number of ranks the current card is above the other card
 	 * 
@@ -133,27 +214,20 @@ public final class Card implements PlayingCard {
 	}
 
 	/**
-	 * Returns a hash code value for this {@code Card}
+	 * Returns a hash code value for this {@code Card}, which is its index
 	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(rank, suit);
+		return this.index;
 	}
 
 	/**
 	 * Returns true if both {@code Cards} have the same {@code Rank} and
-	 * {@code Suit}
+	 * {@code Suit}, which only happens if they are the same instance
 	 */
 	@Override
 	public boolean equals(Object obj) {
-		if (this == obj) {
-			return true;
-		}
-		if (!(obj instanceof Card)) {
-			return false;
-		}
-		Card other = (Card) obj;
-		return rank == other.rank && suit == other.suit;
+		return this == obj;
 	}
 
 	/**
@@ -0,0 +1,180 @@
+package main;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Collections;
+
+import jdk.jfr.AnnotationElement;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventFactory;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.ValueDescriptor;
+
+/**
+ * One analysis of a dealt hand being measured, along with its Java Flight
+ * Recorder event {@code cribbage.Analysis}, which is written while a recording
+ * is running (for example with {@code -XX:StartFlightRecording})
+ *
+ * <p>
+ * The build targets Java 13, where {@code jdk.jfr.Event} can't be subclassed
+ * or called directly, so the event type is made with an {@code EventFactory}
+ * and its methods are called through method handles. If the JVM doesn't have
+ * the flight recorder, the analysis is still measured but no event is written
+ *
+ * <p>
+ * Instances are only created when {@code Stats.ENABLED} is true
+ *
+ * @author Reid Moffat
+ */
+final class AnalysisEvent {
+
+	// @formatter:off
+	/**
+	 * The positions of the event's fields
+	 */
+	private static final int PHASE     = 0,
+	                         DEALT     = 1,
+	                         DISCARDS  = 2,
+	                         ALLOCATED = 3;
+	// @formatter:on
+
+	/**
+	 * Makes the flight recorder events, or null if the JVM doesn't have the
+	 * flight recorder
+	 */
+	private static final EventFactory FACTORY = factory();
+
+	/**
+	 * The methods of {@code EventFactory} and {@code Event} that are used
+	 */
+	private static final MethodHandle NEW_EVENT, BEGIN, END, SHOULD_COMMIT, SET, COMMIT;
+
+	static {
+		MethodHandle[] handles = new MethodHandle[6];
+		if (FACTORY != null) {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				MethodType none = MethodType.methodType(void.class);
+				handles[0] = lookup.findVirtual(EventFactory.class, "newEvent", MethodType.methodType(Event.class));
+				handles[1] = lookup.findVirtual(Event.class, "begin", none);
+				handles[2] = lookup.findVirtual(Event.class, "end", none);
+				handles[3] = lookup.findVirtual(Event.class, "shouldCommit", MethodType.methodType(boolean.class));
+				handles[4] = lookup.findVirtual(Event.class, "set",
+						MethodType.methodType(void.class, int.class, Object.class));
+				handles[5] = lookup.findVirtual(Event.class, "commit", none);
+			} catch (ReflectiveOperationException e) {
+				handles = new MethodHandle[6];
+			}
+		}
+		NEW_EVENT = handles[0];
+		BEGIN = handles[1];
+		END = handles[2];
+		SHOULD_COMMIT = handles[3];
+		SET = handles[4];
+		COMMIT = handles[5];
+	}
+
+	/**
+	 * The flight recorder event, or null if there isn't one
+	 */
+	private final Object event;
+
+	/**
+	 * The value of {@code System.nanoTime()} when the analysis started
+	 */
+	final long startNanos;
+
+	/**
+	 * The bytes allocated by every thread when the analysis started
+	 */
+	final long startAllocated;
+
+	/**
+	 * Starts measuring an analysis
+	 *
+	 * @param startAllocated the bytes allocated by every thread so far
+	 */
+	AnalysisEvent(long startAllocated) {
+		this.startAllocated = startAllocated;
+		this.event = NEW_EVENT == null ? null : invoke(NEW_EVENT, FACTORY);
+		if (this.event != null) {
+			invoke(BEGIN, this.event);
+		}
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Returns the factory of the flight recorder events
+	 *
+	 * @return the factory, or null if the JVM doesn't have the flight recorder
+	 */
+	private static EventFactory factory() {
+		try {
+			return EventFactory.create(
+					Arrays.asList(new AnnotationElement(Name.class, "cribbage.Analysis"),
+							new AnnotationElement(Label.class, "Discard Analysis"),
+							new AnnotationElement(Category.class, new String[] { "Cribbage" }),
+							new AnnotationElement(Description.class, "One analysis of a dealt hand")),
+					Arrays.asList(
+							new ValueDescriptor(String.class, "phase",
+									Collections.singletonList(new AnnotationElement(Label.class, "Phase"))),
+							new ValueDescriptor(String.class, "dealt",
+									Collections.singletonList(new AnnotationElement(Label.class, "Dealt"))),
+							new ValueDescriptor(int.class, "discards",
+									Collections.singletonList(new AnnotationElement(Label.class, "Discards"))),
+							new ValueDescriptor(long.class, "allocated", Arrays.asList(
+									new AnnotationElement(Label.class, "Allocated"),
+									new AnnotationElement(Description.class,
+											"Bytes allocated by every thread during the analysis")))));
+		} catch (RuntimeException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Ends the analysis and writes its flight recorder event if a recording wants
+	 * it
+	 *
+	 * @param phase     what was analyzed
+	 * @param dealt     a bitmask of the dealt cards
+	 * @param discards  the number of discards analyzed
+	 * @param allocated the bytes allocated by every thread during the analysis
+	 */
+	void commit(String phase, long dealt, int discards, long allocated) {
+		if (this.event == null) {
+			return;
+		}
+		invoke(END, this.event);
+		if ((boolean) invoke(SHOULD_COMMIT, this.event)) {
+			invoke(SET, this.event, PHASE, phase);
+			invoke(SET, this.event, DEALT, BatchAnalyzer.notation(dealt));
+			invoke(SET, this.event, DISCARDS, discards);
+			invoke(SET, this.event, ALLOCATED, allocated);
+			invoke(COMMIT, this.event);
+		}
+	}
+
+	/**
+	 * Calls a method handle
+	 *
+	 * @param handle    the method handle
+	 * @param arguments the receiver and arguments
+	 * @return the result of the call
+	 * @throws IllegalStateException if the call throws a checked exception
+	 */
+	private static Object invoke(MethodHandle handle, Object... arguments) {
+		try {
+			return handle.invokeWithArguments(arguments);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("the flight recorder event failed", e);
+		}
+	}
+
+}
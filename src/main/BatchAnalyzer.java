@@ -0,0 +1,444 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import card.Card;
+
+/**
+ * Analyzes a stream of dealt hands without any prompts, one deal per line, and
+ * writes the results in a machine-readable format
+ *
+ * <p>
+ * Each line has the five or six dealt cards in the notation of
+ * {@code UserInterface.checkValidCard}, separated by spaces or commas. A six
+ * card line can end with {@code dealer} or {@code pone} to include the
+ * expected points in the crib. Blank lines and lines starting with {@code #}
+ * are skipped. For example:
+ *
+ * <pre>
+ * 5H 5C JD 6S KH 4D dealer
+ * 1S,10D,QC,2H,9S
+ * </pre>
+ *
+ * <p>
+ * The lines are read on the calling thread and analyzed in parallel on a
+ * {@code ForkJoinPool}, which the {@code DiscardAnalyzer} of each deal also
+ * runs on. At most a few deals per thread are in flight at once, so memory use
+ * doesn't grow with the input, and the results are written in the same order
+ * as the input. A line that can't be analyzed gets an error result instead of
+ * stopping the batch
+ *
+ * <p>
+ * Deals that are calculated rather than looked up go through a
+ * {@code DiscardCache}, so a deal that comes up again (with any suits) is only
+ * analyzed once while it stays in the cache
+ *
+ * <p>
+ * Only the k discards with the most expected points can be written, best
+ * first. Deals without the crib that aren't looked up are then analyzed with
+ * {@code DiscardAnalyzer.best} instead of going through the cache, since it
+ * skips most of the discards that can't be among them
+ *
+ * @author Reid Moffat
+ */
+final class BatchAnalyzer {
+
+	/**
+	 * The output formats
+	 */
+	enum Format {
+
+		/**
+		 * One row per discard, with a header row
+		 */
+		CSV,
+
+		/**
+		 * One JSON object per deal, with an array of discards
+		 */
+		JSONL;
+
+		/**
+		 * Returns the format with a given name
+		 *
+		 * @param name the name of the format, not case sensitive
+		 * @return the {@code Format}
+		 * @throws IllegalArgumentException if there is no format with the name
+		 */
+		static Format fromName(String name) {
+			return Format.valueOf(name.trim().toUpperCase());
+		}
+	}
+
+	/**
+	 * The header row of the CSV format
+	 */
+	private static final String CSV_HEADER = "line,dealt,dealer,discard,hand,crib,expected,error";
+
+	/**
+	 * The number of deals in flight for each thread
+	 */
+	private static final int DEALS_PER_THREAD = 4;
+
+	/**
+	 * A precomputed database of six card discards, or null to calculate every
+	 * discard
+	 */
+	private final DiscardDatabase advice;
+
+	/**
+	 * The format the results are written in
+	 */
+	private final Format format;
+
+	/**
+	 * The pool the deals are analyzed on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Analyzes each deal that isn't cached
+	 */
+	private final DiscardAnalyzer analyzer;
+
+	/**
+	 * The results of recent deals, or null to analyze every deal
+	 */
+	private final DiscardCache cache;
+
+	/**
+	 * The number of lines that couldn't be analyzed in the last run
+	 */
+	private final AtomicInteger errors = new AtomicInteger();
+
+	/**
+	 * The number of best discards written for each deal, or 0 to write every
+	 * discard
+	 */
+	private final int top;
+
+	/**
+	 * Initializes a {@code BatchAnalyzer}
+	 *
+	 * @param scorer  calculates the points in each hand and starter card
+	 * @param advice  a precomputed database of six card discards, or null to
+	 *                calculate every discard
+	 * @param format  the format the results are written in
+	 * @param threads the number of threads to analyze with
+	 * @param cache   the memory budget of the cache in bytes, or 0 to analyze
+	 *                every deal
+	 * @param top     the number of best discards written for each deal, or 0 to
+	 *                write every discard
+	 */
+	BatchAnalyzer(HandScorer scorer, DiscardDatabase advice, Format format, int threads, long cache, int top) {
+		this.advice = advice;
+		this.format = format;
+		this.pool = new ForkJoinPool(threads);
+		this.analyzer = new DiscardAnalyzer(scorer, this.pool);
+		this.cache = cache > 0 ? new DiscardCache(this.analyzer, cache) : null;
+		this.top = top;
+	}
+
+	/**
+	 * Analyzes every deal from a reader and writes the results, then shuts down
+	 * the pool
+	 *
+	 * @param in  the deals, one per line
+	 * @param out where the results are written
+	 * @return the number of deals analyzed (including ones with errors)
+	 * @throws IOException if the input can't be read or the output can't be
+	 *                     written
+	 */
+	int run(BufferedReader in, Writer out) throws IOException {
+		int window = DEALS_PER_THREAD * this.pool.getParallelism();
+		ArrayDeque<ForkJoinTask<String>> inFlight = new ArrayDeque<ForkJoinTask<String>>(window);
+		int deals = 0;
+		this.errors.set(0);
+		try {
+			if (this.format == Format.CSV) {
+				out.write(CSV_HEADER + "\n");
+			}
+
+			int lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				String deal = line.trim();
+				if (deal.isEmpty() || deal.startsWith("#")) {
+					continue;
+				}
+
+				/* Waits for the oldest deal before reading more than the window */
+				if (inFlight.size() == window) {
+					out.write(await(inFlight.poll()));
+				}
+				int number = lineNumber;
+				inFlight.add(this.pool.submit(() -> this.analyzeLine(number, deal)));
+				deals++;
+			}
+			while (!inFlight.isEmpty()) {
+				out.write(await(inFlight.poll()));
+			}
+			out.flush();
+		} finally {
+			this.pool.shutdownNow();
+		}
+		return deals;
+	}
+
+	/**
+	 * Returns the number of lines that couldn't be analyzed in the last run
+	 *
+	 * @return the number of lines with errors
+	 */
+	int getErrors() {
+		return this.errors.get();
+	}
+
+	/**
+	 * Returns the cache of recent deals
+	 *
+	 * @return the cache, or null if every deal is analyzed
+	 */
+	DiscardCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Waits for the result of a deal
+	 *
+	 * @param task the deal's task
+	 * @return the formatted result
+	 * @throws IOException if the thread is interrupted
+	 */
+	private static String await(ForkJoinTask<String> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("the batch was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("a deal could not be analyzed", e.getCause());
+		}
+	}
+
+	/**
+	 * Analyzes the deal on one line
+	 *
+	 * @param lineNumber the line number (starting from 1)
+	 * @param line       the line, without surrounding spaces
+	 * @return the formatted result, ending with a new line
+	 */
+	private String analyzeLine(int lineNumber, String line) {
+		String[] tokens = line.split("[\\s,]+");
+
+		/* A six card deal can end with who the dealer is */
+		Boolean dealer = null;
+		int cards = tokens.length;
+		String last = tokens[cards - 1].toLowerCase();
+		if (last.equals("dealer") || last.equals("pone")) {
+			dealer = last.equals("dealer");
+			cards--;
+		}
+
+		try {
+			long dealt = parseCards(tokens, cards);
+			if (dealer != null && cards != 6) {
+				throw new IllegalArgumentException("only six card deals have a crib");
+			}
+			return this.format(lineNumber, dealt, dealer, this.analyze(dealt, dealer));
+		} catch (IllegalArgumentException e) {
+			this.errors.incrementAndGet();
+			return this.formatError(lineNumber, line, e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns a bitmask of cards in the notation of
+	 * {@code UserInterface.checkValidCard}
+	 *
+	 * @param tokens the cards, one per string
+	 * @param count  the number of tokens that are cards
+	 * @return a bitmask of the cards
+	 * @throws IllegalArgumentException if a card is invalid or repeated
+	 */
+	static long parseCards(String[] tokens, int count) {
+		long cards = 0;
+		for (int i = 0; i < count; i++) {
+			Card card = UserInterface.checkValidCard(tokens[i]);
+			if (card == null) {
+				throw new IllegalArgumentException("invalid card " + tokens[i]);
+			}
+			if ((cards & card.getMask()) != 0) {
+				throw new IllegalArgumentException("duplicate card " + tokens[i]);
+			}
+			cards |= card.getMask();
+		}
+		return cards;
+	}
+
+	/**
+	 * Analyzes a deal, keeping only the best discards if there is a limit
+	 *
+	 * @param dealt  a bitmask of the dealt cards
+	 * @param dealer true if the player is the dealer, false if not, or null to
+	 *               leave out the crib
+	 * @return the result of each discard written, best first if there is a limit
+	 * @throws IllegalArgumentException if the deal doesn't have five or six cards
+	 */
+	private List<DiscardResult> analyze(long dealt, Boolean dealer) {
+		if (this.top == 0) {
+			return this.analyzeAll(dealt, dealer);
+		}
+		if (dealer == null && (this.advice == null || Long.bitCount(dealt) != 6)) {
+			return this.analyzer.best(dealt, this.top);
+		}
+		return DiscardAnalyzer.top(this.analyzeAll(dealt, dealer), this.top);
+	}
+
+	/**
+	 * Analyzes every discard of a deal, looking six card deals up in the discard
+	 * database if there is one that has what is needed, and the rest up in the
+	 * cache if there is one
+	 *
+	 * @param dealt  a bitmask of the dealt cards
+	 * @param dealer true if the player is the dealer, false if not, or null to
+	 *               leave out the crib
+	 * @return the result of each discard
+	 * @throws IllegalArgumentException if the deal doesn't have five or six cards
+	 */
+	private List<DiscardResult> analyzeAll(long dealt, Boolean dealer) {
+		if (dealer == null) {
+			if (this.advice != null && Long.bitCount(dealt) == 6) {
+				return this.advice.lookup(dealt);
+			}
+			return this.cache != null ? this.cache.analyze(dealt) : this.analyzer.analyze(dealt);
+		}
+		if (this.advice != null && this.advice.includesCrib()) {
+			return this.advice.lookup(dealt, dealer);
+		}
+		return this.cache != null ? this.cache.analyze(dealt, dealer) : this.analyzer.analyze(dealt, dealer);
+	}
+
+	/**
+	 * Formats the results of a deal
+	 *
+	 * @param lineNumber the line number of the deal
+	 * @param dealt      a bitmask of the dealt cards
+	 * @param dealer     true if the player is the dealer, false if not, or null
+	 *                   if the crib was left out
+	 * @param results    the result of each discard
+	 * @return the formatted results, ending with a new line
+	 */
+	private String format(int lineNumber, long dealt, Boolean dealer, List<DiscardResult> results) {
+		StringBuilder sb = new StringBuilder();
+		String dealtCards = notation(dealt);
+		if (this.format == Format.CSV) {
+			for (DiscardResult result : results) {
+				sb.append(lineNumber).append(',').append(dealtCards).append(',')
+						.append(dealer == null ? "" : dealer ? "dealer" : "pone").append(',')
+						.append(notation(result.getDiscard())).append(',').append(decimal(result.averagePoints()))
+						.append(',').append(result.includesCrib() ? decimal(result.averageCribPoints()) : "")
+						.append(',').append(decimal(result.expectedPoints())).append(",\n");
+			}
+		} else {
+			sb.append("{\"line\":").append(lineNumber).append(",\"dealt\":\"").append(dealtCards).append('"');
+			if (dealer != null) {
+				sb.append(",\"dealer\":").append(dealer);
+			}
+			sb.append(",\"discards\":");
+			appendJson(sb, results);
+			sb.append("}\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the results of a deal as a JSON array with an object per discard
+	 *
+	 * @param sb      where the JSON is appended
+	 * @param results the result of each discard
+	 */
+	static void appendJson(StringBuilder sb, List<DiscardResult> results) {
+		sb.append('[');
+		for (int i = 0; i < results.size(); i++) {
+			DiscardResult result = results.get(i);
+			sb.append(i == 0 ? "{" : ",{").append("\"discard\":\"").append(notation(result.getDiscard()))
+					.append("\",\"hand\":").append(decimal(result.averagePoints()));
+			if (result.includesCrib()) {
+				sb.append(",\"crib\":").append(decimal(result.averageCribPoints()));
+			}
+			sb.append(",\"expected\":").append(decimal(result.expectedPoints())).append('}');
+		}
+		sb.append(']');
+	}
+
+	/**
+	 * Formats a line that couldn't be analyzed
+	 *
+	 * @param lineNumber the line number
+	 * @param line       the line
+	 * @param message    why the line couldn't be analyzed
+	 * @return the formatted error, ending with a new line
+	 */
+	private String formatError(int lineNumber, String line, String message) {
+		if (this.format == Format.CSV) {
+			return lineNumber + ",\"" + line.replace("\"", "\"\"") + "\",,,,,,\"" + message.replace("\"", "\"\"")
+					+ "\"\n";
+		}
+		return "{\"line\":" + lineNumber + ",\"dealt\":\"" + json(line) + "\",\"error\":\"" + json(message) + "\"}\n";
+	}
+
+	/**
+	 * Returns the cards of a bitmask, separated by spaces
+	 *
+	 * @param cards a bitmask of cards
+	 * @return the cards in the notation of {@code UserInterface.checkValidCard},
+	 *         in order of their indices
+	 */
+	static String notation(long cards) {
+		return CardMask.cards(cards).stream().sorted((a, b) -> CardMask.index(a) - CardMask.index(b))
+				.map(UserInterface::cardNotation).collect(Collectors.joining(" "));
+	}
+
+	/**
+	 * Formats a number of points to 4 decimals
+	 *
+	 * @param points a number of points
+	 * @return the points as a string
+	 */
+	static String decimal(double points) {
+		return String.format(Locale.ROOT, "%.4f", points);
+	}
+
+	/**
+	 * Escapes a string to be put in a JSON string
+	 *
+	 * @param text any text
+	 * @return the text with quotes, backslashes and control characters escaped
+	 */
+	static String json(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for (char c : text.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < ' ') {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,428 @@
+package main;
+
+/**
+ * Scores arrays of hands at once with a branch-free kernel, so the independent
+ * hands of a sweep over starters, discards or cribs can overlap in the CPU
+ * instead of waiting on each other's table lookups and mispredicted branches
+ *
+ * <p>
+ * Every step of the kernel is a fixed sequence of bit operations on the four
+ * 13-bit suit masks of a hand:
+ * <ul>
+ * <li>fifteens: a subset-sum count packed 4 bits per total (see
+ * {@code BitmaskHand.fifteens}), stepped once per card</li>
+ * <li>multiples: the number of pairs is the number of ranks shared by each
+ * pair of suits, which is six bit counts</li>
+ * <li>runs: the longest stretch of ranks (at least three long) is looked up by
+ * the mask of ranks in the hand, and multiplied by the number of runs in it,
+ * which only depends on the number of extra cards in the stretch and whether
+ * one of its ranks has three cards</li>
+ * <li>flushes and nobs: bit counts and shifts of the suit masks</li>
+ * </ul>
+ * The loops over an array have no dependencies between hands, so the JIT
+ * compiler can unroll them and the CPU can score several hands at once
+ *
+ * <p>
+ * On Java 17 or later, when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, arrays are scored with the same
+ * kernel written with the Vector API instead, one hand per vector lane (see
+ * {@code VectorScorer}). Otherwise the loops above are the fallback. The
+ * {@code sweep} methods score one starter of each rank together this way
+ *
+ * <p>
+ * The kernel is only correct for four cards plus a starter card: with more
+ * cards there can be more than one stretch of ranks or more than two extra
+ * cards in a stretch
+ *
+ * @author Reid Moffat
+ */
+final class BatchScorer implements HandScorer {
+
+	/**
+	 * The batch scorer, which scores arrays with the Vector API when it can
+	 */
+	static final BatchScorer INSTANCE = new BatchScorer(vectorScorer());
+
+	/**
+	 * A batch scorer that always scores arrays with the scalar kernel
+	 */
+	static final BatchScorer SCALAR = new BatchScorer(null);
+
+	/**
+	 * A rank mask with a bit in every suit, so multiplying a mask of ranks by it
+	 * copies the ranks into every suit
+	 */
+	private static final long EVERY_SUIT = 1L | 1L << CardMask.SUIT_SIZE | 1L << 2 * CardMask.SUIT_SIZE
+			| 1L << 3 * CardMask.SUIT_SIZE;
+
+	/**
+	 * The value of each card index times 4, the shift of its value in a packed
+	 * subset-sum count
+	 */
+	private static final int[] VALUE_SHIFTS = new int[CardMask.DECK_SIZE];
+
+	/**
+	 * For each mask of ranks, the mask of its longest stretch of at least three
+	 * consecutive ranks (0 if there isn't one) and the stretch's length shifted
+	 * left by {@code SUIT_SIZE}
+	 */
+	private static final int[] STRETCHES = new int[1 << CardMask.SUIT_SIZE];
+
+	/**
+	 * The arrays of each thread that the sweeps score their starters in
+	 */
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	static {
+		for (int i = 0; i < CardMask.DECK_SIZE; i++) {
+			VALUE_SHIFTS[i] = 4 * CardMask.value(i);
+		}
+		for (int ranks = 0; ranks < STRETCHES.length; ranks++) {
+			int best = 0;
+			int bestLength = 0;
+			for (int from = 0; from < CardMask.SUIT_SIZE; from++) {
+				int to = from;
+				while (to < CardMask.SUIT_SIZE && (ranks & 1 << to) != 0) {
+					to++;
+				}
+				if (to - from >= 3 && to - from > bestLength) {
+					bestLength = to - from;
+					best = (1 << to) - (1 << from);
+				}
+			}
+			STRETCHES[ranks] = best | bestLength << CardMask.SUIT_SIZE;
+		}
+	}
+
+	/**
+	 * The Vector API kernel that scores arrays of hands, or null to score them
+	 * with the scalar kernel
+	 */
+	private final HandScorer vector;
+
+	/**
+	 * This class is only initialized as {@code INSTANCE} and {@code SCALAR}
+	 *
+	 * @param vector the Vector API kernel, or null
+	 */
+	private BatchScorer(HandScorer vector) {
+		this.vector = vector;
+	}
+
+	/**
+	 * Loads the Vector API kernel, which is only compiled on Java 17 or later and
+	 * only links if the JVM was started with
+	 * {@code --add-modules jdk.incubator.vector}
+	 *
+	 * @return {@code VectorScorer.INSTANCE}, or null if it can't be loaded
+	 */
+	private static HandScorer vectorScorer() {
+		try {
+			return (HandScorer) Class.forName("main.VectorScorer").getDeclaredField("INSTANCE").get(null);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if arrays of hands are scored with the Vector API
+	 *
+	 * @return true if the Vector API kernel is used
+	 */
+	boolean isVectorized() {
+		return this.vector != null;
+	}
+
+	/**
+	 * Calculates the sum of point combinations for a four card hand and a starter
+	 * card
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the hand with the given starter
+	 */
+	@Override
+	public int score(long hand, int starter) {
+		return points(hand, starter, false);
+	}
+
+	/**
+	 * Calculates the sum of point combinations for a four card crib and a starter
+	 * card
+	 *
+	 * @param crib    a bitmask of the four cards in the crib
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the crib with the given starter
+	 */
+	@Override
+	public int scoreCrib(long crib, int starter) {
+		return points(crib, starter, true);
+	}
+
+	/**
+	 * Calculates the points from fifteens, multiples and runs for a four card hand
+	 * and a starter card
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the points in the hand without flushes and nobs
+	 */
+	@Override
+	public int rankPoints(long hand, int starter) {
+		return rankPoints(hand | 1L << starter);
+	}
+
+	/**
+	 * Scores each hand with its starter card
+	 *
+	 * @param hands    bitmasks of the four cards in each hand
+	 * @param starters the index of each hand's starter card
+	 * @param points   the points of each hand are stored here
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 */
+	@Override
+	public void scoreAll(long[] hands, int[] starters, int[] points, int from, int to) {
+		if (this.vector != null) {
+			this.vector.scoreAll(hands, starters, points, from, to);
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			points[i] = points(hands[i], starters[i], false);
+		}
+	}
+
+	/**
+	 * Scores each hand with its starter card into a byte array
+	 *
+	 * @param hands    bitmasks of the four cards in each hand
+	 * @param starters the index of each hand's starter card
+	 * @param points   the points of each hand are stored here
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 */
+	@Override
+	public void scoreAll(long[] hands, int[] starters, byte[] points, int from, int to) {
+		if (this.vector != null) {
+			this.vector.scoreAll(hands, starters, points, from, to);
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			points[i] = (byte) points(hands[i], starters[i], false);
+		}
+	}
+
+	/**
+	 * Scores each crib with its starter card
+	 *
+	 * @param cribs    bitmasks of the four cards in each crib
+	 * @param starters the index of each crib's starter card
+	 * @param points   the points of each crib are stored here
+	 * @param from     the first crib to score
+	 * @param to       the index after the last crib to score
+	 */
+	@Override
+	public void scoreAllCribs(long[] cribs, int[] starters, int[] points, int from, int to) {
+		if (this.vector != null) {
+			this.vector.scoreAllCribs(cribs, starters, points, from, to);
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			points[i] = points(cribs[i], starters[i], true);
+		}
+	}
+
+	/**
+	 * Sums the points of a four card hand over a set of starter cards, scoring one
+	 * starter of each rank together with {@code scoreAll}
+	 *
+	 * @param hand      a bitmask of the four cards in the hand
+	 * @param starters  a bitmask of the possible starter cards (not in the hand)
+	 * @param histogram if not null, {@code histogram[p]} is incremented for each
+	 *                  starter that gives {@code p} points (it must have
+	 *                  {@code MAX_POINTS + 1} elements)
+	 * @return the total number of points over every starter card
+	 */
+	@Override
+	public int sweep(long hand, long starters, int[] histogram) {
+		if (Stats.ENABLED) {
+			long start = System.nanoTime();
+			int total = sweep(hand, starters, histogram, false);
+			Stats.record(Stats.Phase.SWEEP, start);
+			return total;
+		}
+		return sweep(hand, starters, histogram, false);
+	}
+
+	/**
+	 * Sums the points of a four card crib over a set of starter cards, scoring one
+	 * starter of each rank together with {@code scoreAllCribs}
+	 *
+	 * @param crib      a bitmask of the four cards in the crib
+	 * @param starters  a bitmask of the possible starter cards (not in the crib)
+	 * @param histogram if not null, {@code histogram[p]} is incremented for each
+	 *                  starter that gives {@code p} points (it must have
+	 *                  {@code MAX_POINTS + 1} elements)
+	 * @return the total number of points over every starter card
+	 */
+	@Override
+	public int sweepCrib(long crib, long starters, int[] histogram) {
+		if (Stats.ENABLED) {
+			long start = System.nanoTime();
+			int total = sweep(crib, starters, histogram, true);
+			Stats.record(Stats.Phase.SWEEP_CRIB, start);
+			return total;
+		}
+		return sweep(crib, starters, histogram, true);
+	}
+
+	/**
+	 * Sums the points of a four card hand or crib over a set of starter cards
+	 *
+	 * <p>
+	 * Like {@code HandScorer.sweep}, each rank is only scored once, but the
+	 * ranks are scored at once as an array. The flushes and nobs of the starter
+	 * scored for a rank are taken off to give the rank's points, and added back
+	 * for the suit of each starter
+	 *
+	 * <p>
+	 * The arrays are reused from the thread's {@code Scratch}, so a sweep doesn't
+	 * allocate anything
+	 *
+	 * @param cards     a bitmask of the four cards in the hand or crib
+	 * @param starters  a bitmask of the possible starter cards
+	 * @param histogram null, or the count of starters that give each number of
+	 *                  points
+	 * @param crib      true if the cards are a crib
+	 * @return the total number of points over every starter card
+	 */
+	private int sweep(long cards, long starters, int[] histogram, boolean crib) {
+		Scratch scratch = SCRATCH.get();
+		long[] hands = scratch.hands;
+		int[] rankStarters = scratch.starters;
+		int[] points = scratch.points;
+		int ranks = 0;
+		for (int rank = 0; rank < CardMask.SUIT_SIZE; rank++) {
+			long m = starters & CardMask.rankRange(rank, rank + 1);
+			if (m != 0) {
+				hands[ranks] = cards;
+				rankStarters[ranks++] = Long.numberOfTrailingZeros(m);
+			}
+		}
+		if (crib) {
+			scoreAllCribs(hands, rankStarters, points, 0, ranks);
+		} else {
+			scoreAll(hands, rankStarters, points, 0, ranks);
+		}
+
+		int total = 0;
+		for (int i = 0; i < ranks; i++) {
+			int rank = CardMask.rank(rankStarters[i]);
+			int rankPoints = points[i] - suitPoints(cards, rankStarters[i], crib);
+			for (long m = starters & CardMask.rankRange(rank, rank + 1); m != 0; m &= m - 1) {
+				int starterPoints = rankPoints + suitPoints(cards, Long.numberOfTrailingZeros(m), crib);
+				total += starterPoints;
+				if (histogram != null) {
+					histogram[starterPoints]++;
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the points from flushes and nobs for a four card hand or crib and a
+	 * starter card
+	 *
+	 * @param cards   a bitmask of the four cards in the hand or crib
+	 * @param starter the index of the starter card
+	 * @param crib    true if the cards are a crib
+	 * @return the points from flushes and nobs
+	 */
+	private static int suitPoints(long cards, int starter, boolean crib) {
+		return (crib ? BitmaskHand.cribFlushes(cards, starter) : BitmaskHand.flushes(cards, starter))
+				+ BitmaskHand.nobs(cards, starter);
+	}
+
+	/**
+	 * Scores a four card hand or crib and a starter card without branching on
+	 * the cards
+	 *
+	 * @param hand    a bitmask of the four cards in the hand or crib
+	 * @param starter the index of the starter card
+	 * @param crib    true if the cards are a crib
+	 * @return the total number of points
+	 */
+	static int points(long hand, int starter, boolean crib) {
+		int suit = CardMask.suit(starter);
+		int c0 = Integer.bitCount(CardMask.suitRanks(hand, 0));
+		int c1 = Integer.bitCount(CardMask.suitRanks(hand, 1));
+		int c2 = Integer.bitCount(CardMask.suitRanks(hand, 2));
+		int c3 = Integer.bitCount(CardMask.suitRanks(hand, 3));
+
+		/* A suit has all four cards only if its count has bit 2 set */
+		int starterFlush = Integer.bitCount(CardMask.suitRanks(hand, suit)) >>> 2;
+		int flushes = crib ? 5 * starterFlush : 4 * ((c0 | c1 | c2 | c3) >>> 2) + starterFlush;
+		int nobs = (int) (hand >>> (suit * CardMask.SUIT_SIZE + CardMask.JACK)) & 1;
+		return rankPoints(hand | 1L << starter) + flushes + nobs;
+	}
+
+	/**
+	 * Calculates the points from fifteens, multiples and runs for five cards
+	 *
+	 * @param cards a bitmask of the five cards
+	 * @return the points without flushes and nobs
+	 */
+	static int rankPoints(long cards) {
+		long s0 = CardMask.suitRanks(cards, 0);
+		long s1 = CardMask.suitRanks(cards, 1);
+		long s2 = CardMask.suitRanks(cards, 2);
+		long s3 = CardMask.suitRanks(cards, 3);
+
+		/* The number of subsets of the cards with each total value, 4 bits per total */
+		long ways = 1;
+		for (long m = cards; m != 0; m &= m - 1) {
+			ways += ways << VALUE_SHIFTS[Long.numberOfTrailingZeros(m)];
+		}
+
+		int pairs = Long.bitCount(s0 & s1) + Long.bitCount(s0 & s2) + Long.bitCount(s0 & s3)
+				+ Long.bitCount(s1 & s2) + Long.bitCount(s1 & s3) + Long.bitCount(s2 & s3);
+
+		/*
+		 * Each extra card of a rank in the stretch doubles the runs, except that a
+		 * third card of a rank makes three runs instead of four
+		 */
+		int stretch = STRETCHES[(int) (s0 | s1 | s2 | s3)];
+		long stretchRanks = stretch & CardMask.SUIT_MASK;
+		int length = stretch >>> CardMask.SUIT_SIZE;
+		int extra = Long.bitCount(cards & stretchRanks * EVERY_SUIT) - length;
+		long triples = (s0 & s1 & (s2 | s3) | s2 & s3 & (s0 | s1)) & stretchRanks;
+		int tripled = (int) ((triples | -triples) >>> 63);
+
+		return 2 * (int) (ways >>> 60) + 2 * pairs + length * ((1 << extra) - tripled);
+	}
+
+	/**
+	 * The arrays that a sweep scores its starters in, with one element for each
+	 * rank
+	 */
+	private static final class Scratch {
+
+		/**
+		 * The hand or crib, once for each rank
+		 */
+		final long[] hands = new long[CardMask.SUIT_SIZE];
+
+		/**
+		 * The index of the starter scored for each rank
+		 */
+		final int[] starters = new int[CardMask.SUIT_SIZE];
+
+		/**
+		 * The points with each of those starters
+		 */
+		final int[] points = new int[CardMask.SUIT_SIZE];
+
+	}
+
+}
@@ -0,0 +1,314 @@
+package main;
+
+import java.util.HashSet;
+
+import card.Card;
+
+/**
+ * The class {@code BitmaskHand} represents a player's hand in the game of
+ * cribbage as a bitmask of card indices (see {@code CardMask})
+ *
+ * <p>
+ * It calculates exactly the same totals as {@code CribbageHand}, but no objects
+ * are created while scoring: the hand, starter and every combination of cards
+ * are all primitive values. The static {@code score} method can be used
+ * directly by code that already works with bitmasks
+ *
+ * @author Reid Moffat
+ */
+final class BitmaskHand implements CribbageCombinations {
+
+	/**
+	 * A bitmask of the {@code Cards} in this hand (not including the starter
+	 * {@code Card})
+	 */
+	private long hand;
+
+	/**
+	 * Initializes this {@code BitmaskHand} with a set of {@code Cards}
+	 *
+	 * @param hand a {@code Set} of {@code Card} objects (not including the starter
+	 *             card)
+	 */
+	public BitmaskHand(HashSet<Card> hand) {
+		this.hand = CardMask.mask(hand);
+	}
+
+	/**
+	 * Sets the cribbage hand to the specified hand
+	 *
+	 * @param hand a {@code Set} of {@code Card} objects
+	 */
+	@Override
+	public void setHand(HashSet<Card> hand) {
+		this.hand = CardMask.mask(hand);
+	}
+
+	/**
+	 * Removes all {@code Card} objects from this hand
+	 */
+	@Override
+	public void clearHand() {
+		this.hand = 0;
+	}
+
+	/**
+	 * Adds a {@code Card} object to this hand
+	 *
+	 * @param card a {@code Card} object
+	 */
+	@Override
+	public void add(Card card) {
+		this.hand |= 1L << CardMask.index(card);
+	}
+
+	/**
+	 * Removes a {@code Card} object from this hand
+	 *
+	 * @param card a {@code Card} object
+	 * @throws IllegalArgumentException if the {@code Card} is not in the hand
+	 */
+	@Override
+	public void remove(Card card) {
+		long bit = 1L << CardMask.index(card);
+		if ((this.hand & bit) == 0) {
+			throw new IllegalArgumentException(card.toString() + "is not present in this hand");
+		}
+		this.hand &= ~bit;
+	}
+
+	/**
+	 * Returns the number of {@code Card} objects in this hand
+	 *
+	 * @return the number of {@code Card} objects in this hand
+	 */
+	@Override
+	public int size() {
+		return Long.bitCount(this.hand);
+	}
+
+	/**
+	 * Returns a copy of this hand
+	 *
+	 * @return a copy of this hand
+	 */
+	@Override
+	public HashSet<Card> getCards() {
+		return CardMask.cards(this.hand);
+	}
+
+	/**
+	 * Calculates the sum of point combinations for this hand (if it includes 4
+	 * {@code Card} objects) with a starter {@code Card} object
+	 *
+	 * @param starter the starter {@code Card}
+	 * @return the total number of points in this cribbage hand with the given
+	 *         starter {@code Card}
+	 * @throws IllegalArgumentException if {@code hand} does not contain exactly
+	 *                                  four {@code Card} objects or {@code starter}
+	 *                                  is {@code null}
+	 */
+	@Override
+	public int totalPoints(Card starter) {
+		/* Makes sure the hand is valid */
+		if (starter == null || this.size() != 4) {
+			throw new IllegalArgumentException("illegal hand and/or starter card");
+		}
+		return score(this.hand, CardMask.index(starter));
+	}
+
+	/**
+	 * Calculates the sum of point combinations for a four card hand and a starter
+	 * card
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the hand with the given starter
+	 */
+	static int score(long hand, int starter) {
+		return rankPoints(hand | 1L << starter) + flushes(hand, starter) + nobs(hand, starter);
+	}
+
+	/**
+	 * Returns the number of points from the combinations that only depend on the
+	 * ranks of the cards (fifteens, multiples and runs), which are all calculated
+	 * from the count of each rank
+	 *
+	 * @param cards a bitmask of at most five cards
+	 * @return the number of points from fifteens, multiples and runs
+	 */
+	static int rankPoints(long cards) {
+		long counts = rankCounts(cards);
+		if (Stats.ENABLED) {
+			/* Each part is timed separately when instrumentation is on */
+			long time = System.nanoTime();
+			int points = fifteens(counts);
+			time = Stats.record(Stats.Phase.BITMASK_FIFTEENS, time);
+			points += multiples(counts);
+			time = Stats.record(Stats.Phase.BITMASK_MULTIPLES, time);
+			points += runs(counts);
+			Stats.record(Stats.Phase.BITMASK_RUNS, time);
+			return points;
+		}
+		return fifteens(counts) + multiples(counts) + runs(counts);
+	}
+
+	/**
+	 * Returns the number of each rank in a bitmask of cards, packed into a
+	 * {@code long} with 4 bits per zero-based rank
+	 *
+	 * <p>
+	 * For example, three kings, an ace and a four would be
+	 * {@code 0x3000000001001L}
+	 *
+	 * @param cards a bitmask of cards
+	 * @return the packed count of each rank
+	 */
+	static long rankCounts(long cards) {
+		long counts = 0;
+		for (long m = cards; m != 0; m &= m - 1) {
+			counts += 1L << (CardMask.rank(Long.numberOfTrailingZeros(m)) << 2);
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the number of points obtained from fifteens given the packed count
+	 * of each rank
+	 *
+	 * <p>
+	 * Instead of visiting every subset of the cards, this counts the subsets
+	 * with each sum from 0 to 15 one card at a time (a subset-sum count): adding
+	 * a card of value v makes every subset with sum s also give a subset with
+	 * sum s + v. The 16 counts are packed 4 bits per sum into one {@code long},
+	 * so adding a card is a shift and an add, and sums over 15 are shifted out.
+	 * With at most five cards no sum can be made more than 10 ways, so a count
+	 * never carries into the next one
+	 *
+	 * @param counts the packed count of each rank of at most five cards (see
+	 *               {@code rankCounts})
+	 * @return the number of points obtained from fifteens
+	 */
+	static int fifteens(long counts) {
+		return 2 * (int) (fifteenWays(counts) >>> 60);
+	}
+
+	/**
+	 * Returns the number of subsets of the cards with each sum from 0 to 15,
+	 * packed 4 bits per sum (the subset-sum count used by {@code fifteens})
+	 *
+	 * @param counts the packed count of each rank of at most five cards (see
+	 *               {@code rankCounts})
+	 * @return the packed number of subsets with each sum
+	 */
+	static long fifteenWays(long counts) {
+		/* Only the empty subset has a sum of 0 to begin with */
+		long ways = 1;
+		int rank = 0;
+		for (long c = counts; c != 0; c >>>= 4, rank++) {
+			/* The index of a rank's club is the rank itself */
+			int shift = CardMask.value(rank) << 2;
+			for (int n = (int) (c & 0xF); n > 0; n--) {
+				ways += ways << shift;
+			}
+		}
+		return ways;
+	}
+
+	/**
+	 * Returns the number of points obtained from multiples given the packed count
+	 * of each rank
+	 *
+	 * <p>
+	 * A multiple of n cards is worth n*n - n points
+	 *
+	 * @param counts the packed count of each rank (see {@code rankCounts})
+	 * @return the number of points obtained from multiples
+	 */
+	static int multiples(long counts) {
+		int points = 0;
+		for (long c = counts; c != 0; c >>>= 4) {
+			int n = (int) (c & 0xF);
+			points += n * n - n;
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the number of points obtained from runs given the packed count of
+	 * each rank
+	 *
+	 * <p>
+	 * Every stretch of three or more consecutive ranks is a run, and it is counted
+	 * once for each way of picking one card of each rank (a double run of three is
+	 * 2 * 3 = 6 points)
+	 *
+	 * @param counts the packed count of each rank (see {@code rankCounts})
+	 * @return the number of points obtained from runs
+	 */
+	static int runs(long counts) {
+		int points = 0;
+		int length = 0;
+		int combinations = 1;
+		for (int rank = 0; rank <= CardMask.SUIT_SIZE; rank++) {
+			int n = rank < CardMask.SUIT_SIZE ? (int) (counts >>> (rank << 2) & 0xF) : 0;
+			if (n != 0) {
+				length++;
+				combinations *= n;
+			} else {
+				if (length >= 3) {
+					points += length * combinations;
+				}
+				length = 0;
+				combinations = 1;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the number of points obtained from flushes in a four card hand and
+	 * starter card
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the number of points obtained from flushes
+	 */
+	static int flushes(long hand, int starter) {
+		for (int suit = 0; suit < 4; suit++) {
+			if (Integer.bitCount(CardMask.suitRanks(hand, suit)) == 4) {
+				return CardMask.suit(starter) == suit ? 5 : 4;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of points obtained from flushes in a four card crib and
+	 * starter card
+	 *
+	 * <p>
+	 * Unlike a hand, a crib only has a flush if all four cards and the starter
+	 * card have the same suit (5 points)
+	 *
+	 * @param crib    a bitmask of the four cards in the crib
+	 * @param starter the index of the starter card
+	 * @return the number of points obtained from flushes
+	 */
+	static int cribFlushes(long crib, int starter) {
+		return Integer.bitCount(CardMask.suitRanks(crib, CardMask.suit(starter))) == 4 ? 5 : 0;
+	}
+
+	/**
+	 * Returns the number of points obtained from nobs (a jack in the hand with the
+	 * same suit as the starter card)
+	 *
+	 * @param hand    a bitmask of the cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the number of points obtained from nobs
+	 */
+	static int nobs(long hand, int starter) {
+		return (int) (hand >>> (CardMask.suit(starter) * CardMask.SUIT_SIZE + CardMask.JACK)) & 1;
+	}
+
+}
@@ -0,0 +1,228 @@
+package main;
+
+import java.util.HashSet;
+
+import card.Card;
+import card.Suit;
+
+/**
+ * A hand of cards with its suits renamed into a canonical order, along with the
+ * renaming (a permutation of the four suits) that was used
+ *
+ * <p>
+ * Swapping suits never changes the points in a cribbage hand, crib or starter
+ * card, so every hand that only differs from another by its suits gives the
+ * same results. Putting hands in canonical form collapses all of those hands
+ * into one, for example the 20,358,520 possible six card deals into about a
+ * million distinct ones
+ *
+ * <p>
+ * The canonical order sorts the suits by how many cards of that suit are in the
+ * hand, and then by the ranks of those cards, from highest to lowest. Canonical
+ * suit 0 (clubs) is the suit with the most cards. Results calculated for the
+ * canonical hand can be mapped back with the {@code fromCanonical} methods
+ *
+ * <p>
+ * Instances are immutable
+ *
+ * @author Reid Moffat
+ */
+final class CanonicalHand {
+
+	/**
+	 * A bitmask of the hand in canonical form
+	 */
+	private final long mask;
+
+	/**
+	 * The canonical suit of each original suit, packed as 2 bits per suit (bits
+	 * 2s and 2s + 1 hold the canonical suit of suit s)
+	 */
+	private final int toCanonical;
+
+	/**
+	 * The original suit of each canonical suit, packed the same way as
+	 * {@code toCanonical}
+	 */
+	private final int fromCanonical;
+
+	/**
+	 * Initializes a {@code CanonicalHand}
+	 *
+	 * @param mask          a bitmask of the hand in canonical form
+	 * @param toCanonical   the packed canonical suit of each original suit
+	 * @param fromCanonical the packed original suit of each canonical suit
+	 */
+	private CanonicalHand(long mask, int toCanonical, int fromCanonical) {
+		this.mask = mask;
+		this.toCanonical = toCanonical;
+		this.fromCanonical = fromCanonical;
+	}
+
+	/**
+	 * Puts a hand of cards into canonical form
+	 *
+	 * @param hand a bitmask of the cards in the hand
+	 * @return the hand in canonical form
+	 */
+	static CanonicalHand of(long hand) {
+		int fromCanonical = sortSuits(hand);
+		int toCanonical = invert(fromCanonical);
+		return new CanonicalHand(permute(hand, toCanonical), toCanonical, fromCanonical);
+	}
+
+	/**
+	 * Puts a set of {@code Card} objects into canonical form
+	 *
+	 * @param hand a {@code HashSet} of {@code Card} objects
+	 * @return the hand in canonical form
+	 */
+	static CanonicalHand of(HashSet<Card> hand) {
+		return of(CardMask.mask(hand));
+	}
+
+	/**
+	 * Returns a bitmask of a hand in canonical form, without keeping the
+	 * permutation that was used
+	 *
+	 * @param hand a bitmask of the cards in the hand
+	 * @return a bitmask of the hand in canonical form
+	 */
+	static long canonicalize(long hand) {
+		return permute(hand, invert(sortSuits(hand)));
+	}
+
+	/**
+	 * Returns a bitmask of the hand in canonical form
+	 *
+	 * @return a bitmask of the canonical hand
+	 */
+	long getMask() {
+		return this.mask;
+	}
+
+	/**
+	 * Renames the suits of any set of cards (for example some of the cards in the
+	 * hand, or a starter card) the same way the hand was renamed
+	 *
+	 * @param cards a bitmask of cards with their original suits
+	 * @return a bitmask of the cards with canonical suits
+	 */
+	long toCanonical(long cards) {
+		return permute(cards, this.toCanonical);
+	}
+
+	/**
+	 * Renames the suits of a set of cards with canonical suits back to the
+	 * original suits
+	 *
+	 * @param cards a bitmask of cards with canonical suits
+	 * @return a bitmask of the cards with their original suits
+	 */
+	long fromCanonical(long cards) {
+		return permute(cards, this.fromCanonical);
+	}
+
+	/**
+	 * Returns the canonical suit of an original {@code Suit}
+	 *
+	 * @param suit an original {@code Suit}
+	 * @return the canonical {@code Suit}
+	 */
+	Suit toCanonical(Suit suit) {
+		return Card.SUITS[this.toCanonical >>> 2 * suit.ordinal() & 3];
+	}
+
+	/**
+	 * Returns the original suit of a canonical {@code Suit}
+	 *
+	 * @param suit a canonical {@code Suit}
+	 * @return the original {@code Suit}
+	 */
+	Suit fromCanonical(Suit suit) {
+		return Card.SUITS[this.fromCanonical >>> 2 * suit.ordinal() & 3];
+	}
+
+	/**
+	 * Returns the {@code Card} with the original suit of a canonical {@code Card}
+	 *
+	 * @param card a {@code Card} with a canonical suit
+	 * @return the {@code Card} with its original suit
+	 */
+	Card fromCanonical(Card card) {
+		return Card.of(card.getRank(), this.fromCanonical(card.getSuit()));
+	}
+
+	/**
+	 * Returns the original suit of each canonical suit (packed 2 bits per suit)
+	 *
+	 * <p>
+	 * Each suit is given a sort key of its number of cards followed by its 13 rank
+	 * bits, and the four keys are sorted from highest to lowest with a sorting
+	 * network, so nothing is created
+	 *
+	 * @param hand a bitmask of the cards in the hand
+	 * @return the packed original suit of each canonical suit
+	 */
+	private static int sortSuits(long hand) {
+		/* Sort key in the high bits, original suit in the low 2 bits */
+		int s0 = key(hand, 0) << 2;
+		int s1 = key(hand, 1) << 2 | 1;
+		int s2 = key(hand, 2) << 2 | 2;
+		int s3 = key(hand, 3) << 2 | 3;
+
+		/* A sorting network for four values (largest first) */
+		// @formatter:off
+		int t;
+		if (s0 < s1) { t = s0; s0 = s1; s1 = t; }
+		if (s2 < s3) { t = s2; s2 = s3; s3 = t; }
+		if (s0 < s2) { t = s0; s0 = s2; s2 = t; }
+		if (s1 < s3) { t = s1; s1 = s3; s3 = t; }
+		if (s1 < s2) { t = s1; s1 = s2; s2 = t; }
+		// @formatter:on
+
+		return (s0 & 3) | (s1 & 3) << 2 | (s2 & 3) << 4 | (s3 & 3) << 6;
+	}
+
+	/**
+	 * Returns the sort key of one suit in a hand
+	 *
+	 * @param hand a bitmask of the cards in the hand
+	 * @param suit a suit ordinal (0-3)
+	 * @return the number of cards of the suit, followed by its 13 rank bits
+	 */
+	private static int key(long hand, int suit) {
+		int ranks = CardMask.suitRanks(hand, suit);
+		return Integer.bitCount(ranks) << CardMask.SUIT_SIZE | ranks;
+	}
+
+	/**
+	 * Returns the inverse of a packed permutation of the four suits
+	 *
+	 * @param permutation a packed permutation (2 bits per suit)
+	 * @return the inverse permutation
+	 */
+	private static int invert(int permutation) {
+		int inverse = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			inverse |= suit << 2 * (permutation >>> 2 * suit & 3);
+		}
+		return inverse;
+	}
+
+	/**
+	 * Renames the suits of a bitmask of cards
+	 *
+	 * @param cards       a bitmask of cards
+	 * @param permutation the packed new suit of each suit (2 bits per suit)
+	 * @return a bitmask of the renamed cards
+	 */
+	private static long permute(long cards, int permutation) {
+		long permuted = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			permuted |= (long) CardMask.suitRanks(cards, suit) << CardMask.SUIT_SIZE * (permutation >>> 2 * suit & 3);
+		}
+		return permuted;
+	}
+
+}
@@ -0,0 +1,187 @@
+package main;
+
+import java.util.HashSet;
+
+import card.Card;
+
+/**
+ * Static helpers that encode {@code Card} objects as integers and sets of
+ * {@code Cards} as bitmasks
+ *
+ * <p>
+ * Each card is given an index between 0 and 51:
+ *
+ * <pre>
+ * index = suit * 13 + (rank number - 1)
+ * </pre>
+ *
+ * where the suit is the ordinal of its {@code Suit} (clubs, diamonds, hearts,
+ * spades). A set of cards is stored in a {@code long} with bit <i>index</i> set
+ * for each card in the set
+ *
+ * <p>
+ * Grouping the indices by suit means each suit occupies 13 consecutive bits, so
+ * flushes can be checked with a single shift and mask
+ *
+ * @author Reid Moffat
+ */
+final class CardMask {
+
+	/**
+	 * The number of cards in a standard deck
+	 */
+	static final int DECK_SIZE = Card.DECK_SIZE;
+
+	/**
+	 * A mask with one bit set for every card in a standard deck
+	 */
+	static final long DECK = (1L << DECK_SIZE) - 1;
+
+	/**
+	 * The number of ranks (and bits) in each suit
+	 */
+	static final int SUIT_SIZE = 13;
+
+	/**
+	 * A mask covering the 13 bits of a single suit
+	 */
+	static final int SUIT_MASK = (1 << SUIT_SIZE) - 1;
+
+	/**
+	 * The zero-based rank of a jack, used for nobs
+	 */
+	static final int JACK = 10;
+
+	/**
+	 * The cribbage value of each card index, copied from {@code Card.getValue}
+	 */
+	private static final int[] VALUES = new int[DECK_SIZE];
+
+	static {
+		for (int i = 0; i < DECK_SIZE; i++) {
+			VALUES[i] = Card.of(i).getValue();
+		}
+	}
+
+	/**
+	 * This class only contains static methods and should not be initialized
+	 */
+	private CardMask() {
+	}
+
+	/**
+	 * Returns the index (0-51) of a {@code Card}
+	 *
+	 * @param card a {@code Card} object
+	 * @return the index of the {@code Card}
+	 */
+	static int index(Card card) {
+		return card.getIndex();
+	}
+
+	/**
+	 * Returns the {@code Card} object for a card index
+	 *
+	 * @param index a card index (0-51)
+	 * @return the {@code Card} the index represents
+	 */
+	static Card card(int index) {
+		return Card.of(index);
+	}
+
+	/**
+	 * Returns the zero-based rank (0 for aces, 12 for kings) of a card index
+	 *
+	 * @param index a card index (0-51)
+	 * @return the zero-based rank of the card
+	 */
+	static int rank(int index) {
+		return index % SUIT_SIZE;
+	}
+
+	/**
+	 * Returns the suit ordinal of a card index
+	 *
+	 * @param index a card index (0-51)
+	 * @return the suit ordinal of the card
+	 */
+	static int suit(int index) {
+		return index / SUIT_SIZE;
+	}
+
+	/**
+	 * Returns the cribbage value of a card index (aces are 1, face cards are 10)
+	 *
+	 * @param index a card index (0-51)
+	 * @return the cribbage value of the card
+	 */
+	static int value(int index) {
+		return VALUES[index];
+	}
+
+	/**
+	 * Returns a bitmask of the {@code Card} objects in a set
+	 *
+	 * @param cards a {@code HashSet} of {@code Card} objects
+	 * @return a bitmask with one bit set for each {@code Card}
+	 */
+	static long mask(HashSet<Card> cards) {
+		long mask = 0;
+		for (Card card : cards) {
+			mask |= 1L << index(card);
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns a set of the {@code Card} objects for each card in a bitmask
+	 *
+	 * @param mask a bitmask of cards
+	 * @return a {@code HashSet} with a {@code Card} for each bit set
+	 */
+	static HashSet<Card> cards(long mask) {
+		HashSet<Card> cards = new HashSet<Card>();
+		for (long m = mask; m != 0; m &= m - 1) {
+			cards.add(card(Long.numberOfTrailingZeros(m)));
+		}
+		return cards;
+	}
+
+	/**
+	 * Returns a 13-bit mask of the ranks present in a bitmask of cards, ignoring
+	 * suits
+	 *
+	 * @param mask a bitmask of cards
+	 * @return a mask with bit <i>r</i> set if a card of zero-based rank <i>r</i>
+	 *         is present
+	 */
+	static int ranks(long mask) {
+		return (int) ((mask | mask >>> SUIT_SIZE | mask >>> 2 * SUIT_SIZE | mask >>> 3 * SUIT_SIZE) & SUIT_MASK);
+	}
+
+	/**
+	 * Returns a bitmask of every card (in all four suits) with a zero-based rank
+	 * between {@code from} (inclusive) and {@code to} (exclusive)
+	 *
+	 * @param from the lowest zero-based rank
+	 * @param to   one more than the highest zero-based rank
+	 * @return a bitmask of every card in the range of ranks
+	 */
+	static long rankRange(int from, int to) {
+		long ranks = (1L << to) - (1L << from);
+		return ranks | ranks << SUIT_SIZE | ranks << 2 * SUIT_SIZE | ranks << 3 * SUIT_SIZE;
+	}
+
+	/**
+	 * Returns the 13 bits of a single suit in a bitmask of cards
+	 *
+	 * @param mask a bitmask of cards
+	 * @param suit a suit ordinal (0-3)
+	 * @return a mask with bit <i>r</i> set if the card of zero-based rank
+	 *         <i>r</i> and the given suit is present
+	 */
+	static int suitRanks(long mask, int suit) {
+		return (int) (mask >>> suit * SUIT_SIZE) & SUIT_MASK;
+	}
+
+}
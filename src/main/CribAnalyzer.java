@@ -0,0 +1,253 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Calculates the exact expected points in the crib for each pair of cards a
+ * player drops in a two player game
+ *
+ * <p>
+ * The crib is the player's two dropped cards plus the two cards the opponent
+ * drops, and the starter card is cut from the rest of the deck. Every pair of
+ * unseen cards the opponent could drop is equally likely, and so is every
+ * remaining starter. With six cards dealt to the player, that is C(46, 2) * 44 =
+ * 45,540 cribs for each of the 15 discards
+ *
+ * <p>
+ * The (discard, opponent card) grid is split in half along its longer side and
+ * scored in parallel on a {@code ForkJoinPool}, the same way as
+ * {@code DiscardAnalyzer}. The starters of each crib are swept with
+ * {@code HandScorer.sweepCrib}, which scores each starter rank once. Scoring
+ * only uses primitive bitmasks and the stateless {@code HandScorer}, so nothing
+ * is created per crib
+ *
+ * <p>
+ * The same pass can count how many cribs give each number of points instead of
+ * summing them ({@code histograms}), for callers that need the whole
+ * distribution of the crib, such as {@code EndgameTable}
+ *
+ * @author Reid Moffat
+ */
+final class CribAnalyzer {
+
+	/**
+	 * Pieces of the grid with at most this many (discard, opponent card) cells are
+	 * scored without being split further
+	 */
+	private static final int SPLIT_THRESHOLD = 16;
+
+	/**
+	 * Calculates the points in each crib and starter card
+	 */
+	private final HandScorer scorer;
+
+	/**
+	 * The pool the grid is scored on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Initializes a {@code CribAnalyzer}
+	 *
+	 * @param scorer calculates the points in each crib and starter card
+	 * @param pool   the pool the analysis is run on
+	 */
+	CribAnalyzer(HandScorer scorer, ForkJoinPool pool) {
+		this.scorer = scorer;
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the number of cribs (opponent discards and starter cards) each
+	 * discard is scored against
+	 *
+	 * @param dealt a bitmask of the six cards dealt to the player
+	 * @return the number of possible cribs for each discard
+	 */
+	static int outcomes(long dealt) {
+		int unseen = CardMask.DECK_SIZE - Long.bitCount(dealt);
+		return unseen * (unseen - 1) / 2 * (unseen - 2);
+	}
+
+	/**
+	 * Sums the crib points over every opponent discard and starter card, for each
+	 * pair of cards the player could drop
+	 *
+	 * @param dealt    a bitmask of the six cards dealt to the player
+	 * @param discards a bitmask of the two dropped cards for each discard
+	 * @return the total crib points of each discard (divide by
+	 *         {@code outcomes(dealt)} for the expected points)
+	 */
+	long[] totalPoints(long dealt, long[] discards) {
+		int[][] rows = this.analyze(dealt, discards, 1);
+		long[] totals = new long[discards.length];
+		for (int i = 0; i < discards.length; i++) {
+			totals[i] = rows[i][0];
+		}
+		return totals;
+	}
+
+	/**
+	 * Counts how many cribs (opponent discards and starter cards) give each number
+	 * of points, for each pair of cards the player could drop
+	 *
+	 * @param dealt    a bitmask of the six cards dealt to the player
+	 * @param discards a bitmask of the two dropped cards for each discard
+	 * @return the histogram of the crib points of each discard, indexed by points
+	 *         (0 to {@code HandScorer.MAX_POINTS}), with {@code outcomes(dealt)}
+	 *         cribs in each
+	 */
+	int[][] histograms(long dealt, long[] discards) {
+		return this.analyze(dealt, discards, HandScorer.MAX_POINTS + 1);
+	}
+
+	/**
+	 * Scores the cribs of every discard on the pool
+	 *
+	 * @param dealt    a bitmask of the six cards dealt to the player
+	 * @param discards a bitmask of the two dropped cards for each discard
+	 * @param width    1 to sum the points of each discard, or
+	 *                 {@code HandScorer.MAX_POINTS + 1} to count each number of
+	 *                 points
+	 * @return the total or histogram of each discard
+	 */
+	private int[][] analyze(long dealt, long[] discards, int width) {
+		AnalysisEvent event = Stats.ENABLED ? Stats.beginAnalysis() : null;
+		long unseen = CardMask.DECK & ~dealt;
+		int[] cards = new int[Long.bitCount(unseen)];
+		int i = 0;
+		for (long m = unseen; m != 0; m &= m - 1) {
+			cards[i++] = Long.numberOfTrailingZeros(m);
+		}
+		int[][] rows = this.pool
+				.invoke(new GridTask(discards, cards, unseen, width, 0, discards.length, 0, cards.length));
+		if (Stats.ENABLED) {
+			Stats.endAnalysis(event, Stats.Phase.CRIB_ANALYSIS, dealt, discards.length);
+		}
+		return rows;
+	}
+
+	/**
+	 * Scores a rectangle of the (discard, opponent card) grid, where the opponent
+	 * card is the lower of the two cards the opponent drops. Returns the total
+	 * points or histogram of each discard in the rectangle (and null for the other
+	 * discards)
+	 */
+	private final class GridTask extends RecursiveTask<int[][]> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Every discard in the grid
+		 */
+		private final long[] discards;
+
+		/**
+		 * The index of each unseen card, in increasing order
+		 */
+		private final int[] cards;
+
+		/**
+		 * A bitmask of the unseen cards
+		 */
+		private final long unseen;
+
+		/**
+		 * The length of each discard's result: 1 for its total points, or
+		 * {@code HandScorer.MAX_POINTS + 1} for its histogram
+		 */
+		private final int width;
+
+		/**
+		 * The range of discards in this rectangle (inclusive, exclusive)
+		 */
+		private final int fromDiscard, toDiscard;
+
+		/**
+		 * The range of positions in {@code cards} of the opponent's lower card in
+		 * this rectangle (inclusive, exclusive)
+		 */
+		private final int fromCard, toCard;
+
+		GridTask(long[] discards, int[] cards, long unseen, int width, int fromDiscard, int toDiscard, int fromCard,
+				int toCard) {
+			this.discards = discards;
+			this.cards = cards;
+			this.unseen = unseen;
+			this.width = width;
+			this.fromDiscard = fromDiscard;
+			this.toDiscard = toDiscard;
+			this.fromCard = fromCard;
+			this.toCard = toCard;
+		}
+
+		@Override
+		protected int[][] compute() {
+			int discardCount = this.toDiscard - this.fromDiscard;
+			int cardCount = this.toCard - this.fromCard;
+
+			/* Small rectangles are scored directly */
+			if (discardCount * cardCount <= SPLIT_THRESHOLD) {
+				int[][] rows = new int[this.discards.length][];
+				for (int i = this.fromDiscard; i < this.toDiscard; i++) {
+					rows[i] = new int[this.width];
+					this.score(this.discards[i], rows[i]);
+				}
+				return rows;
+			}
+
+			/* Otherwise the longer side is split in half */
+			GridTask first, second;
+			if (discardCount >= cardCount) {
+				int middle = this.fromDiscard + discardCount / 2;
+				first = new GridTask(this.discards, this.cards, this.unseen, this.width, this.fromDiscard, middle,
+						this.fromCard, this.toCard);
+				second = new GridTask(this.discards, this.cards, this.unseen, this.width, middle, this.toDiscard,
+						this.fromCard, this.toCard);
+			} else {
+				int middle = this.fromCard + cardCount / 2;
+				first = new GridTask(this.discards, this.cards, this.unseen, this.width, this.fromDiscard,
+						this.toDiscard, this.fromCard, middle);
+				second = new GridTask(this.discards, this.cards, this.unseen, this.width, this.fromDiscard,
+						this.toDiscard, middle, this.toCard);
+			}
+			second.fork();
+			int[][] rows = first.compute();
+			int[][] secondRows = second.join();
+			for (int i = 0; i < rows.length; i++) {
+				if (rows[i] == null) {
+					rows[i] = secondRows[i];
+				} else if (secondRows[i] != null) {
+					for (int j = 0; j < rows[i].length; j++) {
+						rows[i][j] += secondRows[i][j];
+					}
+				}
+			}
+			return rows;
+		}
+
+		/**
+		 * Scores the cribs of one discard for every opponent discard in this
+		 * rectangle and every starter card
+		 *
+		 * @param discard a bitmask of the player's two dropped cards
+		 * @param row     the total points (one element) or the histogram the cribs
+		 *                are added to
+		 */
+		private void score(long discard, int[] row) {
+			for (int a = this.fromCard; a < this.toCard; a++) {
+				for (int b = a + 1; b < this.cards.length; b++) {
+					long opponent = 1L << this.cards[a] | 1L << this.cards[b];
+					long crib = discard | opponent;
+					if (row.length == 1) {
+						row[0] += CribAnalyzer.this.scorer.sweepCrib(crib, this.unseen & ~opponent, null);
+					} else {
+						CribAnalyzer.this.scorer.sweepCrib(crib, this.unseen & ~opponent, row);
+					}
+				}
+			}
+		}
+	}
+
+}
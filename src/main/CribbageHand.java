@@ -1,11 +1,8 @@
 package main;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import card.Card;
 import card.Rank;
@@ -25,6 +22,17 @@ import card.Suit;
  * passing a starter {@code Card} object through {@code totalPoints} if this
  * hand has four {@code Card} objects
  * 
+ * <p>
+ * Fifteens, multiples and runs are all calculated from the number of cards of
+ * each rank in the hand and starter card, kept in a small {@code int} array,
+ * rather than from every combination of the cards
+ * 
+ * <p>
+ * Scoring doesn't change any fields: the count of each rank is only local to
+ * each call. Any number of threads can score the same hand at once without
+ * synchronization, as long as none of them changes the hand. The static
+ * {@code score} method scores a set of cards without an instance at all
+ * 
  * @author Reid Moffat
  */
 final class CribbageHand implements CribbageCombinations {
@@ -39,36 +47,13 @@ final class CribbageHand implements CribbageCombinations {
 	private HashSet<Card> hand;
 
 	/**
-	 * The starter {@code Card}
-	 * 
-	 * <p>
-	 * Kept separate from the {@code Card} hand due to points from runs and nobs
-	 */
-	private Card starter;
-
-	/**
-	 * A set that includes the hand of four {@code Card} objects and the starter
-	 * {@code Card}
-	 */
-	private HashSet<Card> handWithStarter;
-
-	/**
-	 * Every combination of {@code Card} objects in the hand and starter
-	 * {@code Card}
-	 * 
-	 * <p>
-	 * More formally, the power set of {@code handWithStarter}
-	 */
-	private HashSet<HashSet<Card>> cardCombinations;
-
-	/**
-	 * Initializes this {@code CribbageHand} with a set of {@code Cards}
+	 * Initializes this {@code CribbageHand} with a copy of a set of {@code Cards}
 	 * 
 	 * @param hand a {@code Set} of {@code Card} objects (not including the starter
 	 *             card)
 	 */
 	public CribbageHand(HashSet<Card> hand) {
-		this.hand = hand;
+		this.hand = new HashSet<Card>(hand);
 	}
 
 	/**
@@ -132,40 +117,6 @@ final class CribbageHand implements CribbageCombinations {
 		return new HashSet<Card>(hand);
 	}
 
-	/**
-	 * Some fields needs to be refreshed if the hand changes before performing a
-	 * total point calculation
-	 * 
-	 * <p>
-	 * This method must always be called in totalPoints()
-	 * 
-	 * @param starter the starter {@code Card} object
-	 */
-	private void refreshHand(Card starter) {
-		//@formatter:off
-		/*
-		 * Different point methods require different input types:
-		 * -Fifteens accepts any combination of the hand with starter card
-		 * -Multiples counts duplicates in the hand with starter card
-		 * -Runs uses any combination of the hand plus starter card
-		 * -Flushes and nobs need to differentiate between the starter and hand
-		 */
-		//@formatter:on
-		this.starter = starter;
-
-		this.handWithStarter = new HashSet<Card>(hand);
-		this.handWithStarter.add(this.starter);
-
-		/*
-		 * Although calculating a power set is O(2^n), a hand and starter card is
-		 * guaranteed to only have five {@code Card} objects
-		 * 
-		 * Using a power set significantly reduces the number of test cases, allowing
-		 * methods to be much more concise
-		 */
-		this.cardCombinations = powerSet(handWithStarter);
-	}
-
 	/**
 	 * Calculates the sum of point combinations for this hand (if it includes 4
 	 * {@code Card} objects) with a starter {@code Card} object
@@ -183,62 +134,141 @@ final class CribbageHand implements CribbageCombinations {
 		if (hand == null || starter == null || hand.size() != 4) {
 			throw new IllegalArgumentException("illegal hand and/or starter card");
 		}
-
-		/* Makes sure all fields are up to date */
-		this.refreshHand(starter);
-
-		/* Sums up all possible points from this hand */
-		return fifteens() + multiples() + runs() + flushes() + nobs();
+		return score(this.hand, starter);
 	}
 
 	/**
-	 * Returns the number of points obtained from fifteens
+	 * Calculates the sum of point combinations for a hand of four {@code Card}
+	 * objects with a starter {@code Card} object
 	 * 
 	 * <p>
-	 * Each unique combination of cards that add up to 15 is worth two points. Any
-	 * number of cards (between 2 and 5) can be used for each combination, and cards
-	 * may be used for multiple fifteens. All face cards are worth 10 when
-	 * calculating fifteens
+	 * Nothing is shared between calls, so this can be called by any number of
+	 * threads at once
 	 * 
-	 * <p>
-	 * For example, a hand with four 5s and a three has 8 (2 points from each
-	 * fifteen, 4 choose 3 = 4 fifteens from the fives) points from fifteens
+	 * @param hand    a {@code Set} of the four {@code Card} objects in the hand
+	 *                (not including the starter card)
+	 * @param starter the starter {@code Card}
+	 * @return the total number of points in the hand with the given starter
+	 *         {@code Card}
+	 * @throws IllegalArgumentException if {@code hand} does not contain exactly
+	 *                                  four {@code Card} objects or {@code starter}
+	 *                                  is {@code null}
+	 */
+	static int score(Set<Card> hand, Card starter) {
+		/* Makes sure the hand is valid */
+		if (hand == null || starter == null || hand.size() != 4) {
+			throw new IllegalArgumentException("illegal hand and/or starter card");
+		}
+
+		/* Each part is timed separately when instrumentation is on */
+		if (Stats.ENABLED) {
+			return instrumentedScore(hand, starter);
+		}
+
+		/* Fifteens, multiples and runs only depend on how many cards there are of each rank */
+		int[] counts = rankCounts(hand, starter);
+
+		/* Sums up all possible points from this hand */
+		return fifteens(counts) + multiples(counts) + runs(counts) + flushes(hand, starter) + nobs(hand, starter);
+	}
+
+	/**
+	 * Calculates the same points as {@code score}, recording the time and
+	 * allocations of each part (see {@code Stats})
 	 * 
-	 * @return the number of points obtained from fifteens
+	 * @param hand    a {@code Set} of the four {@code Card} objects in the hand
+	 * @param starter the starter {@code Card}
+	 * @return the total number of points in the hand with the given starter
+	 *         {@code Card}
 	 */
-	private int fifteens() {
-		return this.cardCombinations.stream() // Every card combination is tested
-				.mapToInt(this::isFifteen) // 2 points for each fifteen, 0 for not
-				.sum(); // Return the total points from fifteens
+	private static int instrumentedScore(Set<Card> hand, Card starter) {
+		long time = System.nanoTime();
+		long allocated = Stats.threadAllocated();
+		int[] counts = rankCounts(hand, starter);
+		time = Stats.record(Stats.Phase.CRIBBAGE_HAND_COUNTS, time, allocated);
+
+		allocated = Stats.threadAllocated();
+		int points = fifteens(counts);
+		time = Stats.record(Stats.Phase.CRIBBAGE_HAND_FIFTEENS, time, allocated);
+
+		allocated = Stats.threadAllocated();
+		points += multiples(counts);
+		time = Stats.record(Stats.Phase.CRIBBAGE_HAND_MULTIPLES, time, allocated);
+
+		allocated = Stats.threadAllocated();
+		points += runs(counts);
+		time = Stats.record(Stats.Phase.CRIBBAGE_HAND_RUNS, time, allocated);
+
+		allocated = Stats.threadAllocated();
+		points += flushes(hand, starter);
+		time = Stats.record(Stats.Phase.CRIBBAGE_HAND_FLUSHES, time, allocated);
+
+		allocated = Stats.threadAllocated();
+		points += nobs(hand, starter);
+		Stats.record(Stats.Phase.CRIBBAGE_HAND_NOBS, time, allocated);
+		return points;
 	}
 
 	/**
-	 * Checks if all the rank values of the {@code Card} objects add up to 15
+	 * Counts the {@code Card} objects of each rank in the hand and starter
+	 * {@code Card}
 	 * 
-	 * @param cards a {@code HashSet} of {@code Card} objects
-	 * @return 2 if the card values add up to 15, 0 if not
+	 * <p>
+	 * For example, three kings, an ace and a four would be
+	 * <code>[1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 3]</code>
+	 * 
+	 * @param hand    a {@code Set} of the {@code Card} objects in the hand
+	 * @param starter the starter {@code Card}
+	 * @return the number of cards of each rank, indexed by rank number - 1
 	 */
-	private int isFifteen(HashSet<Card> cards) {
-		return cards.stream().mapToInt(this::cribbageValue) // Maps each card to it's cribbage value (10 for face cards)
-				.sum() == 15 ? 2 : 0; // If the cards sum to 15, this is a fifteen and is worth 2 points
+	private static int[] rankCounts(Set<Card> hand, Card starter) {
+		int[] counts = new int[Card.RANKS.length];
+		for (Card card : hand) {
+			counts[card.getRankNumber() - 1]++;
+		}
+		counts[starter.getRankNumber() - 1]++;
+		return counts;
 	}
 
 	/**
-	 * Returns the cribbage value of a card. Used to calculate fifteens
+	 * Returns the number of points obtained from fifteens
 	 * 
 	 * <p>
-	 * Ranks are as follows:
-	 * <ul>
-	 * <li>Ace: 1</li>
-	 * <li>Two to ten: Their respective values</li>
-	 * <li>Jack, queen and king: 10</li>
-	 * </ul>
+	 * Each unique combination of cards that add up to 15 is worth two points. Any
+	 * number of cards (between 2 and 5) can be used for each combination, and cards
+	 * may be used for multiple fifteens. All face cards are worth 10 when
+	 * calculating fifteens
 	 * 
-	 * @param card a {@code Card} object
-	 * @return the cribbage value of the {@code Card} object
+	 * <p>
+	 * For example, a hand with four 5s and a three has 8 (2 points from each
+	 * fifteen, 4 choose 3 = 4 fifteens from the fives) points from fifteens
+	 * 
+	 * @param counts the number of cards of each rank
+	 * @return the number of points obtained from fifteens
 	 */
-	private int cribbageValue(Card card) {
-		return card.getRankNumber() > 10 ? 10 : card.getRankNumber(); // All face cards are worth 10
+	private static int fifteens(int[] counts) {
+		// @formatter:off
+		/*
+		 * Rather than adding up every combination of cards, this counts how many
+		 * combinations add up to each total from 0 to 15, adding one card at a time:
+		 * 
+		 * -Before any cards, only the empty combination exists (a total of 0)
+		 * -A card worth v extends every combination so far, so each total t gains
+		 *  the combinations that added up to t - v
+		 * -Totals are updated from 15 down so the same card isn't used twice
+		 */
+		// @formatter:on
+		int[] ways = new int[16];
+		ways[0] = 1;
+		for (int rank = 0; rank < counts.length; rank++) {
+			int value = Math.min(rank + 1, 10); // All face cards are worth 10
+			for (int n = 0; n < counts[rank]; n++) {
+				for (int total = 15; total >= value; total--) {
+					ways[total] += ways[total - value];
+				}
+			}
+		}
+		return 2 * ways[15]; // 2 points for each fifteen
 	}
 
 	/**
@@ -251,9 +281,10 @@ final class CribbageHand implements CribbageCombinations {
 	 * ten and a queen both have a rank value of 10 but they would not give points
 	 * for a double
 	 * 
+	 * @param counts the number of cards of each rank
 	 * @return the number of points obtained from multiples
 	 */
-	private int multiples() {
+	private static int multiples(int[] counts) {
 		// @formatter:off
 		/*
 		 * Counting points from each multiple is simple because a multiple of n cards is
@@ -261,12 +292,15 @@ final class CribbageHand implements CribbageCombinations {
 		 * 
 		 * Single: 1*1-1 = 0 points
 		 * Double: 2*2-2 = 2 points
-		 * Triple: 3*3 - 3 = 3 points
+		 * Triple: 3*3 - 3 = 6 points
 		 * Quadruple: 4*4 - 4 = 12 points
 		 */
 		// @formatter:on
-		return countDuplicates(this.handWithStarter).values() // Count of each rank present in the hand + starter
-				.stream().mapToInt(v -> v * v - v).sum(); // Total points from multiples
+		int points = 0;
+		for (int n : counts) {
+			points += n * n - n;
+		}
+		return points;
 	}
 
 	/**
@@ -278,9 +312,10 @@ final class CribbageHand implements CribbageCombinations {
 	 * multiple runs (but only the higest run is counted; a run of four is only four
 	 * points, not two runs of three)
 	 * 
+	 * @param counts the number of cards of each rank
 	 * @return the number of points obtained from runs
 	 */
-	private int runs() {
+	private static int runs(int[] counts) {
 		// @formatter:off
 		/*
 		 * Each card can be part of multiple runs of the same length, but not not
@@ -289,35 +324,29 @@ final class CribbageHand implements CribbageCombinations {
 		 * Take a hand containing cards with the ranks 2-3-3-4-5 for example:
 		 * -There are eight points from runs: 2-3-4-5 and 2-3-4-5 (with the other 3)
 		 * -The combination 2-3-4 is not counted as a run because 2-3-4-5 trumps it
+		 * 
+		 * So every stretch of three or more ranks in a row is a run, counted once for
+		 * each way of picking one card of each rank (1 * 2 * 1 * 1 = 2 runs of four)
 		 */
 		// @formatter:on
-		int score = this.cardCombinations.stream().filter(c -> c.size() == 5).mapToInt(this::isRun).sum();
-
-		/* It is only possible to have one length of run possible in a hand */
-		if (score == 0) {
-			score += this.cardCombinations.stream().filter(c -> c.size() == 4).mapToInt(this::isRun).sum();
-			if (score == 0) {
-				score += this.cardCombinations.stream().filter(c -> c.size() == 3).mapToInt(this::isRun).sum();
+		int points = 0;
+		int length = 0;
+		int runs = 1;
+		for (int rank = 0; rank <= counts.length; rank++) {
+			int n = rank < counts.length ? counts[rank] : 0;
+			if (n != 0) {
+				length++;
+				runs *= n;
+			} else {
+				/* The end of a stretch of consecutive ranks */
+				if (length >= 3) {
+					points += length * runs;
+				}
+				length = 0;
+				runs = 1;
 			}
 		}
-		return score;
-	}
-
-	/**
-	 * Checks if the supplied cards are consecutive to form a run
-	 * 
-	 * @param cards a {@code HashSet} of {@code Card} objects
-	 * @return 0 if the cards don't form a run; the length of the run (3, 4 or 5) if
-	 *         the cards do form a run
-	 */
-	private int isRun(HashSet<Card> cards) {
-		/* Creates a sorted list of card rank numbers (ex: [2, 5, 5, 11, 13]) */
-		ArrayList<Integer> values = new ArrayList<Integer>(
-				cards.stream().mapToInt(Card::getRankNumber).sorted().boxed().collect(Collectors.toList()));
-
-		/* If any card is 'out of order', no points are given for runs */
-		return IntStream.range(0, values.size() - 1).anyMatch(i -> values.get(i) + 1 != values.get(i + 1)) ? 0
-				: values.size();
+		return points;
 	}
 
 	/**
@@ -330,14 +359,16 @@ final class CribbageHand implements CribbageCombinations {
 	 * obtained. Note that if only three cards in the player's hand plus the starter
 	 * card have the same suit, this is not a flush
 	 * 
+	 * @param hand    the {@code Card} objects in the hand
+	 * @param starter the starter {@code Card}
 	 * @return the number of points obtained from flushes
 	 */
-	private int flushes() {
+	private static int flushes(Set<Card> hand, Card starter) {
 		/* A set of all the suits in this hand */
-		HashSet<Suit> suits = new HashSet<Suit>(this.hand.stream().map(Card::getSuit).collect(Collectors.toSet()));
+		HashSet<Suit> suits = new HashSet<Suit>(hand.stream().map(Card::getSuit).collect(Collectors.toSet()));
 
 		/* If all the suits are the same, the set with only have one object */
-		return suits.size() == 1 ? 4 + (suits.add(this.starter.getSuit()) ? 0 : 1) : 0;
+		return suits.size() == 1 ? 4 + (suits.add(starter.getSuit()) ? 0 : 1) : 0;
 	}
 
 	/**
@@ -348,63 +379,14 @@ final class CribbageHand implements CribbageCombinations {
 	 * One point is obtained from nobs if the player's hand has a jack of the same
 	 * suit as the starter card
 	 * 
+	 * @param hand    the {@code Card} objects in the hand
+	 * @param starter the starter {@code Card}
 	 * @return the number of points obtained from nobs
 	 */
-	private int nobs() {
-		return this.hand.stream().filter(c -> c.getRank() == Rank.JACK) // Filter out non jacks
+	private static int nobs(Set<Card> hand, Card starter) {
+		return hand.stream().filter(c -> c.getRank() == Rank.JACK) // Filter out non jacks
 				.map(Card::getSuit) // The stream includes all of the jack's suits
-				.anyMatch(this.starter.getSuit()::equals) ? 1 : 0;
-	}
-
-	/**
-	 * Maps each card rank number in cards to the number of occurrences of that rank
-	 * number
-	 * 
-	 * <p>
-	 * For example, three kings, an ace and four would have the key-value pairs:
-	 * 
-	 * <ul>
-	 * <li><code>1: 1</code></li>
-	 * <li><code>4: 1</code></li>
-	 * <li><code>13: 3</code></li>
-	 * </ul>
-	 * 
-	 * @param cards an array of {@code Card} objects
-	 * @return a {@code Map} that maps each rank number to the number of occurrences
-	 */
-	private Map<Integer, Integer> countDuplicates(HashSet<Card> cards) {
-		return cards.stream().collect(Collectors.groupingBy(Card::getRankNumber, Collectors.summingInt(x -> 1)));
-	}
-
-	/**
-	 * Returns the power set of a given {@code HashSet}
-	 * 
-	 * <p>
-	 * Adapted from <a href=
-	 * "https://stackoverflow.com/questions/1670862/obtaining-a-powerset-of-a-set-in-java">stack
-	 * overflow</a>
-	 * 
-	 * @param originalSet a {@code HashSet} of objects
-	 * @param <T>         the type of objects in {@code originalSet}
-	 * @return a {@code HashSet} containing all subsets of {@code originalSet}
-	 */
-	private static <T> HashSet<HashSet<T>> powerSet(HashSet<T> originalSet) {
-		HashSet<HashSet<T>> sets = new HashSet<HashSet<T>>();
-		if (originalSet.isEmpty()) {
-			sets.add(new HashSet<T>());
-			return sets;
-		}
-		List<T> list = new ArrayList<T>(originalSet);
-		T head = list.get(0);
-		HashSet<T> rest = new HashSet<T>(list.subList(1, list.size()));
-		for (HashSet<T> set : powerSet(rest)) {
-			HashSet<T> newSet = new HashSet<T>();
-			newSet.add(head);
-			newSet.addAll(set);
-			sets.add(newSet);
-			sets.add(set);
-		}
-		return sets;
+				.anyMatch(starter.getSuit()::equals) ? 1 : 0;
 	}
 
 }
\ No newline at end of file
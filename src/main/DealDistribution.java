@@ -0,0 +1,147 @@
+package main;
+
+/**
+ * How often each number of points is scored in each part of a two player deal,
+ * counted over many simulated deals
+ *
+ * <p>
+ * The pegging points of the pone and the dealer (including his heels) are
+ * counted together, since they depend on each other. The pone's hand, the
+ * dealer's hand and the crib are counted separately
+ *
+ * <p>
+ * Each thread of a {@code GameSimulator} fills in its own
+ * {@code DealDistribution}, and they are added together as the threads finish.
+ * Instances are not thread safe
+ *
+ * @author Reid Moffat
+ */
+final class DealDistribution {
+
+	/**
+	 * The number of pegging totals counted for each player (higher totals are
+	 * counted as the highest one, which never happens in practice)
+	 */
+	static final int PEGGING_SIZE = 32;
+
+	/**
+	 * The number of hand and crib totals (0 to 29)
+	 */
+	static final int HAND_SIZE = HandScorer.MAX_POINTS + 1;
+
+	/**
+	 * The number of deals counted
+	 */
+	private long deals;
+
+	/**
+	 * The number of deals with each pair of pegging totals, indexed by the pone's
+	 * points times {@code PEGGING_SIZE} plus the dealer's points
+	 */
+	private final long[] pegging = new long[PEGGING_SIZE * PEGGING_SIZE];
+
+	/**
+	 * The number of deals with each number of points in the pone's hand
+	 */
+	private final long[] poneHand = new long[HAND_SIZE];
+
+	/**
+	 * The number of deals with each number of points in the dealer's hand
+	 */
+	private final long[] dealerHand = new long[HAND_SIZE];
+
+	/**
+	 * The number of deals with each number of points in the crib
+	 */
+	private final long[] crib = new long[HAND_SIZE];
+
+	/**
+	 * Records a deal
+	 *
+	 * @param ponePegging   the points the pone pegged
+	 * @param dealerPegging the points the dealer pegged, including his heels
+	 * @param poneHand      the points in the pone's hand
+	 * @param dealerHand    the points in the dealer's hand
+	 * @param crib          the points in the crib
+	 */
+	void addDeal(int ponePegging, int dealerPegging, int poneHand, int dealerHand, int crib) {
+		this.deals++;
+		this.pegging[Math.min(ponePegging, PEGGING_SIZE - 1) * PEGGING_SIZE
+				+ Math.min(dealerPegging, PEGGING_SIZE - 1)]++;
+		this.poneHand[poneHand]++;
+		this.dealerHand[dealerHand]++;
+		this.crib[crib]++;
+	}
+
+	/**
+	 * Adds the deals of another distribution to this one
+	 *
+	 * @param other the distribution to add
+	 */
+	void add(DealDistribution other) {
+		this.deals += other.deals;
+		addCounts(this.pegging, other.pegging);
+		addCounts(this.poneHand, other.poneHand);
+		addCounts(this.dealerHand, other.dealerHand);
+		addCounts(this.crib, other.crib);
+	}
+
+	/**
+	 * Adds each count of an array to another
+	 *
+	 * @param counts the counts to add to
+	 * @param other  the counts to add
+	 */
+	private static void addCounts(long[] counts, long[] other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other[i];
+		}
+	}
+
+	/**
+	 * Returns the number of deals counted
+	 *
+	 * @return the number of deals
+	 */
+	long getDeals() {
+		return this.deals;
+	}
+
+	/**
+	 * Returns the number of deals with each pair of pegging totals
+	 *
+	 * @return the counts, indexed by the pone's points times
+	 *         {@code PEGGING_SIZE} plus the dealer's points
+	 */
+	long[] getPegging() {
+		return this.pegging.clone();
+	}
+
+	/**
+	 * Returns the number of deals with each number of points in the pone's hand
+	 *
+	 * @return the counts, indexed by points
+	 */
+	long[] getPoneHand() {
+		return this.poneHand.clone();
+	}
+
+	/**
+	 * Returns the number of deals with each number of points in the dealer's hand
+	 *
+	 * @return the counts, indexed by points
+	 */
+	long[] getDealerHand() {
+		return this.dealerHand.clone();
+	}
+
+	/**
+	 * Returns the number of deals with each number of points in the crib
+	 *
+	 * @return the counts, indexed by points
+	 */
+	long[] getCrib() {
+		return this.crib.clone();
+	}
+
+}
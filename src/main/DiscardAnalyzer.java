@@ -0,0 +1,536 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Calculates the average points kept in a hand for every way of dropping cards
+ * into the crib
+ *
+ * <p>
+ * The work is a grid of discards (15 pairs from six cards, or 5 single cards
+ * from five cards) by starter cards. The grid is split in half along its longer
+ * side until each piece is small, and the pieces are scored in parallel on a
+ * {@code ForkJoinPool}. Starters are split by rank, so each piece sweeps a range
+ * of ranks in every suit with {@code HandScorer.sweep}, which scores each rank
+ * once. Each piece counts how many starters give each number of points (a
+ * histogram from 0 to 29) for its discards, so the whole distribution of every
+ * discard comes from the same pass as its average
+ *
+ * <p>
+ * Nothing is shared between the pieces except the {@code HandScorer}, which is
+ * stateless. The histograms are integers, so the results are exactly the same
+ * no matter how the grid is split or scheduled, and they are always returned
+ * in the same order
+ *
+ * <p>
+ * Swapping suits doesn't change any points, so every hand is analyzed in its
+ * canonical form (see {@code CanonicalHand}) and the results are mapped back to
+ * the original suits
+ *
+ * @author Reid Moffat
+ */
+final class DiscardAnalyzer {
+
+	/**
+	 * Pieces of the grid with at most this many (discard, starter rank) cells are
+	 * scored without being split further
+	 */
+	private static final int SPLIT_THRESHOLD = 8;
+
+	/**
+	 * The pegging solver of each thread, which keeps its transposition table
+	 * between hands
+	 */
+	private static final ThreadLocal<PeggingSolver> SOLVERS = ThreadLocal.withInitial(PeggingSolver::new);
+
+	/**
+	 * Calculates the points in each hand and starter card
+	 */
+	private final HandScorer scorer;
+
+	/**
+	 * The pool the grid is scored on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Initializes a {@code DiscardAnalyzer} that uses the common
+	 * {@code ForkJoinPool}
+	 *
+	 * @param scorer calculates the points in each hand and starter card
+	 */
+	DiscardAnalyzer(HandScorer scorer) {
+		this(scorer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes a {@code DiscardAnalyzer}
+	 *
+	 * @param scorer calculates the points in each hand and starter card
+	 * @param pool   the pool the analysis is run on
+	 */
+	DiscardAnalyzer(HandScorer scorer, ForkJoinPool pool) {
+		this.scorer = scorer;
+		this.pool = pool;
+	}
+
+	/**
+	 * Calculates the average points kept in the hand for each way of dropping
+	 * cards
+	 *
+	 * <p>
+	 * Six card hands (two players) drop two cards, and five card hands (three or
+	 * four players) drop one card. Every card not in the dealt hand could be the
+	 * starter
+	 *
+	 * <p>
+	 * Results are ordered by the indices of the dropped cards (see
+	 * {@code CardMask})
+	 *
+	 * @param dealt a bitmask of the five or six cards dealt to the player
+	 * @return the result of each discard
+	 * @throws IllegalArgumentException if the hand doesn't have five or six cards
+	 */
+	List<DiscardResult> analyze(long dealt) {
+		AnalysisEvent event = Stats.ENABLED ? Stats.beginAnalysis() : null;
+		long[] discards = discards(dealt);
+		long starters = CardMask.DECK & ~dealt;
+
+		/* The grid is scored in canonical form, keeping the original order of the discards */
+		CanonicalHand canonical = CanonicalHand.of(dealt);
+		int[][] histograms = this.pool.invoke(new GridTask(canonical(canonical, discards), canonical.getMask(),
+				canonical.toCanonical(starters), 0, discards.length, 0, CardMask.SUIT_SIZE));
+
+		List<DiscardResult> results = new ArrayList<DiscardResult>(discards.length);
+		for (int i = 0; i < discards.length; i++) {
+			results.add(new DiscardResult(discards[i], dealt & ~discards[i], histograms[i]));
+		}
+		if (Stats.ENABLED) {
+			Stats.endAnalysis(event, Stats.Phase.HAND_ANALYSIS, dealt, discards.length);
+		}
+		return results;
+	}
+
+	/**
+	 * Finds the discards that keep the most points in the hand, averaged over
+	 * every possible starter card
+	 *
+	 * <p>
+	 * Each discard is first given a cheap upper bound on its total points (see
+	 * {@code upperBound}), and the discards are scored in order of their bounds.
+	 * The search stops once k discards have been scored and no bound left can
+	 * beat the k-th best total, so most of the 15 (or 5) discards are never fully
+	 * scored. Discards with the same points are ordered by the indices of the
+	 * dropped cards, so the results are exactly the first k of {@code analyze}
+	 * sorted by average points
+	 *
+	 * @param dealt a bitmask of the five or six cards dealt to the player
+	 * @param k     the number of discards to return
+	 * @return the results of the k best discards (or every discard if there are
+	 *         fewer), best first
+	 * @throws IllegalArgumentException if the hand doesn't have five or six cards
+	 *                                  or k is not positive
+	 */
+	List<DiscardResult> best(long dealt, int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("at least one discard must be returned");
+		}
+		AnalysisEvent event = Stats.ENABLED ? Stats.beginAnalysis() : null;
+		long[] discards = discards(dealt);
+		long starters = CardMask.DECK & ~dealt;
+
+		/* Each bound is packed above its discard (reversed), so sorting puts the earliest discard first on ties */
+		long[] order = new long[discards.length];
+		for (int i = 0; i < discards.length; i++) {
+			order[i] = (long) upperBound(dealt & ~discards[i], starters) << 8 | discards.length - 1 - i;
+		}
+		Arrays.sort(order);
+
+		/* The best discards so far, ordered by points and then by discard */
+		int[][] histograms = new int[discards.length][];
+		long[] totals = new long[discards.length];
+		int[] top = new int[Math.min(k, discards.length)];
+		int size = 0;
+		int scored = 0;
+		for (int j = order.length - 1; j >= 0; j--) {
+			int i = discards.length - 1 - (int) (order[j] & 0xFF);
+			if (size == top.length && (order[j] >>> 8) < totals[top[size - 1]]) {
+				break;
+			}
+			histograms[i] = new int[HandScorer.MAX_POINTS + 1];
+			totals[i] = this.scorer.sweep(dealt & ~discards[i], starters, histograms[i]);
+			scored++;
+			if (size < top.length) {
+				size++;
+			} else if (!isBetter(i, top[size - 1], totals)) {
+				continue;
+			}
+			int position = size - 1;
+			for (; position > 0 && isBetter(i, top[position - 1], totals); position--) {
+				top[position] = top[position - 1];
+			}
+			top[position] = i;
+		}
+
+		List<DiscardResult> results = new ArrayList<DiscardResult>(size);
+		for (int i : top) {
+			results.add(new DiscardResult(discards[i], dealt & ~discards[i], histograms[i]));
+		}
+		if (Stats.ENABLED) {
+			Stats.endAnalysis(event, Stats.Phase.BEST_ANALYSIS, dealt, scored);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the k results with the most expected points (see
+	 * {@code DiscardResult.expectedPoints}), best first
+	 *
+	 * <p>
+	 * Results with the same points keep their order, so for the results of
+	 * {@code analyze(long)} this is the same as {@code best}. Results that
+	 * include the crib are ranked by the hand and crib together
+	 *
+	 * @param results the result of each discard
+	 * @param k       the number of results to return
+	 * @return the k best results (or every result if there are fewer)
+	 * @throws IllegalArgumentException if k is not positive
+	 */
+	static List<DiscardResult> top(List<DiscardResult> results, int k) {
+		List<DiscardResult> top = new ArrayList<DiscardResult>(Math.min(k, results.size()));
+		for (int i : ranking(results, k)) {
+			top.add(results.get(i));
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the indices of the k results with the most expected points, the
+	 * same way as {@code top}
+	 *
+	 * @param results the result of each discard
+	 * @param k       the number of indices to return
+	 * @return the indices of the k best results, best first
+	 * @throws IllegalArgumentException if k is not positive
+	 */
+	static int[] ranking(List<DiscardResult> results, int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("at least one discard must be returned");
+		}
+		return IntStream.range(0, results.size()).boxed()
+				.sorted(Comparator.comparingDouble((Integer i) -> results.get(i).expectedPoints()).reversed())
+				.limit(k).mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Calculates the average points kept in the hand and the expected points in
+	 * the crib for each way of dropping two cards in a two player game
+	 *
+	 * <p>
+	 * Results are ordered by the indices of the dropped cards (see
+	 * {@code CardMask})
+	 *
+	 * @param dealt  a bitmask of the six cards dealt to the player
+	 * @param dealer true if the player is the dealer (and owns the crib)
+	 * @return the result of each discard
+	 * @throws IllegalArgumentException if the hand doesn't have six cards
+	 */
+	List<DiscardResult> analyze(long dealt, boolean dealer) {
+		if (Long.bitCount(dealt) != 6) {
+			throw new IllegalArgumentException("the crib can only be analyzed for six card hands");
+		}
+		CanonicalHand canonical = CanonicalHand.of(dealt);
+		long[] cribTotals = new CribAnalyzer(this.scorer, this.pool).totalPoints(canonical.getMask(),
+				canonical(canonical, discards(dealt)));
+		int cribOutcomes = CribAnalyzer.outcomes(dealt);
+
+		List<DiscardResult> results = new ArrayList<DiscardResult>(cribTotals.length);
+		for (DiscardResult hand : this.analyze(dealt)) {
+			int i = results.size();
+			results.add(hand.withCrib(cribTotals[i], cribOutcomes, dealer));
+		}
+		return results;
+	}
+
+	/**
+	 * Calculates the expected net points from pegging (the player's points minus
+	 * the opponent's) for the four cards kept by each way of dropping two cards in
+	 * a two player game (see {@code PeggingSolver})
+	 *
+	 * <p>
+	 * The discards are solved in parallel, each thread with its own
+	 * {@code PeggingSolver}, and are ordered by the indices of the dropped cards
+	 *
+	 * @param dealt  a bitmask of the six cards dealt to the player
+	 * @param dealer true if the player is the dealer
+	 * @return the expected net pegging points of each discard
+	 * @throws IllegalArgumentException if the hand doesn't have six cards
+	 */
+	double[] peggingPoints(long dealt, boolean dealer) {
+		if (Long.bitCount(dealt) != 6) {
+			throw new IllegalArgumentException("pegging can only be analyzed for six card hands");
+		}
+		AnalysisEvent event = Stats.ENABLED ? Stats.beginAnalysis() : null;
+		long[] discards = discards(dealt);
+		double[] points = this.pool.submit(() -> IntStream.range(0, discards.length).parallel()
+				.mapToDouble(i -> SOLVERS.get().expectedPoints(dealt & ~discards[i], discards[i], dealer)).toArray())
+				.join();
+		if (Stats.ENABLED) {
+			Stats.endAnalysis(event, Stats.Phase.PEGGING_ANALYSIS, dealt, discards.length);
+		}
+		return points;
+	}
+
+	/**
+	 * Calculates the probability of winning the game for each way of dropping two
+	 * cards, at a given board position
+	 *
+	 * <p>
+	 * Each kept hand is scored against every possible starter card with
+	 * {@code HandScorer.sweep}, and each crib against every opponent discard and
+	 * starter card with {@code CribAnalyzer}, so the cards thrown into the crib
+	 * count whoever owns it. The rest of the deal comes from the
+	 * {@code EndgameTable}. The results are ordered by the indices of the dropped
+	 * cards
+	 *
+	 * @param dealt         a bitmask of the six cards dealt to the player
+	 * @param dealer        true if the player is the dealer
+	 * @param score         the player's score before the deal
+	 * @param opponentScore the opponent's score before the deal
+	 * @param endgame       the table of win probabilities
+	 * @return the player's chance of winning with each discard
+	 * @throws IllegalArgumentException if the hand doesn't have six cards or a
+	 *                                  score is not between 0 and 120
+	 */
+	double[] winProbabilities(long dealt, boolean dealer, int score, int opponentScore, EndgameTable endgame) {
+		if (Long.bitCount(dealt) != 6) {
+			throw new IllegalArgumentException("win probabilities can only be analyzed for six card hands");
+		}
+		AnalysisEvent event = Stats.ENABLED ? Stats.beginAnalysis() : null;
+		long[] discards = discards(dealt);
+		long starters = CardMask.DECK & ~dealt;
+		int[][] histograms = new int[discards.length][HandScorer.MAX_POINTS + 1];
+		for (int i = 0; i < discards.length; i++) {
+			this.scorer.sweep(dealt & ~discards[i], starters, histograms[i]);
+		}
+		CanonicalHand canonical = CanonicalHand.of(dealt);
+		int[][] cribHistograms = new CribAnalyzer(this.scorer, this.pool).histograms(canonical.getMask(),
+				canonical(canonical, discards));
+		double[] wins = endgame.winProbabilities(score, opponentScore, dealer, histograms, cribHistograms);
+		if (Stats.ENABLED) {
+			Stats.endAnalysis(event, Stats.Phase.WIN_ANALYSIS, dealt, discards.length);
+		}
+		return wins;
+	}
+
+	/**
+	 * Returns every way of dropping cards from a dealt hand so that four cards are
+	 * kept
+	 *
+	 * @param dealt a bitmask of the five or six dealt cards
+	 * @return a bitmask of the dropped cards for each discard, in order of the
+	 *         cards' indices
+	 * @throws IllegalArgumentException if the hand doesn't have five or six cards
+	 */
+	static long[] discards(long dealt) {
+		int size = Long.bitCount(dealt);
+		if (size == 5) {
+			long[] discards = new long[5];
+			int i = 0;
+			for (long m = dealt; m != 0; m &= m - 1) {
+				discards[i++] = m & -m;
+			}
+			return discards;
+		} else if (size == 6) {
+			long[] discards = new long[15];
+			int i = 0;
+			for (long m1 = dealt; m1 != 0; m1 &= m1 - 1) {
+				for (long m2 = m1 & m1 - 1; m2 != 0; m2 &= m2 - 1) {
+					discards[i++] = (m1 & -m1) | (m2 & -m2);
+				}
+			}
+			return discards;
+		}
+		throw new IllegalArgumentException("a dealt hand must have five or six cards");
+	}
+
+	/**
+	 * Returns an upper bound on the total points of a four card hand over a set of
+	 * starter cards, without scoring the hand with each starter
+	 *
+	 * <p>
+	 * The hand's own fifteens, multiples and runs are counted once. A starter of
+	 * value v then adds 2 points for each subset of the hand that sums to 15 - v,
+	 * and 2 points for each card of its rank, both read from one subset-sum count.
+	 * Runs are the only points that don't simply add up, so every starter is
+	 * given the most any starter rank adds to the hand's runs. Flushes and nobs
+	 * only depend on the starter's suit and are counted exactly
+	 *
+	 * @param hand     a bitmask of the four cards in the hand
+	 * @param starters a bitmask of the possible starter cards (not in the hand)
+	 * @return at least the total points of the hand over every starter card
+	 */
+	static int upperBound(long hand, long starters) {
+		long counts = BitmaskHand.rankCounts(hand);
+		long ways = BitmaskHand.fifteenWays(counts);
+		int runs = BitmaskHand.runs(counts);
+		int handPoints = 2 * (int) (ways >>> 60) + BitmaskHand.multiples(counts) + runs;
+
+		/* Only a starter next to or on a rank in the hand can add to its runs */
+		int ranks = CardMask.suitRanks(hand, 0) | CardMask.suitRanks(hand, 1) | CardMask.suitRanks(hand, 2)
+				| CardMask.suitRanks(hand, 3);
+		int runRanks = (ranks | ranks << 1 | ranks >>> 1) & CardMask.SUIT_MASK;
+
+		int bound = 0;
+		int runGain = 0;
+		for (int rank = 0; rank < CardMask.SUIT_SIZE; rank++) {
+			int n = Long.bitCount(starters & CardMask.rankRange(rank, rank + 1));
+			if (n == 0) {
+				continue;
+			}
+			int count = (int) (counts >>> (rank << 2) & 0xF);
+			int fifteens = 2 * (int) (ways >>> (15 - CardMask.value(rank) << 2) & 0xF);
+			bound += n * (handPoints + fifteens + 2 * count);
+			if ((runRanks >>> rank & 1) != 0) {
+				runGain = Math.max(runGain, BitmaskHand.runs(counts + (1L << (rank << 2))) - runs);
+			}
+		}
+		bound += runGain * Long.bitCount(starters);
+
+		/* Flushes and nobs for the starters of each suit */
+		for (int suit = 0; suit < 4; suit++) {
+			int starter = suit * CardMask.SUIT_SIZE;
+			bound += (BitmaskHand.flushes(hand, starter) + BitmaskHand.nobs(hand, starter))
+					* Integer.bitCount(CardMask.suitRanks(starters, suit));
+		}
+		return bound;
+	}
+
+	/**
+	 * Returns true if a discard ranks before another: it keeps more points, or the
+	 * same points and comes first
+	 *
+	 * @param i      the index of a discard
+	 * @param j      the index of another discard
+	 * @param totals the total points of each discard
+	 * @return true if discard i ranks before discard j
+	 */
+	private static boolean isBetter(int i, int j, long[] totals) {
+		return totals[i] > totals[j] || totals[i] == totals[j] && i < j;
+	}
+
+	/**
+	 * Renames the suits of each discard into the canonical form of the dealt hand
+	 *
+	 * @param canonical the dealt hand in canonical form
+	 * @param discards  a bitmask of the dropped cards for each discard
+	 * @return the discards with canonical suits, in the same order
+	 */
+	private static long[] canonical(CanonicalHand canonical, long[] discards) {
+		long[] canonicalDiscards = new long[discards.length];
+		for (int i = 0; i < discards.length; i++) {
+			canonicalDiscards[i] = canonical.toCanonical(discards[i]);
+		}
+		return canonicalDiscards;
+	}
+
+	/**
+	 * Scores a rectangle of the (discard, starter rank) grid, returning the
+	 * histogram of the points of each discard in the rectangle (and null for the
+	 * other discards)
+	 */
+	private final class GridTask extends RecursiveTask<int[][]> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Every discard in the grid
+		 */
+		private final long[] discards;
+
+		/**
+		 * A bitmask of the dealt hand
+		 */
+		private final long dealt;
+
+		/**
+		 * A bitmask of every possible starter card
+		 */
+		private final long starters;
+
+		/**
+		 * The range of discards in this rectangle (inclusive, exclusive)
+		 */
+		private final int fromDiscard, toDiscard;
+
+		/**
+		 * The range of zero-based starter ranks in this rectangle (inclusive,
+		 * exclusive)
+		 */
+		private final int fromRank, toRank;
+
+		GridTask(long[] discards, long dealt, long starters, int fromDiscard, int toDiscard, int fromRank,
+				int toRank) {
+			this.discards = discards;
+			this.dealt = dealt;
+			this.starters = starters;
+			this.fromDiscard = fromDiscard;
+			this.toDiscard = toDiscard;
+			this.fromRank = fromRank;
+			this.toRank = toRank;
+		}
+
+		@Override
+		protected int[][] compute() {
+			int discardCount = this.toDiscard - this.fromDiscard;
+			int rankCount = this.toRank - this.fromRank;
+
+			/* Small rectangles are scored directly */
+			if (discardCount * rankCount <= SPLIT_THRESHOLD) {
+				int[][] histograms = new int[this.discards.length][];
+				long rangeStarters = this.starters & CardMask.rankRange(this.fromRank, this.toRank);
+				for (int i = this.fromDiscard; i < this.toDiscard; i++) {
+					histograms[i] = new int[HandScorer.MAX_POINTS + 1];
+					DiscardAnalyzer.this.scorer.sweep(this.dealt & ~this.discards[i], rangeStarters, histograms[i]);
+				}
+				return histograms;
+			}
+
+			/* Otherwise the longer side is split in half */
+			GridTask first, second;
+			if (discardCount >= rankCount) {
+				int middle = this.fromDiscard + discardCount / 2;
+				first = new GridTask(this.discards, this.dealt, this.starters, this.fromDiscard, middle,
+						this.fromRank, this.toRank);
+				second = new GridTask(this.discards, this.dealt, this.starters, middle, this.toDiscard,
+						this.fromRank, this.toRank);
+			} else {
+				int middle = this.fromRank + rankCount / 2;
+				first = new GridTask(this.discards, this.dealt, this.starters, this.fromDiscard, this.toDiscard,
+						this.fromRank, middle);
+				second = new GridTask(this.discards, this.dealt, this.starters, this.fromDiscard, this.toDiscard,
+						middle, this.toRank);
+			}
+			second.fork();
+			int[][] histograms = first.compute();
+			int[][] secondHistograms = second.join();
+			for (int i = 0; i < histograms.length; i++) {
+				if (histograms[i] == null) {
+					histograms[i] = secondHistograms[i];
+				} else if (secondHistograms[i] != null) {
+					for (int points = 0; points < histograms[i].length; points++) {
+						histograms[i][points] += secondHistograms[i][points];
+					}
+				}
+			}
+			return histograms;
+		}
+	}
+
+}
@@ -0,0 +1,319 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache of the results of a {@code DiscardAnalyzer}, so deals
+ * that come up again aren't analyzed again
+ *
+ * <p>
+ * Swapping suits doesn't change any points, so results are cached for the
+ * canonical form of each deal (see {@code CanonicalHand}) and mapped back to
+ * the suits of each lookup. The key is the canonical deal's bitmask, which
+ * only uses the low 52 bits, packed with whether the crib is included and who
+ * owns it
+ *
+ * <p>
+ * The cache is split into segments by the hash of the key, and each segment
+ * is a {@code LinkedHashMap} in access order that evicts its least recently
+ * used deals when it goes over its share of the memory budget. Threads only
+ * contend when they look up deals in the same segment, and a deal is analyzed
+ * outside of the lock, so two threads that miss the same deal at once may both
+ * analyze it. The results are the same either way. The number of hits, misses
+ * and evictions are counted in {@code LongAdder}s
+ *
+ * <p>
+ * The memory budget is compared to an estimate of the bytes each deal takes,
+ * which grows with its number of discards
+ *
+ * @author Reid Moffat
+ */
+final class DiscardCache {
+
+	/**
+	 * The memory budget by default, in bytes
+	 */
+	static final long DEFAULT_BUDGET = 64L << 20;
+
+	/**
+	 * The number of segments, a power of two
+	 */
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * The estimated bytes of a cached deal apart from its results: its key, map
+	 * entry and array
+	 */
+	private static final int ENTRY_BYTES = 96;
+
+	/**
+	 * The estimated bytes of one cached result and its histogram
+	 */
+	private static final int RESULT_BYTES = 200;
+
+	/**
+	 * The bits of the key that hold whether the crib is included and who owns it
+	 */
+	private static final int CRIB_SHIFT = CardMask.DECK_SIZE;
+
+	/**
+	 * One part of the cache, which is locked on while it is used
+	 */
+	private static final class Segment {
+
+		/**
+		 * The results of each deal in the segment, in canonical form and in order
+		 * of the canonical discards, from least to most recently used
+		 */
+		private final LinkedHashMap<Long, DiscardResult[]> entries = new LinkedHashMap<Long, DiscardResult[]>(16,
+				0.75f, true);
+
+		/**
+		 * The estimated bytes of every deal in the segment
+		 */
+		private long weight;
+	}
+
+	/**
+	 * Analyzes the deals that aren't cached
+	 */
+	private final DiscardAnalyzer analyzer;
+
+	/**
+	 * The memory budget of each segment, in bytes
+	 */
+	private final long segmentBudget;
+
+	/**
+	 * The segments of the cache
+	 */
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	/**
+	 * The number of lookups that were cached
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * The number of lookups that had to be analyzed
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * The number of deals evicted to stay within the memory budget
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Initializes an empty {@code DiscardCache}
+	 *
+	 * @param analyzer analyzes the deals that aren't cached
+	 * @param budget   the memory budget in bytes
+	 * @throws IllegalArgumentException if the budget is negative
+	 */
+	DiscardCache(DiscardAnalyzer analyzer, long budget) {
+		if (budget < 0) {
+			throw new IllegalArgumentException("the memory budget can't be negative");
+		}
+		this.analyzer = analyzer;
+		this.segmentBudget = budget / SEGMENTS;
+		for (int i = 0; i < SEGMENTS; i++) {
+			this.segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Returns the result of each way of dropping cards, analyzing the deal if it
+	 * isn't cached (see {@code DiscardAnalyzer.analyze(long)})
+	 *
+	 * @param dealt a bitmask of the five or six cards dealt to the player
+	 * @return the result of each discard, ordered by the indices of the dropped
+	 *         cards
+	 * @throws IllegalArgumentException if the hand doesn't have five or six cards
+	 */
+	List<DiscardResult> analyze(long dealt) {
+		return this.lookup(dealt, 0);
+	}
+
+	/**
+	 * Returns the result of each way of dropping two cards including the crib,
+	 * analyzing the deal if it isn't cached (see
+	 * {@code DiscardAnalyzer.analyze(long, boolean)})
+	 *
+	 * @param dealt  a bitmask of the six cards dealt to the player
+	 * @param dealer true if the player is the dealer (and owns the crib)
+	 * @return the result of each discard, ordered by the indices of the dropped
+	 *         cards
+	 * @throws IllegalArgumentException if the hand doesn't have six cards
+	 */
+	List<DiscardResult> analyze(long dealt, boolean dealer) {
+		if (Long.bitCount(dealt) != 6) {
+			throw new IllegalArgumentException("the crib can only be analyzed for six card hands");
+		}
+		return this.lookup(dealt, dealer ? 2 : 1);
+	}
+
+	/**
+	 * Looks up a deal, analyzing and caching it if it isn't cached
+	 *
+	 * @param dealt a bitmask of the dealt cards
+	 * @param crib  0 to leave out the crib, 1 if the opponent owns it, or 2 if
+	 *              the player owns it
+	 * @return the result of each discard
+	 */
+	private List<DiscardResult> lookup(long dealt, int crib) {
+		long[] discards = DiscardAnalyzer.discards(dealt);
+		CanonicalHand canonical = CanonicalHand.of(dealt);
+		long key = canonical.getMask() | (long) crib << CRIB_SHIFT;
+		Segment segment = this.segments[segment(key)];
+
+		DiscardResult[] cached;
+		synchronized (segment) {
+			cached = segment.entries.get(key);
+		}
+		if (cached != null) {
+			this.hits.increment();
+		} else {
+			this.misses.increment();
+			List<DiscardResult> results = crib == 0 ? this.analyzer.analyze(canonical.getMask())
+					: this.analyzer.analyze(canonical.getMask(), crib == 2);
+			cached = results.toArray(new DiscardResult[0]);
+			this.put(segment, key, cached);
+		}
+
+		/* The position of each discard in the cached results is its position in the canonical deal */
+		long[] canonicalDiscards = DiscardAnalyzer.discards(canonical.getMask());
+		List<DiscardResult> results = new ArrayList<DiscardResult>(discards.length);
+		for (long discard : discards) {
+			long canonicalDiscard = canonical.toCanonical(discard);
+			int i = 0;
+			while (canonicalDiscards[i] != canonicalDiscard) {
+				i++;
+			}
+			results.add(cached[i].withCards(discard, dealt & ~discard));
+		}
+		return results;
+	}
+
+	/**
+	 * Caches the results of a deal, evicting the least recently used deals of the
+	 * segment until it is within its budget
+	 *
+	 * @param segment the segment of the key
+	 * @param key     the key of the deal
+	 * @param results the results of the canonical deal
+	 */
+	private void put(Segment segment, long key, DiscardResult[] results) {
+		long weight = weight(results);
+		if (weight > this.segmentBudget) {
+			return;
+		}
+		synchronized (segment) {
+			DiscardResult[] previous = segment.entries.put(key, results);
+			segment.weight += weight - (previous == null ? 0 : weight(previous));
+
+			Iterator<DiscardResult[]> eldest = segment.entries.values().iterator();
+			while (segment.weight > this.segmentBudget) {
+				segment.weight -= weight(eldest.next());
+				eldest.remove();
+				this.evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Returns the segment of a key
+	 *
+	 * @param key the key of a deal
+	 * @return the index of the key's segment
+	 */
+	private static int segment(long key) {
+		/* Mixes the key, since canonical deals share most of their low bits */
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 60) & SEGMENTS - 1;
+	}
+
+	/**
+	 * Returns the estimated bytes of a cached deal
+	 *
+	 * @param results the results of the deal
+	 * @return the estimated bytes
+	 */
+	private static long weight(DiscardResult[] results) {
+		return ENTRY_BYTES + (long) RESULT_BYTES * results.length;
+	}
+
+	/**
+	 * Returns the number of lookups that were cached
+	 *
+	 * @return the number of hits
+	 */
+	long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that had to be analyzed
+	 *
+	 * @return the number of misses
+	 */
+	long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Returns the number of deals evicted to stay within the memory budget
+	 *
+	 * @return the number of evictions
+	 */
+	long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Returns the fraction of lookups that were cached
+	 *
+	 * @return the hit rate, or 0 if there were no lookups
+	 */
+	double hitRate() {
+		long hits = this.getHits();
+		long lookups = hits + this.getMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Returns the number of cached deals
+	 *
+	 * @return the number of deals
+	 */
+	int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.entries.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the estimated memory used by the cached deals
+	 *
+	 * @return the estimated bytes
+	 */
+	long weight() {
+		long weight = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				weight += segment.weight;
+			}
+		}
+		return weight;
+	}
+
+}
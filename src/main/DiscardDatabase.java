@@ -0,0 +1,242 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A precomputed database of the discard results of every six card deal,
+ * memory-mapped read-only (see {@code MappedTable}) from a file built by
+ * {@code DiscardDatabaseBuilder}
+ *
+ * <p>
+ * Only the canonical form of each deal is stored (see {@code CanonicalHand}).
+ * The file has a header, a directory of buckets and then one fixed size record
+ * per canonical deal:
+ *
+ * <pre>
+ * header:    magic, version, flags, records, bucket bits, record size (6 ints)
+ * directory: (buckets + 1) ints, the first record of each bucket
+ * records:   canonical deal (long), 15 hand totals (shorts),
+ *            and 15 crib totals (ints) if the crib was included
+ * </pre>
+ *
+ * A deal's bucket is found by hashing its canonical bitmask, and each bucket
+ * only has about one record, so a lookup takes constant time. The 15 totals of
+ * a record are in the order of {@code DiscardAnalyzer.discards} for the
+ * canonical deal
+ *
+ * @author Reid Moffat
+ */
+final class DiscardDatabase {
+
+	/**
+	 * Identifies a discard database file ("CRBD" in ASCII)
+	 */
+	static final int MAGIC = 0x43524244;
+
+	/**
+	 * The version of the file format, incremented whenever the layout changes
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * The flag set in the header if the crib totals are included
+	 */
+	static final int CRIB_FLAG = 1;
+
+	/**
+	 * The size in bytes of the header
+	 */
+	static final int HEADER_SIZE = 24;
+
+	/**
+	 * The number of bits in a bucket number (about a million buckets)
+	 */
+	static final int BUCKET_BITS = 20;
+
+	/**
+	 * The number of discards of a six card deal
+	 */
+	static final int DISCARDS = 15;
+
+	/**
+	 * The number of possible starter cards for a six card deal
+	 */
+	static final int STARTERS = CardMask.DECK_SIZE - 6;
+
+	/**
+	 * The mapped file
+	 */
+	private final MappedTable file;
+
+	/**
+	 * True if the crib totals are included
+	 */
+	private final boolean crib;
+
+	/**
+	 * The size in bytes of each record
+	 */
+	private final int recordSize;
+
+	/**
+	 * The byte offset of the first record
+	 */
+	private final int recordsStart;
+
+	/**
+	 * Initializes a {@code DiscardDatabase} from a mapped file with a valid header
+	 *
+	 * @param file the mapped database file
+	 */
+	private DiscardDatabase(MappedTable file) {
+		this.file = file;
+		this.crib = (file.getInt(8) & CRIB_FLAG) != 0;
+		this.recordSize = file.getInt(20);
+		this.recordsStart = HEADER_SIZE + 4 * ((1 << BUCKET_BITS) + 1);
+	}
+
+	/**
+	 * Memory-maps a discard database file
+	 *
+	 * @param path the location of the database file
+	 * @return the mapped {@code DiscardDatabase}
+	 * @throws IOException if the file can't be read or isn't a valid database
+	 */
+	static DiscardDatabase open(Path path) throws IOException {
+		MappedTable file = MappedTable.open(path);
+		if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+			throw new IOException(path + " is not a discard database");
+		}
+		if (file.getInt(4) != VERSION) {
+			throw new IOException(path + " has version " + file.getInt(4) + ", expected " + VERSION);
+		}
+		long expectedSize = (long) HEADER_SIZE + 4 * ((1 << BUCKET_BITS) + 1)
+				+ (long) file.getInt(12) * file.getInt(20);
+		if (file.getInt(16) != BUCKET_BITS || file.getInt(20) != recordSize((file.getInt(8) & CRIB_FLAG) != 0)
+				|| file.size() != expectedSize) {
+			throw new IOException(path + " is not a valid discard database");
+		}
+		return new DiscardDatabase(file);
+	}
+
+	/**
+	 * Returns the size in bytes of each record
+	 *
+	 * @param crib true if the crib totals are included
+	 * @return the size of a record
+	 */
+	static int recordSize(boolean crib) {
+		return 8 + 2 * DISCARDS + (crib ? 4 * DISCARDS : 0);
+	}
+
+	/**
+	 * Returns the bucket of a canonical deal
+	 *
+	 * @param canonical a bitmask of a canonical six card deal
+	 * @return the deal's bucket number
+	 */
+	static int bucket(long canonical) {
+		return (int) (canonical * 0x9E3779B97F4A7C15L >>> 64 - BUCKET_BITS);
+	}
+
+	/**
+	 * Returns true if the crib totals are included
+	 *
+	 * @return true if the crib was included when the database was built
+	 */
+	boolean includesCrib() {
+		return this.crib;
+	}
+
+	/**
+	 * Looks up the average points kept in the hand for each way of dropping two
+	 * cards from a six card deal
+	 *
+	 * @param dealt a bitmask of the six cards dealt to the player
+	 * @return the result of each discard, in the same order as
+	 *         {@code DiscardAnalyzer.analyze}
+	 * @throws IllegalArgumentException if the hand doesn't have six cards
+	 */
+	List<DiscardResult> lookup(long dealt) {
+		return this.lookup(dealt, false, false);
+	}
+
+	/**
+	 * Looks up the average points kept in the hand and the expected points in the
+	 * crib for each way of dropping two cards from a six card deal
+	 *
+	 * @param dealt  a bitmask of the six cards dealt to the player
+	 * @param dealer true if the player is the dealer (and owns the crib)
+	 * @return the result of each discard, in the same order as
+	 *         {@code DiscardAnalyzer.analyze}
+	 * @throws IllegalArgumentException if the hand doesn't have six cards or the
+	 *                                  crib is not included in this database
+	 */
+	List<DiscardResult> lookup(long dealt, boolean dealer) {
+		if (!this.crib) {
+			throw new IllegalArgumentException("this discard database doesn't include the crib");
+		}
+		return this.lookup(dealt, true, dealer);
+	}
+
+	/**
+	 * Looks up the results of each discard of a six card deal
+	 *
+	 * @param dealt       a bitmask of the six cards dealt to the player
+	 * @param includeCrib true if the crib totals should be included
+	 * @param dealer      true if the player is the dealer
+	 * @return the result of each discard
+	 */
+	private List<DiscardResult> lookup(long dealt, boolean includeCrib, boolean dealer) {
+		if (Long.bitCount(dealt) != 6) {
+			throw new IllegalArgumentException("the discard database only has six card hands");
+		}
+		CanonicalHand canonical = CanonicalHand.of(dealt);
+		int record = this.find(canonical.getMask());
+		long[] canonicalDiscards = DiscardAnalyzer.discards(canonical.getMask());
+
+		List<DiscardResult> results = new ArrayList<DiscardResult>(DISCARDS);
+		for (long discard : DiscardAnalyzer.discards(dealt)) {
+			/* The position of the discard in the record is its position in the canonical deal */
+			long canonicalDiscard = canonical.toCanonical(discard);
+			int i = 0;
+			while (canonicalDiscards[i] != canonicalDiscard) {
+				i++;
+			}
+
+			int handTotal = this.file.getShort(record + 8 + 2 * i);
+			if (includeCrib) {
+				int cribTotal = this.file.getInt(record + 8 + 2 * DISCARDS + 4 * i);
+				results.add(new DiscardResult(discard, dealt & ~discard, handTotal, STARTERS, cribTotal,
+						CribAnalyzer.outcomes(dealt), dealer));
+			} else {
+				results.add(new DiscardResult(discard, dealt & ~discard, handTotal, STARTERS));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the byte offset of the record of a canonical deal
+	 *
+	 * @param canonical a bitmask of a canonical six card deal
+	 * @return the offset of the deal's record
+	 * @throws IllegalStateException if the deal is not in the database
+	 */
+	private int find(long canonical) {
+		int bucket = bucket(canonical);
+		int from = this.file.getInt(HEADER_SIZE + 4 * bucket);
+		int to = this.file.getInt(HEADER_SIZE + 4 * (bucket + 1));
+		for (int i = from; i < to; i++) {
+			int record = this.recordsStart + i * this.recordSize;
+			if (this.file.getLong(record) == canonical) {
+				return record;
+			}
+		}
+		throw new IllegalStateException("the discard database is missing a deal");
+	}
+
+}
@@ -0,0 +1,282 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the {@code DiscardDatabase} file offline
+ *
+ * <p>
+ * Every canonical six card deal is analyzed with {@code DiscardAnalyzer}, in
+ * parallel on a {@code ForkJoinPool}. The records are split into chunks, and
+ * each finished chunk is written to its own file in a {@code .parts} directory
+ * next to the output (through a temporary file, so a chunk file is either
+ * complete or missing). If the build is stopped or crashes, running it again
+ * skips every chunk that was already written. Once all chunks exist they are
+ * joined into the database file and the parts are deleted
+ *
+ * <p>
+ * Usage: {@code DiscardDatabaseBuilder <output> [--crib] [--threads=<n>]}.
+ * Including the crib scores 683,100 cribs per deal, so it takes much longer
+ *
+ * @author Reid Moffat
+ */
+final class DiscardDatabaseBuilder {
+
+	/**
+	 * The number of records in each chunk
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * The location of the database file
+	 */
+	private final Path output;
+
+	/**
+	 * The directory the finished chunks are written to
+	 */
+	private final Path parts;
+
+	/**
+	 * True if the crib totals should be included
+	 */
+	private final boolean crib;
+
+	/**
+	 * The pool the deals are analyzed on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Analyzes each deal
+	 */
+	private final DiscardAnalyzer analyzer;
+
+	/**
+	 * Initializes a {@code DiscardDatabaseBuilder}
+	 *
+	 * @param output  the location of the database file
+	 * @param crib    true if the crib totals should be included
+	 * @param threads the number of threads to build with
+	 */
+	DiscardDatabaseBuilder(Path output, boolean crib, int threads) {
+		this.output = output.toAbsolutePath();
+		this.parts = this.output.resolveSibling(this.output.getFileName() + ".parts");
+		this.crib = crib;
+		this.pool = new ForkJoinPool(threads);
+		this.analyzer = new DiscardAnalyzer(RankScoreTable.INSTANCE, this.pool);
+	}
+
+	/**
+	 * Builds the database, resuming from any chunks that were already written
+	 *
+	 * @throws IOException if a file can't be written
+	 */
+	void build() throws IOException {
+		/* Every canonical deal in bucket order, and the first record of each bucket */
+		int[] directory = new int[(1 << DiscardDatabase.BUCKET_BITS) + 1];
+		long[] deals = canonicalDeals(directory);
+
+		Files.createDirectories(this.parts);
+		int chunks = (deals.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		try {
+			this.pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				try {
+					this.buildChunk(deals, chunk);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("the build was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("a chunk could not be built", e.getCause());
+		} finally {
+			this.pool.shutdown();
+		}
+
+		this.join(deals.length, directory, chunks);
+	}
+
+	/**
+	 * Returns every canonical six card deal, sorted by bucket, and fills in the
+	 * first record of each bucket
+	 *
+	 * @param directory filled with the index of the first record of each bucket
+	 *                  (the last entry is the number of records)
+	 * @return the canonical deals in the order of their records
+	 */
+	private static long[] canonicalDeals(int[] directory) {
+		/* Counts the deals in each bucket */
+		int count = 0;
+		for (long deal = first(6); deal != 0; deal = next(deal)) {
+			if (CanonicalHand.canonicalize(deal) == deal) {
+				directory[DiscardDatabase.bucket(deal) + 1]++;
+				count++;
+			}
+		}
+		for (int i = 1; i < directory.length; i++) {
+			directory[i] += directory[i - 1];
+		}
+
+		/* Places each deal in its bucket */
+		long[] deals = new long[count];
+		int[] next = directory.clone();
+		for (long deal = first(6); deal != 0; deal = next(deal)) {
+			if (CanonicalHand.canonicalize(deal) == deal) {
+				deals[next[DiscardDatabase.bucket(deal)]++] = deal;
+			}
+		}
+		return deals;
+	}
+
+	/**
+	 * Returns the bitmask with the lowest {@code k} cards
+	 *
+	 * @param k the number of cards
+	 * @return the first combination of {@code k} cards
+	 */
+	private static long first(int k) {
+		return (1L << k) - 1;
+	}
+
+	/**
+	 * Returns the next combination of cards with the same number of cards, in
+	 * increasing order of bitmask (Gosper's hack)
+	 *
+	 * @param cards a bitmask of cards
+	 * @return the next combination, or 0 if this is the last one in the deck
+	 */
+	private static long next(long cards) {
+		long lowest = cards & -cards;
+		long ripple = cards + lowest;
+		long next = ripple | ((cards ^ ripple) >>> 2) / lowest;
+		return (next & ~CardMask.DECK) == 0 ? next : 0;
+	}
+
+	/**
+	 * Analyzes the deals of one chunk and writes their records to the chunk's
+	 * file, unless the chunk was already written
+	 *
+	 * @param deals every canonical deal in record order
+	 * @param chunk the chunk number
+	 * @throws IOException if the chunk file can't be written
+	 */
+	private void buildChunk(long[] deals, int chunk) throws IOException {
+		Path file = this.chunkFile(chunk);
+		int from = chunk * CHUNK_SIZE;
+		int to = Math.min(deals.length, from + CHUNK_SIZE);
+		int recordSize = DiscardDatabase.recordSize(this.crib);
+		if (Files.exists(file) && Files.size(file) == (long) (to - from) * recordSize) {
+			return;
+		}
+
+		ByteBuffer records = ByteBuffer.allocate((to - from) * recordSize);
+		for (int i = from; i < to; i++) {
+			records.putLong(deals[i]);
+			List<DiscardResult> results = this.crib ? this.analyzer.analyze(deals[i], true)
+					: this.analyzer.analyze(deals[i]);
+			for (DiscardResult result : results) {
+				records.putShort((short) result.getTotalPoints());
+			}
+			if (this.crib) {
+				for (DiscardResult result : results) {
+					records.putInt((int) result.getCribTotalPoints());
+				}
+			}
+		}
+		records.flip();
+		MappedTable.write(records, file);
+	}
+
+	/**
+	 * Joins the header, directory and every chunk into the database file, then
+	 * deletes the chunks
+	 *
+	 * @param records   the number of records
+	 * @param directory the first record of each bucket
+	 * @param chunks    the number of chunks
+	 * @throws IOException if a file can't be read or written
+	 */
+	private void join(int records, int[] directory, int chunks) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(DiscardDatabase.HEADER_SIZE + 4 * directory.length);
+		header.putInt(DiscardDatabase.MAGIC).putInt(DiscardDatabase.VERSION)
+				.putInt(this.crib ? DiscardDatabase.CRIB_FLAG : 0).putInt(records)
+				.putInt(DiscardDatabase.BUCKET_BITS).putInt(DiscardDatabase.recordSize(this.crib));
+		for (int start : directory) {
+			header.putInt(start);
+		}
+		header.flip();
+
+		MappedTable.write(this.output, channel -> {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			/* The chunks are copied by the operating system without passing through the heap */
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				try (FileChannel data = FileChannel.open(this.chunkFile(chunk), StandardOpenOption.READ)) {
+					for (long copied = 0; copied < data.size();) {
+						copied += data.transferTo(copied, data.size() - copied, channel);
+					}
+				}
+			}
+		});
+
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			Files.delete(this.chunkFile(chunk));
+		}
+		Files.delete(this.parts);
+	}
+
+	/**
+	 * Returns the location of a chunk's file
+	 *
+	 * @param chunk the chunk number
+	 * @return the chunk file
+	 */
+	private Path chunkFile(int chunk) {
+		return this.parts.resolve(String.format("chunk-%05d.bin", chunk));
+	}
+
+	/**
+	 * Builds a discard database
+	 *
+	 * @param args the output file, then the options {@code --crib} and
+	 *             {@code --threads=<n>}
+	 * @throws IOException if a file can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: DiscardDatabaseBuilder <output> [--crib] [--threads=<n>]");
+			return;
+		}
+		boolean crib = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("--crib")) {
+				crib = true;
+			} else if (args[i].startsWith("--threads=")) {
+				threads = Integer.parseInt(args[i].substring("--threads=".length()));
+			} else {
+				throw new IllegalArgumentException("unknown option " + args[i]);
+			}
+		}
+
+		long start = System.nanoTime();
+		new DiscardDatabaseBuilder(Paths.get(args[0]), crib, threads).build();
+		System.out.println("Built " + args[0] + " in " + (System.nanoTime() - start) / 1000000000 + " seconds");
+	}
+
+}
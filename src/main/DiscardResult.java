@@ -0,0 +1,429 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import card.Card;
+
+/**
+ * The points a player can expect from the hand they keep after dropping one or
+ * two cards, averaged over every possible starter card
+ * 
+ * <p>
+ * In a two player game the result can also include the expected points in the
+ * crib. The crib belongs to the dealer, so its points are added to the hand's
+ * points for the dealer and subtracted for the opponent (pone)
+ * 
+ * <p>
+ * A result calculated by {@code DiscardAnalyzer} also has the histogram of the
+ * hand's points: how many starter cards give each number of points from 0 to
+ * 29. The variance, quantiles and chance of scoring at least a number of points
+ * all come from the histogram without scoring the hand again
+ * 
+ * <p>
+ * Instances are immutable
+ * 
+ * @author Reid Moffat
+ */
+final class DiscardResult {
+
+	/**
+	 * A bitmask of the dropped cards
+	 */
+	private final long discard;
+
+	/**
+	 * A bitmask of the four cards kept in the hand
+	 */
+	private final long kept;
+
+	/**
+	 * The sum of the hand's points over every possible starter card
+	 */
+	private final long totalPoints;
+
+	/**
+	 * The number of possible starter cards
+	 */
+	private final int starters;
+
+	/**
+	 * The number of starter cards that give each number of points in the hand, or
+	 * null if the distribution was not included
+	 */
+	private final int[] histogram;
+
+	/**
+	 * The sum of the crib's points over every opponent discard and starter card
+	 */
+	private final long cribTotalPoints;
+
+	/**
+	 * The number of possible cribs (0 if the crib was not included)
+	 */
+	private final int cribOutcomes;
+
+	/**
+	 * True if the player is the dealer (and owns the crib)
+	 */
+	private final boolean dealer;
+
+	/**
+	 * Initializes a {@code DiscardResult} that doesn't include the crib
+	 * 
+	 * @param discard     a bitmask of the dropped cards
+	 * @param kept        a bitmask of the four cards kept in the hand
+	 * @param totalPoints the sum of the hand's points over every possible starter
+	 * @param starters    the number of possible starter cards
+	 */
+	DiscardResult(long discard, long kept, long totalPoints, int starters) {
+		this(discard, kept, totalPoints, starters, null, 0, 0, false);
+	}
+
+	/**
+	 * Initializes a {@code DiscardResult} with the distribution of the hand's
+	 * points, which doesn't include the crib
+	 * 
+	 * @param discard   a bitmask of the dropped cards
+	 * @param kept      a bitmask of the four cards kept in the hand
+	 * @param histogram the number of starter cards that give each number of
+	 *                  points (0 to {@code HandScorer.MAX_POINTS}), which is not
+	 *                  copied
+	 */
+	DiscardResult(long discard, long kept, int[] histogram) {
+		this(discard, kept, total(histogram), count(histogram), histogram, 0, 0, false);
+	}
+
+	/**
+	 * Initializes a {@code DiscardResult} that includes the crib
+	 * 
+	 * @param discard         a bitmask of the dropped cards
+	 * @param kept            a bitmask of the four cards kept in the hand
+	 * @param totalPoints     the sum of the hand's points over every possible
+	 *                        starter
+	 * @param starters        the number of possible starter cards
+	 * @param cribTotalPoints the sum of the crib's points over every possible crib
+	 * @param cribOutcomes    the number of possible cribs
+	 * @param dealer          true if the player is the dealer
+	 */
+	DiscardResult(long discard, long kept, long totalPoints, int starters, long cribTotalPoints, int cribOutcomes,
+			boolean dealer) {
+		this(discard, kept, totalPoints, starters, null, cribTotalPoints, cribOutcomes, dealer);
+	}
+
+	/**
+	 * Initializes a {@code DiscardResult}
+	 * 
+	 * @param discard         a bitmask of the dropped cards
+	 * @param kept            a bitmask of the four cards kept in the hand
+	 * @param totalPoints     the sum of the hand's points over every possible
+	 *                        starter
+	 * @param starters        the number of possible starter cards
+	 * @param histogram       the number of starters that give each number of
+	 *                        points, or null
+	 * @param cribTotalPoints the sum of the crib's points over every possible crib
+	 * @param cribOutcomes    the number of possible cribs (0 if the crib is not
+	 *                        included)
+	 * @param dealer          true if the player is the dealer
+	 */
+	private DiscardResult(long discard, long kept, long totalPoints, int starters, int[] histogram,
+			long cribTotalPoints, int cribOutcomes, boolean dealer) {
+		this.discard = discard;
+		this.kept = kept;
+		this.totalPoints = totalPoints;
+		this.starters = starters;
+		this.histogram = histogram;
+		this.cribTotalPoints = cribTotalPoints;
+		this.cribOutcomes = cribOutcomes;
+		this.dealer = dealer;
+	}
+
+	/**
+	 * Returns a copy of this result that includes the crib, keeping the
+	 * distribution of the hand's points
+	 * 
+	 * @param cribTotalPoints the sum of the crib's points over every possible crib
+	 * @param cribOutcomes    the number of possible cribs
+	 * @param dealer          true if the player is the dealer
+	 * @return the result with the crib
+	 */
+	DiscardResult withCrib(long cribTotalPoints, int cribOutcomes, boolean dealer) {
+		return new DiscardResult(this.discard, this.kept, this.totalPoints, this.starters, this.histogram,
+				cribTotalPoints, cribOutcomes, dealer);
+	}
+
+	/**
+	 * Returns a copy of this result for other cards with the same points, such as
+	 * the same discard with its suits renamed (see {@code CanonicalHand})
+	 *
+	 * @param discard a bitmask of the dropped cards
+	 * @param kept    a bitmask of the four cards kept in the hand
+	 * @return the result for the cards
+	 */
+	DiscardResult withCards(long discard, long kept) {
+		return new DiscardResult(discard, kept, this.totalPoints, this.starters, this.histogram,
+				this.cribTotalPoints, this.cribOutcomes, this.dealer);
+	}
+
+	/**
+	 * Returns the sum of the points in a histogram
+	 * 
+	 * @param histogram the count of each number of points
+	 * @return the total points
+	 */
+	private static long total(int[] histogram) {
+		long total = 0;
+		for (int points = 0; points < histogram.length; points++) {
+			total += (long) points * histogram[points];
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of outcomes in a histogram
+	 * 
+	 * @param histogram the count of each number of points
+	 * @return the sum of the counts
+	 */
+	private static int count(int[] histogram) {
+		int count = 0;
+		for (int c : histogram) {
+			count += c;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a bitmask of the dropped cards
+	 * 
+	 * @return a bitmask of the dropped cards
+	 */
+	long getDiscard() {
+		return this.discard;
+	}
+
+	/**
+	 * Returns a bitmask of the four cards kept in the hand
+	 * 
+	 * @return a bitmask of the kept cards
+	 */
+	long getKept() {
+		return this.kept;
+	}
+
+	/**
+	 * Returns the sum of the hand's points over every possible starter card
+	 * 
+	 * @return the total points from every starter
+	 */
+	long getTotalPoints() {
+		return this.totalPoints;
+	}
+
+	/**
+	 * Returns the number of possible starter cards
+	 * 
+	 * @return the number of possible starter cards
+	 */
+	int getStarters() {
+		return this.starters;
+	}
+
+	/**
+	 * Returns the sum of the crib's points over every opponent discard and starter
+	 * card, or 0 if the crib was not included
+	 * 
+	 * @return the total crib points from every possible crib
+	 */
+	long getCribTotalPoints() {
+		return this.cribTotalPoints;
+	}
+
+	/**
+	 * Returns the average number of points in the kept hand
+	 * 
+	 * @return the average points over every possible starter card
+	 */
+	double averagePoints() {
+		return (double) this.totalPoints / this.starters;
+	}
+
+	/**
+	 * Returns true if this result includes the distribution of the hand's points
+	 * 
+	 * @return true if the histogram was included
+	 */
+	boolean includesDistribution() {
+		return this.histogram != null;
+	}
+
+	/**
+	 * Returns the number of starter cards that give each number of points in the
+	 * hand
+	 * 
+	 * @return a copy of the histogram, indexed by points (0 to
+	 *         {@code HandScorer.MAX_POINTS})
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	int[] getHistogram() {
+		return this.checkedHistogram().clone();
+	}
+
+	/**
+	 * Returns the variance of the hand's points over every possible starter card
+	 * 
+	 * @return the population variance of the points
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	double variance() {
+		int[] histogram = this.checkedHistogram();
+		double mean = this.averagePoints();
+		double sum = 0;
+		for (int points = 0; points < histogram.length; points++) {
+			sum += histogram[points] * (points - mean) * (points - mean);
+		}
+		return sum / this.starters;
+	}
+
+	/**
+	 * Returns the standard deviation of the hand's points over every possible
+	 * starter card
+	 * 
+	 * @return the square root of the variance
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	double standardDeviation() {
+		return Math.sqrt(this.variance());
+	}
+
+	/**
+	 * Returns the chance that the hand scores at least a number of points
+	 * 
+	 * @param points a number of points
+	 * @return the fraction of starter cards that give at least {@code points}
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	double probabilityAtLeast(int points) {
+		int[] histogram = this.checkedHistogram();
+		int count = 0;
+		for (int p = Math.max(points, 0); p < histogram.length; p++) {
+			count += histogram[p];
+		}
+		return (double) count / this.starters;
+	}
+
+	/**
+	 * Returns a quantile of the hand's points: the fewest points that at least a
+	 * fraction of the starter cards give at most
+	 * 
+	 * <p>
+	 * For example, {@code quantile(0.5)} is the median, {@code quantile(0)} is
+	 * the worst case and {@code quantile(1)} is the best case
+	 * 
+	 * @param fraction a fraction between 0 and 1
+	 * @return the quantile of the points
+	 * @throws IllegalArgumentException if the fraction is not between 0 and 1
+	 * @throws IllegalStateException    if the distribution was not included
+	 */
+	int quantile(double fraction) {
+		if (!(fraction >= 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("a quantile must be between 0 and 1");
+		}
+		int[] histogram = this.checkedHistogram();
+		double needed = Math.max(fraction * this.starters, 1);
+		int count = 0;
+		for (int points = 0; points < histogram.length; points++) {
+			count += histogram[points];
+			if (count >= needed) {
+				return points;
+			}
+		}
+		return histogram.length - 1;
+	}
+
+	/**
+	 * Returns the fewest points the hand can score with any starter card
+	 * 
+	 * @return the worst case points
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	int minPoints() {
+		return this.quantile(0);
+	}
+
+	/**
+	 * Returns the most points the hand can score with any starter card
+	 * 
+	 * @return the best case points
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	int maxPoints() {
+		return this.quantile(1);
+	}
+
+	/**
+	 * Returns the histogram, checking that it was included
+	 * 
+	 * @return the histogram
+	 * @throws IllegalStateException if the distribution was not included
+	 */
+	private int[] checkedHistogram() {
+		if (this.histogram == null) {
+			throw new IllegalStateException("this result doesn't include the distribution of the hand's points");
+		}
+		return this.histogram;
+	}
+
+	/**
+	 * Returns true if this result includes the expected points in the crib
+	 * 
+	 * @return true if the crib was included
+	 */
+	boolean includesCrib() {
+		return this.cribOutcomes != 0;
+	}
+
+	/**
+	 * Returns true if the player is the dealer (and owns the crib)
+	 * 
+	 * @return true if the player is the dealer
+	 */
+	boolean isDealer() {
+		return this.dealer;
+	}
+
+	/**
+	 * Returns the average number of points in the crib, or 0 if the crib was not
+	 * included
+	 * 
+	 * @return the average points over every possible opponent discard and starter
+	 */
+	double averageCribPoints() {
+		return this.includesCrib() ? (double) this.cribTotalPoints / this.cribOutcomes : 0;
+	}
+
+	/**
+	 * Returns the expected points the player gains from this discard: the hand's
+	 * average points plus the crib's average points for the dealer, or minus them
+	 * for the opponent
+	 * 
+	 * @return the expected points of this discard
+	 */
+	double expectedPoints() {
+		return this.averagePoints() + (this.dealer ? 1 : -1) * this.averageCribPoints();
+	}
+
+	/**
+	 * Returns the dropped cards in order of their index (see {@code CardMask})
+	 * 
+	 * @return a list of the dropped {@code Card} objects
+	 */
+	List<Card> discardedCards() {
+		List<Card> cards = new ArrayList<Card>();
+		for (long m = this.discard; m != 0; m &= m - 1) {
+			cards.add(CardMask.card(Long.numberOfTrailingZeros(m)));
+		}
+		return cards;
+	}
+
+}
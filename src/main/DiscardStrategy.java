@@ -0,0 +1,76 @@
+package main;
+
+import java.util.SplittableRandom;
+
+/**
+ * An interface for a way of choosing which two cards to drop into the crib in
+ * a two player game, where cards are stored as indices and hands as bitmasks
+ * (see {@code CardMask})
+ *
+ * <p>
+ * Strategies are shared by every thread of a {@code GameSimulator}, so they
+ * must not keep any state between calls. Any randomness must come from the
+ * {@code SplittableRandom} passed in, so games can be replayed from their seed
+ *
+ * @author Reid Moffat
+ */
+public interface DiscardStrategy {
+
+	/**
+	 * Chooses the cards to drop into the crib
+	 *
+	 * @param dealt         a bitmask of the six cards dealt to the player
+	 * @param dealer        true if the player is the dealer (and owns the crib)
+	 * @param score         the player's score before the deal
+	 * @param opponentScore the opponent's score before the deal
+	 * @param random        the random numbers of the game
+	 * @return a bitmask of the two dropped cards
+	 */
+	public long discard(long dealt, boolean dealer, int score, int opponentScore, SplittableRandom random);
+
+	/**
+	 * Returns a strategy that drops two random cards
+	 *
+	 * @return a random {@code DiscardStrategy}
+	 */
+	public static DiscardStrategy random() {
+		return (dealt, dealer, score, opponentScore, random) -> {
+			long[] discards = DiscardAnalyzer.discards(dealt);
+			return discards[random.nextInt(discards.length)];
+		};
+	}
+
+	/**
+	 * Returns a strategy that keeps the hand with the most points averaged over
+	 * every possible starter card, ignoring the crib (see
+	 * {@code DiscardAnalyzer.best})
+	 *
+	 * @param scorer calculates the points in each hand and starter card
+	 * @return a {@code DiscardStrategy} that maximizes the kept hand
+	 */
+	public static DiscardStrategy bestHand(HandScorer scorer) {
+		DiscardAnalyzer analyzer = new DiscardAnalyzer(scorer);
+		return (dealt, dealer, score, opponentScore, random) -> analyzer.best(dealt, 1).get(0).getDiscard();
+	}
+
+	/**
+	 * Returns the strategy with the given command line name ({@code random} or
+	 * {@code best-hand})
+	 *
+	 * @param name   the name of the strategy (not case sensitive)
+	 * @param scorer calculates the points in each hand and starter card
+	 * @return the {@code DiscardStrategy} with the given name
+	 * @throws IllegalArgumentException if no strategy has the given name
+	 */
+	public static DiscardStrategy fromName(String name, HandScorer scorer) {
+		switch (name.trim().toLowerCase()) {
+		case "random":
+			return random();
+		case "best-hand":
+			return bestHand(scorer);
+		default:
+			throw new IllegalArgumentException("unknown discard strategy " + name);
+		}
+	}
+
+}
@@ -0,0 +1,538 @@
+package main;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The probability of winning a two player game from every board position,
+ * which near the end of a game matters more than the expected points
+ *
+ * <p>
+ * A deal is scored in order: pegging (with his heels), the pone's hand, the
+ * dealer's hand and then the crib, and the game ends as soon as a player
+ * reaches 121. The points of each part come from the distributions of many
+ * simulated deals ({@code GameSimulator.sampleDeals}) between two players who
+ * keep the best hand and peg greedily, with every hand scored by
+ * {@code RankScoreTable}. The parts are treated as independent of each other,
+ * and if both players would reach 121 during pegging each is given half the
+ * win
+ *
+ * <p>
+ * Every deal scores at least one point (the last card), so a position only
+ * depends on positions with a higher total score, and the probabilities are
+ * found exactly by dynamic programming from the highest total down. The table
+ * holds {@code deal(x, y)}, the dealer's chance of winning before a deal where
+ * the dealer has {@code x} points and the pone has {@code y}. The pone's chance
+ * is one minus the dealer's, so the table covers every pair of scores with
+ * either player dealing
+ *
+ * <p>
+ * When the player's chance is worked out for each discard, the player's hand
+ * and the crib come from the discard's own distributions (the crib from
+ * {@code CribAnalyzer}), so the cards the player throws change the result. The
+ * rest of the deal comes from the sampled distributions and the next deal from
+ * the table
+ *
+ * <p>
+ * The file has a header, the counts of the sampled distributions and the
+ * table, with each probability stored as an unsigned 16 bit fraction (about
+ * 34 kB in total). It is generated on first use, cached in the user's cache
+ * directory, and memory-mapped (see {@code MappedTable}), so the tables are
+ * read where they are instead of being copied onto the heap
+ *
+ * @author Reid Moffat
+ */
+final class EndgameTable {
+
+	/**
+	 * The default location of the table file, which can be changed with the
+	 * system property {@code cribbage.endgameTable}: {@code endgame.dat} in the
+	 * user's cache directory (see {@code MappedTable}), so it is only generated
+	 * once instead of in every working directory
+	 */
+	static final Path DEFAULT_PATH = MappedTable.cacheFile("cribbage.endgameTable", "endgame.dat");
+
+	/**
+	 * The number of deals simulated to generate the table
+	 */
+	static final int SAMPLE_DEALS = 200000;
+
+	/**
+	 * The seed of the simulated deals, so the table is always the same
+	 */
+	private static final long SEED = 121;
+
+	/**
+	 * Identifies an endgame table file ("CRBE" in ASCII)
+	 */
+	private static final int MAGIC = 0x43524245;
+
+	/**
+	 * The version of the file format, incremented whenever the layout changes
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * The size in bytes of the file header (magic, version, sampled deals, pegging
+	 * size and winning score)
+	 */
+	private static final int HEADER_SIZE = 20;
+
+	/**
+	 * The number of scores a player can have before winning (0 to 120)
+	 */
+	private static final int SCORES = GameStats.WINNING_SCORE;
+
+	/**
+	 * The number of pairs of pegging totals
+	 */
+	private static final int PEGGING_PAIRS = DealDistribution.PEGGING_SIZE * DealDistribution.PEGGING_SIZE;
+
+	/**
+	 * The number of counts in the file: the pegging totals, pone hands, dealer
+	 * hands and cribs
+	 */
+	private static final int COUNTS = PEGGING_PAIRS + 3 * DealDistribution.HAND_SIZE;
+
+	/**
+	 * The size in bytes of the table of probabilities
+	 */
+	private static final int TABLE_SIZE = 2 * SCORES * SCORES;
+
+	/**
+	 * The size in bytes of the file
+	 */
+	private static final int FILE_SIZE = HEADER_SIZE + 4 * COUNTS + TABLE_SIZE;
+
+	/**
+	 * The stored value of a probability of 1
+	 */
+	private static final double ONE = Character.MAX_VALUE;
+
+	/**
+	 * The probability of each pair of pegging totals, indexed by the pone's
+	 * points times {@code DealDistribution.PEGGING_SIZE} plus the dealer's points
+	 */
+	private final double[] pegging;
+
+	/**
+	 * The probability of each number of points in the pone's hand
+	 */
+	private final double[] poneHand;
+
+	/**
+	 * The probability of each number of points in the dealer's hand
+	 */
+	private final double[] dealerHand;
+
+	/**
+	 * The dealer's chance of winning before each deal, indexed by
+	 * {@code x * SCORES + y}
+	 */
+	private final MappedTable deal;
+
+	/**
+	 * Initializes an {@code EndgameTable} from a valid file
+	 *
+	 * @param file the mapped file
+	 */
+	private EndgameTable(MappedTable file) {
+		int[] counts = new int[COUNTS];
+		for (int i = 0; i < COUNTS; i++) {
+			counts[i] = file.getInt(HEADER_SIZE + 4 * i);
+		}
+		this.pegging = probabilities(counts, 0, PEGGING_PAIRS);
+		this.poneHand = probabilities(counts, PEGGING_PAIRS, PEGGING_PAIRS + DealDistribution.HAND_SIZE);
+		this.dealerHand = probabilities(counts, PEGGING_PAIRS + DealDistribution.HAND_SIZE,
+				PEGGING_PAIRS + 2 * DealDistribution.HAND_SIZE);
+		this.deal = file.slice(HEADER_SIZE + 4 * COUNTS, TABLE_SIZE);
+	}
+
+	/**
+	 * Memory-maps an endgame table file, generating it first if it doesn't exist
+	 * or was written by an older version
+	 *
+	 * @param path the location of the table file
+	 * @return the {@code EndgameTable}
+	 * @throws IOException if the file can't be read or written, or it isn't a
+	 *                     valid endgame table
+	 */
+	static EndgameTable open(Path path) throws IOException {
+		if (!Files.exists(path) || isOlderVersion(path)) {
+			generate(path);
+		}
+
+		MappedTable file = MappedTable.open(path);
+		if (file.size() != FILE_SIZE || file.getInt(0) != MAGIC || file.getInt(4) != VERSION || file.getInt(8) <= 0
+				|| file.getInt(12) != DealDistribution.PEGGING_SIZE || file.getInt(16) != SCORES) {
+			throw new IOException(path + " is not a valid endgame table");
+		}
+		return new EndgameTable(file);
+	}
+
+	/**
+	 * Returns true if a file is an endgame table written by an older version
+	 *
+	 * @param path the location of the table file
+	 * @return true if the file has this table's magic and an older version
+	 * @throws IOException if the file can't be read
+	 */
+	private static boolean isOlderVersion(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+			return in.readInt() == MAGIC && in.readInt() < VERSION;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Simulates deals, solves every position and writes the table to a file
+	 *
+	 * <p>
+	 * The table is written to a temporary file that is then moved into place, so
+	 * another process never sees a partially written table
+	 *
+	 * @param path the location of the table file
+	 * @throws IOException if the file can't be written
+	 */
+	static void generate(Path path) throws IOException {
+		HandScorer scorer = RankScoreTable.INSTANCE;
+		GameSimulator.Player player = new GameSimulator.Player(DiscardStrategy.bestHand(scorer),
+				PeggingStrategy.greedy(), "best-hand:greedy");
+		DealDistribution deals = new GameSimulator(scorer, player, player, ForkJoinPool.commonPool())
+				.sampleDeals(SAMPLE_DEALS, SEED);
+
+		/* The counts are stored so that the distributions match the tables */
+		int[] counts = new int[COUNTS];
+		int i = 0;
+		for (long[] distribution : new long[][] { deals.getPegging(), deals.getPoneHand(), deals.getDealerHand(),
+				deals.getCrib() }) {
+			for (long count : distribution) {
+				counts[i++] = (int) count;
+			}
+		}
+		double[] table = solve(probabilities(counts, 0, PEGGING_PAIRS),
+				probabilities(counts, PEGGING_PAIRS, PEGGING_PAIRS + DealDistribution.HAND_SIZE),
+				probabilities(counts, PEGGING_PAIRS + DealDistribution.HAND_SIZE,
+						PEGGING_PAIRS + 2 * DealDistribution.HAND_SIZE),
+				probabilities(counts, PEGGING_PAIRS + 2 * DealDistribution.HAND_SIZE, COUNTS));
+
+		ByteBuffer file = ByteBuffer.allocate(FILE_SIZE);
+		file.putInt(MAGIC).putInt(VERSION).putInt(SAMPLE_DEALS).putInt(DealDistribution.PEGGING_SIZE)
+				.putInt(SCORES);
+		for (int count : counts) {
+			file.putInt(count);
+		}
+		for (double probability : table) {
+			file.putChar((char) Math.round(probability * ONE));
+		}
+		MappedTable.write(file, path);
+	}
+
+	/**
+	 * Finds the dealer's chance of winning at every position
+	 *
+	 * @param pegging    the probability of each pair of pegging totals
+	 * @param poneHand   the probability of each number of points in the pone's
+	 *                   hand
+	 * @param dealerHand the probability of each number of points in the dealer's
+	 *                   hand
+	 * @param crib       the probability of each number of points in the crib
+	 * @return the dealer's chance before each deal
+	 */
+	private static double[] solve(double[] pegging, double[] poneHand, double[] dealerHand, double[] crib) {
+		double[] dealTable = new double[SCORES * SCORES];
+		double[] showTable = new double[SCORES * SCORES];
+		double[] cribTable = new double[SCORES * SCORES];
+
+		/* The dealer's chance before the pone shows their hand */
+		double[] poneTable = new double[SCORES * SCORES];
+
+		for (int total = 2 * (SCORES - 1); total >= 0; total--) {
+			int fromX = Math.max(0, total - (SCORES - 1));
+			int toX = Math.min(SCORES - 1, total);
+
+			/*
+			 * The deal only needs positions with a higher total, since pegging scores at
+			 * least one point (the chance of no pegging points is 0)
+			 */
+			for (int x = fromX; x <= toX; x++) {
+				dealTable[x * SCORES + total - x] = afterPegging(pegging, poneTable, x, total - x);
+			}
+
+			/* After the crib, the pone deals next with the same total or higher */
+			for (int x = fromX; x <= toX; x++) {
+				int y = total - x;
+				double chance = 0;
+				for (int points = 0; points < crib.length; points++) {
+					chance += crib[points] * (x + points >= SCORES ? 1 : 1 - dealTable[y * SCORES + x + points]);
+				}
+				cribTable[x * SCORES + y] = chance;
+			}
+			for (int x = fromX; x <= toX; x++) {
+				int y = total - x;
+				double chance = 0;
+				for (int points = 0; points < dealerHand.length; points++) {
+					chance += dealerHand[points] * (x + points >= SCORES ? 1 : cribTable[(x + points) * SCORES + y]);
+				}
+				showTable[x * SCORES + y] = chance;
+			}
+			for (int x = fromX; x <= toX; x++) {
+				int y = total - x;
+				double chance = 0;
+				for (int points = 0; points < poneHand.length; points++) {
+					chance += poneHand[points] * (y + points >= SCORES ? 0 : showTable[x * SCORES + y + points]);
+				}
+				poneTable[x * SCORES + y] = chance;
+			}
+		}
+		return dealTable;
+	}
+
+	/**
+	 * Returns the dealer's chance of winning from the start of a deal, given their
+	 * chance at every position after pegging
+	 *
+	 * @param pegging the probability of each pair of pegging totals
+	 * @param after   the dealer's chance after pegging, indexed by
+	 *                {@code x * SCORES + y}
+	 * @param x       the dealer's score
+	 * @param y       the pone's score
+	 * @return the dealer's chance of winning
+	 */
+	private static double afterPegging(double[] pegging, double[] after, int x, int y) {
+		double chance = 0;
+		for (int pone = 0; pone < DealDistribution.PEGGING_SIZE; pone++) {
+			for (int dealer = 0; dealer < DealDistribution.PEGGING_SIZE; dealer++) {
+				double probability = pegging[pone * DealDistribution.PEGGING_SIZE + dealer];
+				if (probability == 0) {
+					continue;
+				}
+				boolean dealerWins = x + dealer >= SCORES;
+				boolean poneWins = y + pone >= SCORES;
+				if (dealerWins || poneWins) {
+					chance += probability * (dealerWins && poneWins ? 0.5 : dealerWins ? 1 : 0);
+				} else {
+					chance += probability * after[(x + dealer) * SCORES + y + pone];
+				}
+			}
+		}
+		return chance;
+	}
+
+	/**
+	 * Returns the probability of winning the game before a deal
+	 *
+	 * @param score         the player's score (0-120)
+	 * @param opponentScore the opponent's score (0-120)
+	 * @param dealer        true if the player deals
+	 * @return the player's chance of winning
+	 * @throws IllegalArgumentException if a score is not between 0 and 120
+	 */
+	double winProbability(int score, int opponentScore, boolean dealer) {
+		checkScores(score, opponentScore);
+		return dealer ? chance(this.deal, score * SCORES + opponentScore)
+				: 1 - chance(this.deal, opponentScore * SCORES + score);
+	}
+
+	/**
+	 * Returns the probability of winning the game for each way of dropping two
+	 * cards, given how many starters give each number of points in the kept hand
+	 * and how many cribs give each number of points in the crib
+	 *
+	 * <p>
+	 * The pegging and the opponent's hand are scored from the sampled
+	 * distributions, and the player's hand and the crib from the discard's own
+	 * distributions. Everything before the player's hand is shown is the same for
+	 * every discard, so it is only worked out once
+	 *
+	 * @param score         the player's score (0-120)
+	 * @param opponentScore the opponent's score (0-120)
+	 * @param dealer        true if the player deals (and owns the crib)
+	 * @param handPoints    for each discard, the number of starters that give
+	 *                      each number of points in the kept hand (see
+	 *                      {@code HandScorer.sweep})
+	 * @param cribPoints    for each discard, the number of cribs that give each
+	 *                      number of points (see {@code CribAnalyzer.histograms})
+	 * @return the player's chance of winning with each discard
+	 * @throws IllegalArgumentException if a score is not between 0 and 120
+	 */
+	double[] winProbabilities(int score, int opponentScore, boolean dealer, int[][] handPoints,
+			int[][] cribPoints) {
+		checkScores(score, opponentScore);
+		int x = dealer ? score : opponentScore;
+		int y = dealer ? opponentScore : score;
+
+		/*
+		 * The chance of each position (x, y) when the player's hand is about to be
+		 * shown, and the player's chance of winning before then
+		 */
+		double[] reach = new double[SCORES * SCORES];
+		double decided = 0;
+		for (int pone = 0; pone < DealDistribution.PEGGING_SIZE; pone++) {
+			for (int dealerPegging = 0; dealerPegging < DealDistribution.PEGGING_SIZE; dealerPegging++) {
+				double probability = this.pegging[pone * DealDistribution.PEGGING_SIZE + dealerPegging];
+				if (probability == 0) {
+					continue;
+				}
+				int peggedX = x + dealerPegging;
+				int peggedY = y + pone;
+				boolean dealerWins = peggedX >= SCORES;
+				boolean poneWins = peggedY >= SCORES;
+				if (dealerWins || poneWins) {
+					decided += probability * (dealerWins && poneWins ? 0.5 : dealerWins == dealer ? 1 : 0);
+				} else if (!dealer) {
+					reach[peggedX * SCORES + peggedY] += probability;
+				} else {
+					/* The dealer's hand comes after the pone's */
+					for (int points = 0; points < this.poneHand.length; points++) {
+						if (peggedY + points < SCORES) {
+							reach[peggedX * SCORES + peggedY + points] += probability * this.poneHand[points];
+						}
+					}
+				}
+			}
+		}
+
+		double[] chances = new double[handPoints.length];
+		for (int i = 0; i < handPoints.length; i++) {
+			double[] hand = probabilities(handPoints[i], 0, handPoints[i].length);
+
+			/* The dealer's chance before the crib, and (for the pone) before the dealer's hand */
+			double[] beforeCrib = this.beforeCrib(probabilities(cribPoints[i], 0, cribPoints[i].length), x, y);
+			double[] beforeShow = dealer ? null : this.beforeShow(beforeCrib, x, y);
+
+			double chance = decided;
+			for (int position = x * SCORES + y; position < reach.length; position++) {
+				if (reach[position] == 0) {
+					continue;
+				}
+				int reachedX = position / SCORES;
+				int reachedY = position % SCORES;
+				double handChance = 0;
+				for (int points = 0; points < hand.length; points++) {
+					if (hand[points] == 0) {
+						continue;
+					}
+					if (dealer) {
+						handChance += hand[points] * (reachedX + points >= SCORES ? 1
+								: beforeCrib[(reachedX + points) * SCORES + reachedY]);
+					} else {
+						handChance += hand[points] * (reachedY + points >= SCORES ? 1
+								: 1 - beforeShow[reachedX * SCORES + reachedY + points]);
+					}
+				}
+				chance += reach[position] * handChance;
+			}
+			chances[i] = chance;
+		}
+		return chances;
+	}
+
+	/**
+	 * Returns the dealer's chance of winning before the crib is shown, at every
+	 * position from a starting position on
+	 *
+	 * <p>
+	 * After the crib the pone deals next, so each position comes from the table
+	 * with the players swapped
+	 *
+	 * @param crib the probability of each number of points in the crib
+	 * @param x    the dealer's lowest score
+	 * @param y    the pone's lowest score
+	 * @return the dealer's chance, indexed by {@code x * SCORES + y} (0 before
+	 *         the starting position)
+	 */
+	private double[] beforeCrib(double[] crib, int x, int y) {
+		double[] chances = new double[SCORES * SCORES];
+		for (int dealerScore = x; dealerScore < SCORES; dealerScore++) {
+			for (int poneScore = y; poneScore < SCORES; poneScore++) {
+				double chance = 0;
+				for (int points = 0; points < crib.length; points++) {
+					if (crib[points] != 0) {
+						chance += crib[points] * (dealerScore + points >= SCORES ? 1
+								: 1 - chance(this.deal, poneScore * SCORES + dealerScore + points));
+					}
+				}
+				chances[dealerScore * SCORES + poneScore] = chance;
+			}
+		}
+		return chances;
+	}
+
+	/**
+	 * Returns the dealer's chance of winning before the dealer shows their hand, at
+	 * every position from a starting position on
+	 *
+	 * @param beforeCrib the dealer's chance before the crib (see
+	 *                   {@code beforeCrib})
+	 * @param x          the dealer's lowest score
+	 * @param y          the pone's lowest score
+	 * @return the dealer's chance, indexed by {@code x * SCORES + y} (0 before
+	 *         the starting position)
+	 */
+	private double[] beforeShow(double[] beforeCrib, int x, int y) {
+		double[] chances = new double[SCORES * SCORES];
+		for (int dealerScore = x; dealerScore < SCORES; dealerScore++) {
+			for (int poneScore = y; poneScore < SCORES; poneScore++) {
+				double chance = 0;
+				for (int points = 0; points < this.dealerHand.length; points++) {
+					chance += this.dealerHand[points] * (dealerScore + points >= SCORES ? 1
+							: beforeCrib[(dealerScore + points) * SCORES + poneScore]);
+				}
+				chances[dealerScore * SCORES + poneScore] = chance;
+			}
+		}
+		return chances;
+	}
+
+	/**
+	 * Checks that two scores are before the end of a game
+	 *
+	 * @param score         the player's score
+	 * @param opponentScore the opponent's score
+	 * @throws IllegalArgumentException if a score is not between 0 and 120
+	 */
+	private static void checkScores(int score, int opponentScore) {
+		if (score < 0 || score >= SCORES || opponentScore < 0 || opponentScore >= SCORES) {
+			throw new IllegalArgumentException("scores must be between 0 and " + (SCORES - 1));
+		}
+	}
+
+	/**
+	 * Returns the probabilities of a range of counts
+	 *
+	 * @param counts the counts
+	 * @param from   the first count (inclusive)
+	 * @param to     the last count (exclusive)
+	 * @return each count divided by the sum of the counts in the range
+	 */
+	private static double[] probabilities(int[] counts, int from, int to) {
+		long total = 0;
+		for (int i = from; i < to; i++) {
+			total += counts[i];
+		}
+		double[] probabilities = new double[to - from];
+		for (int i = from; i < to; i++) {
+			probabilities[i - from] = (double) counts[i] / total;
+		}
+		return probabilities;
+	}
+
+	/**
+	 * Reads a probability from the table
+	 *
+	 * @param table    the mapped table
+	 * @param position the position, {@code x * SCORES + y}
+	 * @return the dealer's chance of winning at the position
+	 */
+	private static double chance(MappedTable table, int position) {
+		return table.getChar(2 * position) / ONE;
+	}
+
+}
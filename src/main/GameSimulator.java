@@ -0,0 +1,569 @@
+package main;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays complete two player games to 121 between two players with different
+ * strategies, to compare the strategies by how often they win
+ *
+ * <p>
+ * Each deal is played in full: both hands are dealt and discard into the
+ * crib, the starter is cut (his heels scores 2 for the dealer), the hands are
+ * pegged, and then the pone's hand, the dealer's hand and the crib are shown.
+ * The game ends as soon as a player reaches 121, even in the middle of the
+ * play or the show. The first dealer of each game is random and the deal
+ * alternates from there
+ *
+ * <p>
+ * The games are split in half until each piece is small, and the pieces are
+ * played in parallel on a {@code ForkJoinPool}. Every piece has its own
+ * {@code SplittableRandom}, split from its parent's when the piece is made, and
+ * its own {@code GameStats}, which are added together as the pieces are
+ * joined. The way the games are split only depends on the number of games, so
+ * the same seed always plays the same games and gives the same results, no
+ * matter how many threads there are
+ *
+ * <p>
+ * Usage: {@code GameSimulator [--games=<n>] [--seed=<n>] [--threads=<n>]
+ * [--scoring=<mode>] [--player1=<discard>:<pegging>]
+ * [--player2=<discard>:<pegging>]}
+ *
+ * @author Reid Moffat
+ */
+final class GameSimulator {
+
+	/**
+	 * A player's strategies
+	 */
+	static final class Player {
+
+		/**
+		 * How the player chooses their discard
+		 */
+		private final DiscardStrategy discard;
+
+		/**
+		 * How the player chooses their cards during pegging
+		 */
+		private final PeggingStrategy pegging;
+
+		/**
+		 * The name of the player's strategies
+		 */
+		private final String name;
+
+		/**
+		 * Initializes a {@code Player}
+		 *
+		 * @param discard how the player chooses their discard
+		 * @param pegging how the player chooses their cards during pegging
+		 * @param name    the name of the player's strategies
+		 */
+		Player(DiscardStrategy discard, PeggingStrategy pegging, String name) {
+			this.discard = discard;
+			this.pegging = pegging;
+			this.name = name;
+		}
+
+		/**
+		 * Returns the player with the given command line name, which is the names of
+		 * a discard and a pegging strategy separated by a colon (for example
+		 * {@code best-hand:greedy})
+		 *
+		 * @param name   the name of the player's strategies
+		 * @param scorer calculates the points in each hand and starter card
+		 * @return the {@code Player} with the given strategies
+		 * @throws IllegalArgumentException if either strategy doesn't exist
+		 */
+		static Player fromName(String name, HandScorer scorer) {
+			String[] strategies = name.split(":", -1);
+			if (strategies.length != 2) {
+				throw new IllegalArgumentException("a player must be <discard>:<pegging>, not " + name);
+			}
+			return new Player(DiscardStrategy.fromName(strategies[0], scorer),
+					PeggingStrategy.fromName(strategies[1]), name);
+		}
+
+		/**
+		 * Returns the name of the player's strategies
+		 *
+		 * @return the player's name
+		 */
+		String getName() {
+			return this.name;
+		}
+	}
+
+	/**
+	 * Pieces with at most this many games are played without being split further
+	 */
+	private static final int GAMES_PER_TASK = 256;
+
+	/**
+	 * The number of cards dealt to each player
+	 */
+	private static final int DEALT_CARDS = 6;
+
+	/**
+	 * About the number of deals in a game, used to size the pieces of single
+	 * deals
+	 */
+	private static final int DEALS_PER_GAME = 8;
+
+	/**
+	 * Calculates the points in each hand and crib
+	 */
+	private final HandScorer scorer;
+
+	/**
+	 * The two players
+	 */
+	private final Player[] players;
+
+	/**
+	 * The pool the games are played on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Initializes a {@code GameSimulator}
+	 *
+	 * @param scorer calculates the points in each hand and crib
+	 * @param first  player 0
+	 * @param second player 1
+	 * @param pool   the pool the games are played on
+	 */
+	GameSimulator(HandScorer scorer, Player first, Player second, ForkJoinPool pool) {
+		this.scorer = scorer;
+		this.players = new Player[] { first, second };
+		this.pool = pool;
+	}
+
+	/**
+	 * Plays a number of games
+	 *
+	 * @param games the number of games to play
+	 * @param seed  the seed of the random numbers
+	 * @return the results of the games
+	 * @throws IllegalArgumentException if the number of games is negative
+	 * @throws IllegalStateException    if a strategy makes an illegal choice
+	 */
+	GameStats simulate(long games, long seed) {
+		if (games < 0) {
+			throw new IllegalArgumentException("the number of games can't be negative");
+		}
+		return this.pool.invoke(new GameTask(games, new SplittableRandom(seed)));
+	}
+
+	/**
+	 * Plays single deals from a score of 0 to 0, with a random dealer, and counts
+	 * the points scored in each part of the deal
+	 *
+	 * @param deals the number of deals to play
+	 * @param seed  the seed of the random numbers
+	 * @return the distribution of the points in the deals
+	 * @throws IllegalArgumentException if the number of deals is negative
+	 * @throws IllegalStateException    if a strategy makes an illegal choice
+	 */
+	DealDistribution sampleDeals(long deals, long seed) {
+		if (deals < 0) {
+			throw new IllegalArgumentException("the number of deals can't be negative");
+		}
+		return this.pool.invoke(new DealTask(deals, new SplittableRandom(seed)));
+	}
+
+	/**
+	 * Plays a range of games, splitting it in half if it is large
+	 */
+	private final class GameTask extends RecursiveTask<GameStats> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The number of games to play
+		 */
+		private final long games;
+
+		/**
+		 * The random numbers of these games
+		 */
+		private final SplittableRandom random;
+
+		GameTask(long games, SplittableRandom random) {
+			this.games = games;
+			this.random = random;
+		}
+
+		@Override
+		protected GameStats compute() {
+			/* Small pieces are played directly */
+			if (this.games <= GAMES_PER_TASK) {
+				GameStats stats = new GameStats();
+				Game game = new Game(this.random, stats);
+				for (long i = 0; i < this.games; i++) {
+					game.play();
+				}
+				return stats;
+			}
+
+			/* Otherwise the second half gets a new random stream */
+			long half = this.games / 2;
+			GameTask second = new GameTask(this.games - half, this.random.split());
+			GameTask first = new GameTask(half, this.random);
+			second.fork();
+			GameStats stats = first.compute();
+			stats.add(second.join());
+			return stats;
+		}
+	}
+
+	/**
+	 * Plays a range of single deals, splitting it in half if it is large
+	 */
+	private final class DealTask extends RecursiveTask<DealDistribution> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The number of deals to play
+		 */
+		private final long deals;
+
+		/**
+		 * The random numbers of these deals
+		 */
+		private final SplittableRandom random;
+
+		DealTask(long deals, SplittableRandom random) {
+			this.deals = deals;
+			this.random = random;
+		}
+
+		@Override
+		protected DealDistribution compute() {
+			/* Small pieces are played directly */
+			if (this.deals <= GAMES_PER_TASK * DEALS_PER_GAME) {
+				DealDistribution distribution = new DealDistribution();
+				Game game = new Game(this.random, new GameStats());
+				for (long i = 0; i < this.deals; i++) {
+					game.sampleDeal(distribution);
+				}
+				return distribution;
+			}
+
+			/* Otherwise the second half gets a new random stream */
+			long half = this.deals / 2;
+			DealTask second = new DealTask(this.deals - half, this.random.split());
+			DealTask first = new DealTask(half, this.random);
+			second.fork();
+			DealDistribution distribution = first.compute();
+			distribution.add(second.join());
+			return distribution;
+		}
+	}
+
+	/**
+	 * The state of the game being played by one piece
+	 */
+	private final class Game {
+
+		/**
+		 * The random numbers of the games
+		 */
+		private final SplittableRandom random;
+
+		/**
+		 * Where the results are recorded
+		 */
+		private final GameStats stats;
+
+		/**
+		 * The card indices of the deck, the first 13 of which are shuffled for each
+		 * deal
+		 */
+		private final int[] deck = new int[CardMask.DECK_SIZE];
+
+		/**
+		 * Each player's score
+		 */
+		private final int[] scores = new int[2];
+
+		/**
+		 * A bitmask of the four cards each player kept
+		 */
+		private final long[] kept = new long[2];
+
+		/**
+		 * A bitmask of the cards each player hasn't played yet during pegging
+		 */
+		private final long[] hands = new long[2];
+
+		/**
+		 * The points each player pegged in the current deal, including his heels
+		 */
+		private final int[] pegged = new int[2];
+
+		/**
+		 * The points in each player's hand in the current deal
+		 */
+		private final int[] shown = new int[2];
+
+		/**
+		 * The points in the crib in the current deal
+		 */
+		private int cribPoints;
+
+		Game(SplittableRandom random, GameStats stats) {
+			this.random = random;
+			this.stats = stats;
+			for (int i = 0; i < this.deck.length; i++) {
+				this.deck[i] = i;
+			}
+		}
+
+		/**
+		 * Plays one game and records its result
+		 */
+		void play() {
+			this.scores[0] = 0;
+			this.scores[1] = 0;
+			int dealer = this.random.nextInt(2);
+			int deals = 1;
+			while (!this.deal(dealer)) {
+				dealer = 1 - dealer;
+				deals++;
+			}
+			int winner = this.scores[0] >= GameStats.WINNING_SCORE ? 0 : 1;
+			this.stats.addGame(winner, this.scores[1 - winner], deals);
+		}
+
+		/**
+		 * Plays one deal from a score of 0 to 0 with a random dealer and records the
+		 * points scored in each part of it
+		 *
+		 * @param distribution where the points are recorded
+		 */
+		void sampleDeal(DealDistribution distribution) {
+			this.scores[0] = 0;
+			this.scores[1] = 0;
+			int dealer = this.random.nextInt(2);
+			this.deal(dealer);
+			distribution.addDeal(this.pegged[1 - dealer], this.pegged[dealer], this.shown[1 - dealer],
+					this.shown[dealer], this.cribPoints);
+		}
+
+		/**
+		 * Plays one deal
+		 *
+		 * @param dealer the player who deals
+		 * @return true if the game was won during the deal
+		 */
+		private boolean deal(int dealer) {
+			int pone = 1 - dealer;
+			this.pegged[0] = 0;
+			this.pegged[1] = 0;
+			this.shown[0] = 0;
+			this.shown[1] = 0;
+			this.cribPoints = 0;
+
+			/* Only the cards that are dealt and the starter need to be shuffled */
+			for (int i = 0; i <= 2 * DEALT_CARDS; i++) {
+				int j = i + this.random.nextInt(this.deck.length - i);
+				int card = this.deck[i];
+				this.deck[i] = this.deck[j];
+				this.deck[j] = card;
+			}
+			long crib = 0;
+			for (int player = 0; player < 2; player++) {
+				long dealt = 0;
+				for (int i = player * DEALT_CARDS; i < (player + 1) * DEALT_CARDS; i++) {
+					dealt |= 1L << this.deck[i];
+				}
+				long discard = GameSimulator.this.players[player].discard.discard(dealt, player == dealer,
+						this.scores[player], this.scores[1 - player], this.random);
+				if ((discard & ~dealt) != 0 || Long.bitCount(discard) != 2) {
+					throw new IllegalStateException(GameSimulator.this.players[player].name
+							+ " must discard two of its own cards");
+				}
+				this.kept[player] = dealt & ~discard;
+				crib |= discard;
+			}
+			int starter = this.deck[2 * DEALT_CARDS];
+
+			/* His heels */
+			if (CardMask.rank(starter) == CardMask.JACK && this.peggingScore(dealer, 2)) {
+				return true;
+			}
+
+			if (this.peg(pone)) {
+				return true;
+			}
+
+			/* The show, in order */
+			HandScorer scorer = GameSimulator.this.scorer;
+			this.shown[pone] = scorer.score(this.kept[pone], starter);
+			this.stats.addHand(pone, this.shown[pone]);
+			if (this.score(pone, this.shown[pone])) {
+				return true;
+			}
+			this.shown[dealer] = scorer.score(this.kept[dealer], starter);
+			this.stats.addHand(dealer, this.shown[dealer]);
+			if (this.score(dealer, this.shown[dealer])) {
+				return true;
+			}
+			this.cribPoints = scorer.scoreCrib(crib, starter);
+			this.stats.addCrib(dealer, this.cribPoints);
+			return this.score(dealer, this.cribPoints);
+		}
+
+		/**
+		 * Pegs the kept hands
+		 *
+		 * @param pone the player who plays first
+		 * @return true if the game was won during pegging
+		 */
+		private boolean peg(int pone) {
+			this.hands[0] = this.kept[0];
+			this.hands[1] = this.kept[1];
+			long pile = PeggingPile.EMPTY;
+			int turn = pone;
+			int last = pone;
+			while ((this.hands[0] | this.hands[1]) != 0) {
+				long playable = playable(this.hands[turn], pile);
+				if (playable != 0) {
+					int card = GameSimulator.this.players[turn].pegging.play(this.hands[turn], playable, pile,
+							this.scores[turn], this.scores[1 - turn], this.random);
+					if ((playable & 1L << card) == 0) {
+						throw new IllegalStateException(GameSimulator.this.players[turn].name
+								+ " must play a card it can play");
+					}
+					int rank = CardMask.rank(card) + 1;
+					int points = PeggingPile.points(pile, rank);
+					pile = PeggingPile.play(pile, rank);
+					this.hands[turn] &= ~(1L << card);
+					last = turn;
+					if (this.peggingScore(turn, points)) {
+						return true;
+					}
+					if (PeggingPile.count(pile) == PeggingPile.MAX_COUNT) {
+						pile = PeggingPile.EMPTY;
+					}
+					turn = 1 - turn;
+				} else if (playable(this.hands[1 - turn], pile) != 0) {
+					/* A go, so the other player keeps playing */
+					turn = 1 - turn;
+				} else {
+					/* Neither player can play, so the last player to play gets the go */
+					if (this.peggingScore(last, 1)) {
+						return true;
+					}
+					pile = PeggingPile.EMPTY;
+					turn = 1 - last;
+				}
+			}
+
+			/* The last card, unless it made thirty-one */
+			return pile != PeggingPile.EMPTY && this.peggingScore(last, 1);
+		}
+
+		/**
+		 * Adds pegging points to a player's score
+		 *
+		 * @param player the player
+		 * @param points the points pegged
+		 * @return true if the player won
+		 */
+		private boolean peggingScore(int player, int points) {
+			if (points == 0) {
+				return false;
+			}
+			this.pegged[player] += points;
+			this.stats.addPegging(player, points);
+			return this.score(player, points);
+		}
+
+		/**
+		 * Adds points to a player's score
+		 *
+		 * @param player the player
+		 * @param points the points scored
+		 * @return true if the player won
+		 */
+		private boolean score(int player, int points) {
+			this.scores[player] += points;
+			return this.scores[player] >= GameStats.WINNING_SCORE;
+		}
+	}
+
+	/**
+	 * Returns the cards of a hand that can be played on a pile
+	 *
+	 * @param hand a bitmask of cards
+	 * @param pile a packed pile
+	 * @return a bitmask of the cards that don't take the count past 31
+	 */
+	private static long playable(long hand, long pile) {
+		int limit = PeggingPile.MAX_COUNT - PeggingPile.count(pile);
+		return limit >= 10 ? hand : hand & CardMask.rankRange(0, limit);
+	}
+
+	/**
+	 * Plays games between two players and prints how often each one won
+	 *
+	 * @param args the options {@code --games=<n>}, {@code --seed=<n>},
+	 *             {@code --threads=<n>}, {@code --scoring=<mode>},
+	 *             {@code --player1=<discard>:<pegging>} and
+	 *             {@code --player2=<discard>:<pegging>}
+	 * @throws IOException if the scoring mode's table can't be loaded
+	 */
+	public static void main(String[] args) throws IOException {
+		long games = 100000;
+		long seed = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+		ScoringMode scoring = ScoringMode.RANK_TABLE;
+		String first = "best-hand:greedy";
+		String second = "random:random";
+		for (String arg : args) {
+			if (arg.startsWith("--games=")) {
+				games = Long.parseLong(arg.substring("--games=".length()));
+			} else if (arg.startsWith("--seed=")) {
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			} else if (arg.startsWith("--threads=")) {
+				threads = Integer.parseInt(arg.substring("--threads=".length()));
+			} else if (arg.startsWith("--scoring=")) {
+				scoring = ScoringMode.fromName(arg.substring("--scoring=".length()));
+			} else if (arg.startsWith("--player1=")) {
+				first = arg.substring("--player1=".length());
+			} else if (arg.startsWith("--player2=")) {
+				second = arg.substring("--player2=".length());
+			} else {
+				throw new IllegalArgumentException("unknown option " + arg);
+			}
+		}
+
+		HandScorer scorer = scoring.scorer();
+		Player[] players = { Player.fromName(first, scorer), Player.fromName(second, scorer) };
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		GameStats stats;
+		try {
+			stats = new GameSimulator(scorer, players[0], players[1], pool).simulate(games, seed);
+		} finally {
+			pool.shutdown();
+		}
+		System.out.println("Played " + stats.getGames() + " games with seed " + seed + " in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+		for (int player = 0; player < 2; player++) {
+			System.out.println(String.format(Locale.ROOT,
+					"%s: won %.2f%% (+/- %.2f%%), skunks %.2f%%, per deal: pegging %.3f, hand %.3f, crib %.3f",
+					players[player].getName(), 100 * stats.winRate(player), 100 * stats.winRateMargin(player),
+					100 * stats.skunkRate(player), stats.averagePegging(player), stats.averageHand(player),
+					stats.averageCrib(player)));
+		}
+	}
+
+}
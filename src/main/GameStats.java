@@ -0,0 +1,223 @@
+package main;
+
+/**
+ * The results of a number of simulated two player games between two players
+ * (numbered 0 and 1)
+ *
+ * <p>
+ * Each thread of a {@code GameSimulator} fills in its own {@code GameStats},
+ * and they are added together as the threads finish, so no lock is needed.
+ * Instances are not thread safe
+ *
+ * @author Reid Moffat
+ */
+final class GameStats {
+
+	/**
+	 * The score needed to win a game
+	 */
+	static final int WINNING_SCORE = 121;
+
+	/**
+	 * A loser with a score below this is skunked
+	 */
+	static final int SKUNK_SCORE = 91;
+
+	/**
+	 * The z-score of a 95% confidence interval
+	 */
+	private static final double Z_95 = 1.959964;
+
+	/**
+	 * The number of games played
+	 */
+	private long games;
+
+	/**
+	 * The number of deals played (including the deal each game was won in)
+	 */
+	private long deals;
+
+	/**
+	 * The number of games each player won
+	 */
+	private final long[] wins = new long[2];
+
+	/**
+	 * The number of games each player won by a skunk
+	 */
+	private final long[] skunks = new long[2];
+
+	/**
+	 * The points each player pegged, including his heels
+	 */
+	private final long[] peggingPoints = new long[2];
+
+	/**
+	 * The points each player scored in their hand
+	 */
+	private final long[] handPoints = new long[2];
+
+	/**
+	 * The points each player scored in their crib
+	 */
+	private final long[] cribPoints = new long[2];
+
+	/**
+	 * Records a finished game
+	 *
+	 * @param winner     the player who won
+	 * @param loserScore the losing player's final score
+	 * @param deals      the number of deals in the game
+	 */
+	void addGame(int winner, int loserScore, int deals) {
+		this.games++;
+		this.deals += deals;
+		this.wins[winner]++;
+		if (loserScore < SKUNK_SCORE) {
+			this.skunks[winner]++;
+		}
+	}
+
+	/**
+	 * Records points pegged by a player
+	 *
+	 * @param player the player
+	 * @param points the points pegged
+	 */
+	void addPegging(int player, int points) {
+		this.peggingPoints[player] += points;
+	}
+
+	/**
+	 * Records the points in a player's hand
+	 *
+	 * @param player the player
+	 * @param points the points in the hand
+	 */
+	void addHand(int player, int points) {
+		this.handPoints[player] += points;
+	}
+
+	/**
+	 * Records the points in a player's crib
+	 *
+	 * @param player the player
+	 * @param points the points in the crib
+	 */
+	void addCrib(int player, int points) {
+		this.cribPoints[player] += points;
+	}
+
+	/**
+	 * Adds the results of other games to these results
+	 *
+	 * @param other the results to add
+	 */
+	void add(GameStats other) {
+		this.games += other.games;
+		this.deals += other.deals;
+		for (int player = 0; player < 2; player++) {
+			this.wins[player] += other.wins[player];
+			this.skunks[player] += other.skunks[player];
+			this.peggingPoints[player] += other.peggingPoints[player];
+			this.handPoints[player] += other.handPoints[player];
+			this.cribPoints[player] += other.cribPoints[player];
+		}
+	}
+
+	/**
+	 * Returns the number of games played
+	 *
+	 * @return the number of games
+	 */
+	long getGames() {
+		return this.games;
+	}
+
+	/**
+	 * Returns the number of deals played
+	 *
+	 * @return the number of deals
+	 */
+	long getDeals() {
+		return this.deals;
+	}
+
+	/**
+	 * Returns the number of games a player won
+	 *
+	 * @param player the player
+	 * @return the player's wins
+	 */
+	long getWins(int player) {
+		return this.wins[player];
+	}
+
+	/**
+	 * Returns the fraction of games a player won
+	 *
+	 * @param player the player
+	 * @return the player's win rate (0 if no games were played)
+	 */
+	double winRate(int player) {
+		return this.games == 0 ? 0 : (double) this.wins[player] / this.games;
+	}
+
+	/**
+	 * Returns half the width of the 95% confidence interval of a player's win
+	 * rate, using the normal approximation
+	 *
+	 * @param player the player
+	 * @return the margin of error of the win rate
+	 */
+	double winRateMargin(int player) {
+		if (this.games == 0) {
+			return 0;
+		}
+		double rate = this.winRate(player);
+		return Z_95 * Math.sqrt(rate * (1 - rate) / this.games);
+	}
+
+	/**
+	 * Returns the fraction of games a player won by a skunk
+	 *
+	 * @param player the player
+	 * @return the player's skunk rate (0 if no games were played)
+	 */
+	double skunkRate(int player) {
+		return this.games == 0 ? 0 : (double) this.skunks[player] / this.games;
+	}
+
+	/**
+	 * Returns the average points a player pegged per deal
+	 *
+	 * @param player the player
+	 * @return the average pegging points
+	 */
+	double averagePegging(int player) {
+		return this.deals == 0 ? 0 : (double) this.peggingPoints[player] / this.deals;
+	}
+
+	/**
+	 * Returns the average points in a player's hand per deal
+	 *
+	 * @param player the player
+	 * @return the average hand points
+	 */
+	double averageHand(int player) {
+		return this.deals == 0 ? 0 : (double) this.handPoints[player] / this.deals;
+	}
+
+	/**
+	 * Returns the average points in a player's crib per deal (including the deals
+	 * where the player wasn't the dealer)
+	 *
+	 * @param player the player
+	 * @return the average crib points
+	 */
+	double averageCrib(int player) {
+		return this.deals == 0 ? 0 : (double) this.cribPoints[player] / this.deals;
+	}
+
+}
@@ -0,0 +1,200 @@
+package main;
+
+/**
+ * An interface for a class that can calculate the points in a cribbage hand of
+ * four cards plus a starter card, where cards are stored as indices and hands
+ * as bitmasks (see {@code CardMask})
+ * 
+ * <p>
+ * Implementations must not keep any state between calls, so a single
+ * {@code HandScorer} can be shared by any number of threads
+ * 
+ * <p>
+ * Fifteens, multiples and runs only depend on the ranks of the cards, and
+ * flushes and nobs only depend on the suit of the starter card once the hand is
+ * known. The {@code sweep} methods use this to score a hand against many
+ * starter cards with one evaluation per starter rank
+ * 
+ * @author Reid Moffat
+ */
+public interface HandScorer {
+
+	/**
+	 * The most points possible in a hand or crib
+	 */
+	public static final int MAX_POINTS = 29;
+
+	/**
+	 * Calculates the sum of point combinations for a four card hand and a starter
+	 * card
+	 * 
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the hand with the given starter
+	 */
+	public int score(long hand, int starter);
+
+	/**
+	 * Calculates the sum of point combinations for a four card crib and a starter
+	 * card
+	 * 
+	 * <p>
+	 * A crib is scored like a hand, except that a flush only counts if the starter
+	 * card is also the same suit
+	 * 
+	 * @param crib    a bitmask of the four cards in the crib
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the crib with the given starter
+	 */
+	public default int scoreCrib(long crib, int starter) {
+		return score(crib, starter) - BitmaskHand.flushes(crib, starter) + BitmaskHand.cribFlushes(crib, starter);
+	}
+
+	/**
+	 * Calculates the points from fifteens, multiples and runs for a four card hand
+	 * and a starter card, which only depend on their ranks
+	 * 
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the points in the hand without flushes and nobs
+	 */
+	public default int rankPoints(long hand, int starter) {
+		return score(hand, starter) - BitmaskHand.flushes(hand, starter) - BitmaskHand.nobs(hand, starter);
+	}
+
+	/**
+	 * Scores each hand in a range of arrays with its starter card
+	 * 
+	 * <p>
+	 * By default each hand is scored with {@code score}. Scorers that can score
+	 * independent hands faster together override this (see {@code BatchScorer})
+	 * 
+	 * @param hands    bitmasks of the four cards in each hand
+	 * @param starters the index of each hand's starter card
+	 * @param points   the points of each hand are stored here
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 */
+	public default void scoreAll(long[] hands, int[] starters, int[] points, int from, int to) {
+		for (int i = from; i < to; i++) {
+			points[i] = score(hands[i], starters[i]);
+		}
+	}
+
+	/**
+	 * Scores each hand in a range of arrays with its starter card, storing the
+	 * points as bytes (every score fits, since {@code MAX_POINTS} is 29)
+	 * 
+	 * @param hands    bitmasks of the four cards in each hand
+	 * @param starters the index of each hand's starter card
+	 * @param points   the points of each hand are stored here
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 */
+	public default void scoreAll(long[] hands, int[] starters, byte[] points, int from, int to) {
+		for (int i = from; i < to; i++) {
+			points[i] = (byte) score(hands[i], starters[i]);
+		}
+	}
+
+	/**
+	 * Scores each crib in a range of arrays with its starter card
+	 * 
+	 * @param cribs    bitmasks of the four cards in each crib
+	 * @param starters the index of each crib's starter card
+	 * @param points   the points of each crib are stored here
+	 * @param from     the first crib to score
+	 * @param to       the index after the last crib to score
+	 */
+	public default void scoreAllCribs(long[] cribs, int[] starters, int[] points, int from, int to) {
+		for (int i = from; i < to; i++) {
+			points[i] = scoreCrib(cribs[i], starters[i]);
+		}
+	}
+
+	/**
+	 * Sums the points of a four card hand over a set of starter cards
+	 * 
+	 * <p>
+	 * Each starter rank is only evaluated once and weighted by the number of
+	 * starters of that rank, and the points from flushes and nobs are added for
+	 * the suits of the starters
+	 * 
+	 * @param hand      a bitmask of the four cards in the hand
+	 * @param starters  a bitmask of the possible starter cards (not in the hand)
+	 * @param histogram if not null, {@code histogram[p]} is incremented for each
+	 *                  starter that gives {@code p} points (it must have
+	 *                  {@code MAX_POINTS + 1} elements)
+	 * @return the total number of points over every starter card
+	 */
+	public default int sweep(long hand, long starters, int[] histogram) {
+		if (Stats.ENABLED) {
+			long start = System.nanoTime();
+			int total = sweep(hand, starters, histogram, false);
+			Stats.record(Stats.Phase.SWEEP, start);
+			return total;
+		}
+		return sweep(hand, starters, histogram, false);
+	}
+
+	/**
+	 * Sums the points of a four card crib over a set of starter cards, the same
+	 * way as {@code sweep}
+	 * 
+	 * @param crib      a bitmask of the four cards in the crib
+	 * @param starters  a bitmask of the possible starter cards (not in the crib)
+	 * @param histogram if not null, {@code histogram[p]} is incremented for each
+	 *                  starter that gives {@code p} points (it must have
+	 *                  {@code MAX_POINTS + 1} elements)
+	 * @return the total number of points over every starter card
+	 */
+	public default int sweepCrib(long crib, long starters, int[] histogram) {
+		if (Stats.ENABLED) {
+			long start = System.nanoTime();
+			int total = sweep(crib, starters, histogram, true);
+			Stats.record(Stats.Phase.SWEEP_CRIB, start);
+			return total;
+		}
+		return sweep(crib, starters, histogram, true);
+	}
+
+	/**
+	 * Sums the points of a four card hand or crib over a set of starter cards
+	 * 
+	 * @param cards     a bitmask of the four cards in the hand or crib
+	 * @param starters  a bitmask of the possible starter cards
+	 * @param histogram null, or the count of starters that give each number of
+	 *                  points
+	 * @param crib      true if the cards are a crib
+	 * @return the total number of points over every starter card
+	 */
+	private int sweep(long cards, long starters, int[] histogram, boolean crib) {
+		/* The points from flushes and nobs for a starter of each suit, packed 4 bits per suit */
+		int suitPoints = 0;
+		int total = 0;
+		for (int suit = 0; suit < 4; suit++) {
+			int starter = suit * CardMask.SUIT_SIZE;
+			int points = (crib ? BitmaskHand.cribFlushes(cards, starter) : BitmaskHand.flushes(cards, starter))
+					+ BitmaskHand.nobs(cards, starter);
+			suitPoints |= points << 4 * suit;
+			total += points * Integer.bitCount(CardMask.suitRanks(starters, suit));
+		}
+
+		/* Each rank is scored once for every starter of that rank */
+		for (int rank = 0; rank < CardMask.SUIT_SIZE; rank++) {
+			long rankStarters = starters & CardMask.rankRange(rank, rank + 1);
+			if (rankStarters == 0) {
+				continue;
+			}
+			int points = rankPoints(cards, Long.numberOfTrailingZeros(rankStarters));
+			total += points * Long.bitCount(rankStarters);
+			if (histogram != null) {
+				for (long m = rankStarters; m != 0; m &= m - 1) {
+					histogram[points + (suitPoints >>> 4 * CardMask.suit(Long.numberOfTrailingZeros(m)) & 0xF)]++;
+				}
+			}
+		}
+		return total;
+	}
+
+}
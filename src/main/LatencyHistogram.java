@@ -0,0 +1,142 @@
+package main;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something took in buckets of powers of two nanoseconds,
+ * which is enough to estimate quantiles within a factor of two in constant
+ * memory
+ *
+ * <p>
+ * Bucket <i>b</i> counts the durations from 2<sup>b</sup> up to (but not
+ * including) 2<sup>b+1</sup> nanoseconds, and bucket 0 also counts 0. Every
+ * counter is a {@code LongAdder}, so any number of threads can record at once
+ * without contending on a lock or a single atomic
+ *
+ * @author Reid Moffat
+ */
+final class LatencyHistogram {
+
+	/**
+	 * The number of buckets, one for each bit of a {@code long}
+	 */
+	private static final int BUCKETS = 64;
+
+	/**
+	 * The number of durations in each bucket
+	 */
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+	/**
+	 * The sum of every duration in nanoseconds
+	 */
+	private final LongAdder total = new LongAdder();
+
+	/**
+	 * The longest duration in nanoseconds
+	 */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Initializes an empty {@code LatencyHistogram}
+	 */
+	LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a duration
+	 *
+	 * @param nanos the duration in nanoseconds (negative durations count as 0)
+	 */
+	void record(long nanos) {
+		long duration = Math.max(nanos, 0);
+		this.buckets[bucket(duration)].increment();
+		this.total.add(duration);
+		this.max.accumulate(duration);
+	}
+
+	/**
+	 * Returns the bucket of a duration
+	 *
+	 * @param nanos a duration in nanoseconds (not negative)
+	 * @return the bucket the duration is counted in
+	 */
+	private static int bucket(long nanos) {
+		return nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+
+	/**
+	 * Returns the number of durations recorded
+	 *
+	 * @return the count
+	 */
+	long count() {
+		long count = 0;
+		for (LongAdder bucket : this.buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the average duration
+	 *
+	 * @return the mean in nanoseconds, or 0 if nothing was recorded
+	 */
+	double mean() {
+		long count = this.count();
+		return count == 0 ? 0 : (double) this.total.sum() / count;
+	}
+
+	/**
+	 * Returns the longest duration
+	 *
+	 * @return the maximum in nanoseconds, or 0 if nothing was recorded
+	 */
+	long max() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns an upper bound of a quantile of the durations: the end of the first
+	 * bucket that reaches the fraction of the durations
+	 *
+	 * <p>
+	 * The counters are read one at a time while other threads may be recording,
+	 * so the result is only approximate under load
+	 *
+	 * @param fraction a fraction between 0 and 1
+	 * @return the quantile in nanoseconds (at most the maximum), or 0 if nothing
+	 *         was recorded
+	 * @throws IllegalArgumentException if the fraction is not between 0 and 1
+	 */
+	long quantile(double fraction) {
+		if (!(fraction >= 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("a quantile must be between 0 and 1");
+		}
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.buckets[i].sum();
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		double needed = Math.max(fraction * count, 1);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= needed) {
+				return i == BUCKETS - 1 ? this.max() : Math.min((1L << i + 1) - 1, this.max());
+			}
+		}
+		return this.max();
+	}
+
+}
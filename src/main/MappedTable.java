@@ -0,0 +1,271 @@
+package main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * A read-only table file mapped into memory, which every precomputed table
+ * ({@code ScoreTable}, {@code EndgameTable} and {@code DiscardDatabase}) reads
+ * its data from
+ *
+ * <p>
+ * The data stays outside of the Java heap, in pages of the operating system's
+ * page cache, so a loaded table only takes a few objects on the heap no matter
+ * how big it is and the garbage collector never copies or scans it. Every JVM
+ * that maps the same file shares the same physical pages, so worker processes
+ * don't each have their own copy
+ *
+ * <p>
+ * Values are read at byte offsets from the start of the table in big-endian
+ * order (the order {@code ByteBuffer} writes them in), and every read is
+ * checked against the size of the table, so a corrupt offset throws an
+ * {@code IndexOutOfBoundsException} instead of reading other memory. The
+ * accessors are small enough for the JIT compiler to inline, and the check is
+ * removed when it can prove the offset is in range
+ *
+ * <p>
+ * A table can be at most 2 GB. Instances are immutable and can be shared by any
+ * number of threads
+ *
+ * <p>
+ * Generated tables are cached by default in a directory of the user's own
+ * ({@code CACHE_DIRECTORY}) instead of the working directory or the shared
+ * temporary directory, so they are only made once per user and no other user
+ * can replace or truncate a file that is mapped
+ *
+ * @author Reid Moffat
+ */
+final class MappedTable {
+
+	/**
+	 * The directory that tables are cached in by default: {@code cribbage} in
+	 * {@code $XDG_CACHE_HOME}, or in {@code ~/.cache} if that isn't set
+	 */
+	static final Path CACHE_DIRECTORY = cacheDirectory();
+
+	/**
+	 * A function that writes the bytes of a table
+	 */
+	@FunctionalInterface
+	interface Contents {
+
+		/**
+		 * Writes the whole table to a channel
+		 *
+		 * @param channel the channel of the new file, at position 0
+		 * @throws IOException if the bytes can't be read or written
+		 */
+		void writeTo(FileChannel channel) throws IOException;
+	}
+
+	/**
+	 * The mapped bytes, which are only read with absolute offsets so their
+	 * position never changes
+	 */
+	private final ByteBuffer data;
+
+	/**
+	 * Initializes a {@code MappedTable} over a buffer
+	 *
+	 * @param data the table's bytes
+	 */
+	private MappedTable(ByteBuffer data) {
+		this.data = data;
+	}
+
+	/**
+	 * Memory-maps a whole file read-only
+	 *
+	 * @param path the location of the file
+	 * @return the mapped table
+	 * @throws IOException if the file can't be read or is larger than 2 GB
+	 */
+	static MappedTable open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(path + " is too large to map");
+			}
+			return new MappedTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Finds the location of a table file
+	 *
+	 * @param property the system property that can name another file
+	 * @param name     the name of the file in {@code CACHE_DIRECTORY}
+	 * @return the file named by the property if it is set, or else the file in
+	 *         the cache directory
+	 */
+	static Path cacheFile(String property, String name) {
+		String path = System.getProperty(property);
+		return path != null ? Paths.get(path) : CACHE_DIRECTORY.resolve(name);
+	}
+
+	/**
+	 * Finds the user's cache directory for tables
+	 *
+	 * @return the {@code cribbage} directory in the user's cache directory
+	 */
+	private static Path cacheDirectory() {
+		String cache = System.getenv("XDG_CACHE_HOME");
+		Path base = cache != null && Paths.get(cache).isAbsolute() ? Paths.get(cache)
+				: Paths.get(System.getProperty("user.home"), ".cache");
+		return base.resolve("cribbage");
+	}
+
+	/**
+	 * Writes the contents of a table to a temporary file that is then moved into
+	 * place, so another process never sees a partially written table
+	 *
+	 * @param contents the bytes of the table from position 0 to its limit
+	 * @param path     the location of the file
+	 * @throws IOException if the file can't be written
+	 */
+	static void write(ByteBuffer contents, Path path) throws IOException {
+		write(path, channel -> {
+			contents.rewind();
+			while (contents.hasRemaining()) {
+				channel.write(contents);
+			}
+		});
+	}
+
+	/**
+	 * Copies a table from a stream (such as a resource bundled with the
+	 * calculator) to a temporary file that is then moved into place, the same way
+	 * as {@code write(ByteBuffer, Path)}
+	 *
+	 * @param contents the bytes of the table, which are read to the end
+	 * @param path     the location of the file
+	 * @throws IOException if the stream can't be read or the file can't be
+	 *                     written
+	 */
+	static void write(InputStream contents, Path path) throws IOException {
+		write(path, channel -> contents.transferTo(Channels.newOutputStream(channel)));
+	}
+
+	/**
+	 * Writes a table to a temporary file through a channel, then moves the file
+	 * into place the same way as {@code write(ByteBuffer, Path)}. The temporary
+	 * file is deleted if the table can't be written
+	 *
+	 * <p>
+	 * Missing directories are created first, readable only by the user where the
+	 * file system has POSIX permissions
+	 *
+	 * @param path     the location of the file
+	 * @param contents writes the bytes of the table to the channel
+	 * @throws IOException if the file can't be written
+	 */
+	static void write(Path path, Contents contents) throws IOException {
+		Path absolute = path.toAbsolutePath();
+		if (!Files.isDirectory(absolute.getParent())) {
+			if (absolute.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				Files.createDirectories(absolute.getParent(),
+						PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+			} else {
+				Files.createDirectories(absolute.getParent());
+			}
+		}
+		Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				contents.writeTo(channel);
+			}
+			Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Returns a view of part of this table, whose offsets start from 0
+	 *
+	 * @param offset the offset of the first byte of the view
+	 * @param size   the number of bytes in the view
+	 * @return the view, which shares this table's memory
+	 * @throws IndexOutOfBoundsException if the part isn't within this table
+	 */
+	MappedTable slice(int offset, int size) {
+		if (offset < 0 || size < 0 || offset > this.size() - size) {
+			throw new IndexOutOfBoundsException("bytes " + offset + " to " + ((long) offset + size)
+					+ " are outside of a table of " + this.size() + " bytes");
+		}
+		return new MappedTable(this.data.duplicate().position(offset).limit(offset + size).slice());
+	}
+
+	/**
+	 * Returns the number of bytes in this table
+	 *
+	 * @return the size of the table
+	 */
+	int size() {
+		return this.data.capacity();
+	}
+
+	/**
+	 * Reads a byte
+	 *
+	 * @param offset the offset of the byte
+	 * @return the byte
+	 * @throws IndexOutOfBoundsException if the offset isn't within the table
+	 */
+	byte getByte(int offset) {
+		return this.data.get(offset);
+	}
+
+	/**
+	 * Reads a 16 bit signed integer
+	 *
+	 * @param offset the offset of the first byte
+	 * @return the integer
+	 * @throws IndexOutOfBoundsException if the bytes aren't within the table
+	 */
+	short getShort(int offset) {
+		return this.data.getShort(offset);
+	}
+
+	/**
+	 * Reads a 16 bit unsigned integer
+	 *
+	 * @param offset the offset of the first byte
+	 * @return the integer
+	 * @throws IndexOutOfBoundsException if the bytes aren't within the table
+	 */
+	char getChar(int offset) {
+		return this.data.getChar(offset);
+	}
+
+	/**
+	 * Reads a 32 bit integer
+	 *
+	 * @param offset the offset of the first byte
+	 * @return the integer
+	 * @throws IndexOutOfBoundsException if the bytes aren't within the table
+	 */
+	int getInt(int offset) {
+		return this.data.getInt(offset);
+	}
+
+	/**
+	 * Reads a 64 bit integer
+	 *
+	 * @param offset the offset of the first byte
+	 * @return the integer
+	 * @throws IndexOutOfBoundsException if the bytes aren't within the table
+	 */
+	long getLong(int offset) {
+		return this.data.getLong(offset);
+	}
+
+}
@@ -0,0 +1,248 @@
+package main;
+
+import card.Card;
+
+/**
+ * The pile of cards played during pegging since the count was last reset,
+ * which scores each card as it is played
+ *
+ * <p>
+ * The whole state of the pile is packed into a long, so it can be copied,
+ * stored and compared for free:
+ *
+ * <pre>
+ * bits 0-27:  the rank numbers of the last 7 cards, 4 bits each, most recent
+ *             lowest (0 if there is no card)
+ * bits 28-30: the number of cards of the same rank at the top of the pile
+ * bits 31-35: the count
+ * </pre>
+ *
+ * Cards are stored by their rank number (1-13, the same as
+ * {@code Card.getRankNumber}), since suits never matter in pegging. A pair,
+ * three or four of a kind only needs the same rank streak, and a run can be at
+ * most seven cards (ace to seven is 28, and adding an eight goes past 31), so
+ * playing a card only looks at the top six cards of the window. Every update is
+ * constant time and nothing is created
+ *
+ * <p>
+ * The static methods work on a packed pile. An instance of this class holds a
+ * pile that changes as {@code Card} objects are played on it
+ *
+ * @author Reid Moffat
+ */
+final class PeggingPile {
+
+	/**
+	 * An empty pile with a count of 0
+	 */
+	static final long EMPTY = 0;
+
+	/**
+	 * The highest count a pile can have
+	 */
+	static final int MAX_COUNT = 31;
+
+	/**
+	 * The number of cards kept in the window
+	 */
+	private static final int WINDOW_SIZE = 7;
+
+	/**
+	 * A mask of the window's bits
+	 */
+	private static final long WINDOW_MASK = (1L << 4 * WINDOW_SIZE) - 1;
+
+	/**
+	 * The position of the same rank streak
+	 */
+	private static final int STREAK_SHIFT = 28;
+
+	/**
+	 * The position of the count
+	 */
+	private static final int COUNT_SHIFT = 31;
+
+	/**
+	 * The packed state of this pile
+	 */
+	private long pile = EMPTY;
+
+	/**
+	 * Plays a card on this pile
+	 *
+	 * @param card the card to play
+	 * @return the points for playing the card
+	 * @throws IllegalArgumentException if the card would take the count past 31
+	 */
+	int play(Card card) {
+		int rank = card.getRankNumber();
+		if (!canPlay(this.pile, rank)) {
+			throw new IllegalArgumentException(card + " would take the count past 31");
+		}
+		int points = points(this.pile, rank);
+		this.pile = play(this.pile, rank);
+		return points;
+	}
+
+	/**
+	 * Returns true if a card can be played on this pile
+	 *
+	 * @param card a card
+	 * @return true if the card doesn't take the count past 31
+	 */
+	boolean canPlay(Card card) {
+		return canPlay(this.pile, card.getRankNumber());
+	}
+
+	/**
+	 * Returns the count of this pile
+	 *
+	 * @return the sum of the values of the cards in the pile
+	 */
+	int getCount() {
+		return count(this.pile);
+	}
+
+	/**
+	 * Returns the packed state of this pile
+	 *
+	 * @return the packed pile
+	 */
+	long getState() {
+		return this.pile;
+	}
+
+	/**
+	 * Empties this pile, setting the count back to 0
+	 */
+	void reset() {
+		this.pile = EMPTY;
+	}
+
+	/**
+	 * Returns the count value of a rank number (face cards count 10)
+	 *
+	 * @param rank a rank number (1-13)
+	 * @return the value of the rank
+	 */
+	static int value(int rank) {
+		return Math.min(rank, 10);
+	}
+
+	/**
+	 * Returns the count of a packed pile
+	 *
+	 * @param pile a packed pile
+	 * @return the sum of the values of the cards in the pile
+	 */
+	static int count(long pile) {
+		return (int) (pile >>> COUNT_SHIFT);
+	}
+
+	/**
+	 * Returns the rank number of the top card of a packed pile
+	 *
+	 * @param pile a packed pile
+	 * @return the rank number of the most recent card, or 0 if the pile is empty
+	 */
+	static int top(long pile) {
+		return (int) (pile & 0xF);
+	}
+
+	/**
+	 * Returns true if a card can be played on a packed pile
+	 *
+	 * @param pile a packed pile
+	 * @param rank the rank number of the card
+	 * @return true if the card doesn't take the count past 31
+	 */
+	static boolean canPlay(long pile, int rank) {
+		return count(pile) + value(rank) <= MAX_COUNT;
+	}
+
+	/**
+	 * Returns the points for playing a card on a packed pile
+	 *
+	 * @param pile a packed pile
+	 * @param rank the rank number of the card (which must be playable)
+	 * @return the points from fifteen, thirty-one, pairs and runs
+	 */
+	static int points(long pile, int rank) {
+		int count = count(pile) + value(rank);
+		int points = count == 15 || count == MAX_COUNT ? 2 : 0;
+
+		/* Pairs, three and four of a kind */
+		int same = streak(pile, rank);
+		points += same * (same - 1);
+
+		/* The longest run at the top, which needs distinct ranks */
+		if (same == 1) {
+			int ranks = 1 << rank;
+			int run = 0;
+			long window = pile & WINDOW_MASK;
+			for (int length = 2; length <= WINDOW_SIZE && window != 0; length++, window >>>= 4) {
+				int next = (int) (window & 0xF);
+				if ((ranks & 1 << next) != 0) {
+					break;
+				}
+				ranks |= 1 << next;
+				if (length >= 3 && ranks >>> Integer.numberOfTrailingZeros(ranks) == (1 << length) - 1) {
+					run = length;
+				}
+			}
+			points += run;
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the packed pile after a card is played on it
+	 *
+	 * <p>
+	 * A pile with a count of 31 is returned as it is, and should be replaced with
+	 * {@code EMPTY} once it has been scored
+	 *
+	 * @param pile a packed pile
+	 * @param rank the rank number of the card (which must be playable)
+	 * @return the packed pile with the card on top
+	 */
+	static long play(long pile, int rank) {
+		return (long) (count(pile) + value(rank)) << COUNT_SHIFT | (long) streak(pile, rank) << STREAK_SHIFT
+				| (pile << 4 | rank) & WINDOW_MASK;
+	}
+
+	/**
+	 * Returns a packed pile without the cards that can't score with any card
+	 * played on it, so piles that score the same way are equal
+	 *
+	 * <p>
+	 * A run can't go past the first card that has the same rank as a card above
+	 * it, so that card and the cards below it are dropped from the window. If the
+	 * top two cards have the same rank, only the top card and the streak are kept
+	 *
+	 * @param pile a packed pile
+	 * @return the packed pile with only the cards that can score
+	 */
+	static long scoringPile(long pile) {
+		int ranks = 0;
+		int shift = 0;
+		for (long window = pile & WINDOW_MASK; window != 0 && (ranks & 1 << (window & 0xF)) == 0; window >>>= 4) {
+			ranks |= 1 << (window & 0xF);
+			shift += 4;
+		}
+		return pile & ~WINDOW_MASK | pile & (1L << shift) - 1;
+	}
+
+	/**
+	 * Returns the number of cards of the same rank at the top of a pile once a
+	 * card is played
+	 *
+	 * @param pile a packed pile
+	 * @param rank the rank number of the card played
+	 * @return the length of the same rank streak including the new card
+	 */
+	private static int streak(long pile, int rank) {
+		return top(pile) == rank ? (int) (pile >>> STREAK_SHIFT & 0x7) + 1 : 1;
+	}
+
+}
@@ -0,0 +1,351 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the expected points from pegging (the play) in a two player game,
+ * for a four card hand against an opponent whose cards are unknown
+ *
+ * <p>
+ * Only ranks matter during the play, so each card is stored as its rank number
+ * (1-13, see {@code Card.getRankNumber}), and each play is scored with
+ * {@code PeggingPile}. The last player to play before neither player can play
+ * gets 1 point (a go, or the last card), except after thirty-one
+ *
+ * <p>
+ * The play is searched with expectimax. On the player's turn, every card they
+ * can play is tried and the best one is chosen. The opponent's turn is a chance
+ * node: their remaining cards are treated as a random subset of the cards the
+ * player hasn't seen, which rules out the cards below any count the opponent
+ * has said go at. The opponent says go with the probability that none of those
+ * cards can be played, and otherwise plays a random card they can play, so
+ * each playable unseen card is equally likely. Values are the player's points
+ * minus the opponent's points
+ *
+ * <p>
+ * Different orders of play often reach the same state, so values are stored in
+ * a transposition table keyed on a 62 bit encoding of the state: the player's
+ * remaining cards, the ranks the opponent has played, the part of the pile that
+ * can still score (with the count), whose turn it is, whether the other player
+ * has said go and the lowest card value the opponent could still have
+ *
+ * <p>
+ * A {@code PeggingSolver} reuses its table between hands, so it must only be
+ * used by one thread at a time
+ *
+ * @author Reid Moffat
+ */
+final class PeggingSolver {
+
+	/**
+	 * The number of cards each player pegs with
+	 */
+	private static final int HAND_SIZE = 4;
+
+	/**
+	 * {@code BINOMIAL[n][k]} is n choose k for every n up to 52 and k up to 4
+	 */
+	private static final int[][] BINOMIAL = ScoreTable.binomials(CardMask.DECK_SIZE + 1, HAND_SIZE);
+
+	/**
+	 * The number of slots the transposition table starts with
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 12;
+
+	/**
+	 * States with at most this many cards left to play aren't stored in the
+	 * transposition table
+	 */
+	private static final int UNSTORED_CARDS = 2;
+
+	/**
+	 * Marks a slot of the transposition table as used (state keys only use the
+	 * low 62 bits)
+	 */
+	private static final long USED = 1L << 63;
+
+	/**
+	 * True if states are stored in the transposition table
+	 */
+	private final boolean transpositions;
+
+	/**
+	 * The rank number of each of the player's cards
+	 */
+	private final int[] hand = new int[HAND_SIZE];
+
+	/**
+	 * The number of unseen cards of each rank number, packed 4 bits per rank
+	 * (including the opponent's hand)
+	 */
+	private long unseen;
+
+	/**
+	 * The transposition table: the key of each slot (with {@code USED} set, or 0
+	 * for an empty slot) followed by the bits of its value
+	 */
+	private long[] table = new long[2 * INITIAL_CAPACITY];
+
+	/**
+	 * The number of states in the transposition table
+	 */
+	private int size;
+
+	/**
+	 * Initializes a {@code PeggingSolver} with a transposition table
+	 */
+	PeggingSolver() {
+		this(true);
+	}
+
+	/**
+	 * Initializes a {@code PeggingSolver}
+	 *
+	 * <p>
+	 * Without the transposition table every state is searched again each time
+	 * it is reached, which gives the same values much more slowly (it is only
+	 * useful to check the table)
+	 *
+	 * @param transpositions true to store states in the transposition table
+	 */
+	PeggingSolver(boolean transpositions) {
+		this.transpositions = transpositions;
+	}
+
+	/**
+	 * Calculates the expected points the player gets from pegging minus the
+	 * points the opponent gets
+	 *
+	 * <p>
+	 * The non-dealer (pone) plays first
+	 *
+	 * @param hand   a bitmask of the player's four cards
+	 * @param dead   a bitmask of other cards that can't be in the opponent's hand,
+	 *               such as the player's discards and the starter card
+	 * @param dealer true if the player is the dealer
+	 * @return the expected net pegging points for the player
+	 * @throws IllegalArgumentException if the hand doesn't have four cards
+	 */
+	double expectedPoints(long hand, long dead, boolean dealer) {
+		if (Long.bitCount(hand) != HAND_SIZE) {
+			throw new IllegalArgumentException("a pegging hand must have four cards");
+		}
+		int i = 0;
+		for (long m = hand; m != 0; m &= m - 1) {
+			this.hand[i++] = CardMask.rank(Long.numberOfTrailingZeros(m)) + 1;
+		}
+		this.unseen = BitmaskHand.rankCounts(CardMask.DECK & ~hand & ~dead) << 4;
+
+		Arrays.fill(this.table, 0);
+		this.size = 0;
+		return this.turn((1 << HAND_SIZE) - 1, 0, PeggingPile.EMPTY, dealer, false, 1);
+	}
+
+	/**
+	 * Returns the value of a state at the start of a turn
+	 *
+	 * @param mine      the player's cards that haven't been played (bit i is set
+	 *                  if {@code hand[i]} is left)
+	 * @param oppPlayed the rank numbers the opponent has played, sorted and packed
+	 *                  4 bits per card
+	 * @param pile      the packed pile (see {@code PeggingPile})
+	 * @param oppTurn   true if it is the opponent's turn
+	 * @param go        true if the other player has said go, so the player whose
+	 *                  turn it is played last
+	 * @param oppMin    the lowest card value the opponent could have
+	 * @return the expected net points for the player from here on
+	 */
+	private double turn(int mine, long oppPlayed, long pile, boolean oppTurn, boolean go, int oppMin) {
+		int oppLeft = HAND_SIZE - (64 - Long.numberOfLeadingZeros(oppPlayed) + 3) / 4;
+
+		/* With no cards left, the last player gets 1 point (unless the count was just reset) */
+		if (mine == 0 && oppLeft == 0) {
+			return pile == PeggingPile.EMPTY ? 0 : go != oppTurn ? 1 : -1;
+		}
+
+		/* Near the end of the play the searches are small, so they aren't stored */
+		if (!this.transpositions || Integer.bitCount(mine) + oppLeft <= UNSTORED_CARDS) {
+			return oppTurn ? this.opponentTurn(mine, oppPlayed, oppLeft, pile, go, oppMin)
+					: this.playerTurn(mine, oppPlayed, pile, go, oppMin);
+		}
+
+		long key = (long) mine | oppPlayed << 4 | PeggingPile.scoringPile(pile) << 20 | (oppTurn ? 1L : 0) << 56
+				| (go ? 1L : 0) << 57 | (long) oppMin << 58 | USED;
+		int slot = this.find(key);
+		if (this.table[slot] == key) {
+			return Double.longBitsToDouble(this.table[slot + 1]);
+		}
+
+		double value = oppTurn ? this.opponentTurn(mine, oppPlayed, oppLeft, pile, go, oppMin)
+				: this.playerTurn(mine, oppPlayed, pile, go, oppMin);
+		this.store(key, value);
+		return value;
+	}
+
+	/**
+	 * Returns the value of the player's turn, choosing the best card to play
+	 *
+	 * @see #turn
+	 */
+	private double playerTurn(int mine, long oppPlayed, long pile, boolean go, int oppMin) {
+		double best = Double.NEGATIVE_INFINITY;
+		int tried = 0;
+		for (int i = 0; i < HAND_SIZE; i++) {
+			int rank = this.hand[i];
+			/* Cards of the same rank give the same result */
+			if ((mine & 1 << i) == 0 || !PeggingPile.canPlay(pile, rank) || (tried & 1 << rank) != 0) {
+				continue;
+			}
+			tried |= 1 << rank;
+			best = Math.max(best, this.play(mine & ~(1 << i), oppPlayed, pile, false, go, oppMin, rank));
+		}
+		return tried != 0 ? best : this.cannotPlay(mine, oppPlayed, pile, false, go, oppMin);
+	}
+
+	/**
+	 * Returns the value of the opponent's turn, averaging over the cards they
+	 * could play and the chance that they can't play
+	 *
+	 * @see #turn
+	 */
+	private double opponentTurn(int mine, long oppPlayed, int oppLeft, long pile, boolean go, int oppMin) {
+		/* The unseen cards the opponent could have, and the ones they could play */
+		long available = this.unseen;
+		for (long m = oppPlayed; m != 0; m >>>= 4) {
+			available -= 1L << 4 * (m & 0xF);
+		}
+		int possible = 0, playable = 0;
+		for (int rank = 1; rank <= CardMask.SUIT_SIZE; rank++) {
+			int n = (int) (available >>> 4 * rank) & 0xF;
+			if (PeggingPile.value(rank) >= oppMin) {
+				possible += n;
+				if (PeggingPile.canPlay(pile, rank)) {
+					playable += n;
+				}
+			}
+		}
+		double pGo = (double) BINOMIAL[possible - playable][oppLeft] / BINOMIAL[possible][oppLeft];
+
+		double value = 0;
+		if (pGo < 1) {
+			for (int rank = 1; rank <= CardMask.SUIT_SIZE; rank++) {
+				int n = (int) (available >>> 4 * rank) & 0xF;
+				if (n > 0 && PeggingPile.value(rank) >= oppMin && PeggingPile.canPlay(pile, rank)) {
+					value += (1 - pGo) * n / playable
+							* this.play(mine, insert(oppPlayed, rank), pile, true, go, oppMin, rank);
+				}
+			}
+		}
+		if (pGo > 0) {
+			/* The opponent saying go shows that all of their cards are too high to play */
+			int newMin = oppLeft > 0 ? Math.max(oppMin, PeggingPile.MAX_COUNT + 1 - PeggingPile.count(pile)) : oppMin;
+			value += pGo * this.cannotPlay(mine, oppPlayed, pile, true, go, newMin);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value after a card is played
+	 *
+	 * @param mine      the player's cards left after the play
+	 * @param oppPlayed the opponent's played ranks after the play
+	 * @param pile      the packed pile before the play
+	 * @param opponent  true if the opponent played the card
+	 * @param go        true if the other player has said go
+	 * @param oppMin    the lowest card value the opponent could have
+	 * @param rank      the rank number of the played card
+	 * @return the expected net points for the player from the play on
+	 * @see #turn
+	 */
+	private double play(int mine, long oppPlayed, long pile, boolean opponent, boolean go, int oppMin, int rank) {
+		int points = PeggingPile.points(pile, rank);
+		long newPile = PeggingPile.play(pile, rank);
+		double value;
+		if (PeggingPile.count(newPile) == PeggingPile.MAX_COUNT) {
+			/* The count is reset and the other player starts again */
+			value = this.turn(mine, oppPlayed, PeggingPile.EMPTY, !opponent, false, oppMin);
+		} else if (go) {
+			/* The other player has said go, so the same player keeps playing */
+			value = this.turn(mine, oppPlayed, newPile, opponent, true, oppMin);
+		} else {
+			value = this.turn(mine, oppPlayed, newPile, !opponent, false, oppMin);
+		}
+		return (opponent ? -points : points) + value;
+	}
+
+	/**
+	 * Returns the value when the player whose turn it is can't play
+	 *
+	 * <p>
+	 * If the other player already said go, neither player can play, so the player
+	 * whose turn it is played last and gets 1 point. The count is reset and the
+	 * other player starts again. Otherwise the player says go and the other player
+	 * keeps playing
+	 *
+	 * @see #turn
+	 */
+	private double cannotPlay(int mine, long oppPlayed, long pile, boolean oppTurn, boolean go, int oppMin) {
+		if (go) {
+			int points = pile == PeggingPile.EMPTY ? 0 : oppTurn ? -1 : 1;
+			return points + this.turn(mine, oppPlayed, PeggingPile.EMPTY, !oppTurn, false, oppMin);
+		}
+		return this.turn(mine, oppPlayed, pile, !oppTurn, true, oppMin);
+	}
+
+	/**
+	 * Adds a rank number to a sorted list of rank numbers packed 4 bits each
+	 *
+	 * @param ranks the sorted rank numbers, smallest lowest
+	 * @param rank  the rank number to add
+	 * @return the sorted rank numbers with {@code rank} added
+	 */
+	private static long insert(long ranks, int rank) {
+		int shift = 0;
+		while ((ranks >>> shift & 0xF) != 0 && (ranks >>> shift & 0xF) < rank) {
+			shift += 4;
+		}
+		long below = ranks & (1L << shift) - 1;
+		return (ranks & ~((1L << shift) - 1)) << 4 | (long) rank << shift | below;
+	}
+
+	/**
+	 * Returns the slot of a key in the transposition table, or the empty slot
+	 * where it would go
+	 *
+	 * @param key a state key with {@code USED} set
+	 * @return the index of the key in {@code table}
+	 */
+	private int find(long key) {
+		int mask = this.table.length - 2;
+		int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 65 - Integer.numberOfTrailingZeros(this.table.length)) << 1;
+		while (this.table[slot] != 0 && this.table[slot] != key) {
+			slot = slot + 2 & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Stores the value of a state, doubling the table when it is half full
+	 *
+	 * @param key   a state key with {@code USED} set
+	 * @param value the value of the state
+	 */
+	private void store(long key, double value) {
+		if (4 * (this.size + 1) > this.table.length) {
+			long[] old = this.table;
+			this.table = new long[2 * old.length];
+			for (int i = 0; i < old.length; i += 2) {
+				if (old[i] != 0) {
+					int slot = this.find(old[i]);
+					this.table[slot] = old[i];
+					this.table[slot + 1] = old[i + 1];
+				}
+			}
+		}
+		int slot = this.find(key);
+		this.table[slot] = key;
+		this.table[slot + 1] = Double.doubleToRawLongBits(value);
+		this.size++;
+	}
+
+}
@@ -0,0 +1,99 @@
+package main;
+
+import java.util.SplittableRandom;
+
+/**
+ * An interface for a way of choosing which card to play during pegging in a
+ * two player game, where cards are stored as indices and hands as bitmasks
+ * (see {@code CardMask}) and the pile is packed by {@code PeggingPile}
+ *
+ * <p>
+ * Strategies are shared by every thread of a {@code GameSimulator}, so they
+ * must not keep any state between calls. Any randomness must come from the
+ * {@code SplittableRandom} passed in, so games can be replayed from their seed
+ *
+ * @author Reid Moffat
+ */
+public interface PeggingStrategy {
+
+	/**
+	 * Chooses the card to play, which is only asked for when the player has at
+	 * least one card they can play
+	 *
+	 * @param hand          a bitmask of the player's cards that haven't been
+	 *                      played
+	 * @param playable      a bitmask of the cards in the hand that can be played
+	 *                      without going past 31
+	 * @param pile          the packed pile since the count was last reset
+	 * @param score         the player's score
+	 * @param opponentScore the opponent's score
+	 * @param random        the random numbers of the game
+	 * @return the index of the card to play, which must be in {@code playable}
+	 */
+	public int play(long hand, long playable, long pile, int score, int opponentScore, SplittableRandom random);
+
+	/**
+	 * Returns a strategy that plays a random card
+	 *
+	 * @return a random {@code PeggingStrategy}
+	 */
+	public static PeggingStrategy random() {
+		return (hand, playable, pile, score, opponentScore, random) -> {
+			long m = playable;
+			for (int skip = random.nextInt(Long.bitCount(playable)); skip > 0; skip--) {
+				m &= m - 1;
+			}
+			return Long.numberOfTrailingZeros(m);
+		};
+	}
+
+	/**
+	 * Returns a strategy that plays the card that scores the most points right
+	 * away
+	 *
+	 * <p>
+	 * Ties are broken by not leaving a count of 5 or 21 (where a ten card makes
+	 * fifteen or thirty-one), and then by playing the highest card
+	 *
+	 * @return a greedy {@code PeggingStrategy}
+	 */
+	public static PeggingStrategy greedy() {
+		return (hand, playable, pile, score, opponentScore, random) -> {
+			int best = -1;
+			int bestValue = Integer.MIN_VALUE;
+			for (long m = playable; m != 0; m &= m - 1) {
+				int card = Long.numberOfTrailingZeros(m);
+				int rank = CardMask.rank(card) + 1;
+				int count = PeggingPile.count(pile) + PeggingPile.value(rank);
+
+				/* Points first, then a safe count, then the card's rank */
+				int value = PeggingPile.points(pile, rank) << 5 | (count == 5 || count == 21 ? 0 : 1 << 4) | rank;
+				if (value > bestValue) {
+					best = card;
+					bestValue = value;
+				}
+			}
+			return best;
+		};
+	}
+
+	/**
+	 * Returns the strategy with the given command line name ({@code random} or
+	 * {@code greedy})
+	 *
+	 * @param name the name of the strategy (not case sensitive)
+	 * @return the {@code PeggingStrategy} with the given name
+	 * @throws IllegalArgumentException if no strategy has the given name
+	 */
+	public static PeggingStrategy fromName(String name) {
+		switch (name.trim().toLowerCase()) {
+		case "random":
+			return random();
+		case "greedy":
+			return greedy();
+		default:
+			throw new IllegalArgumentException("unknown pegging strategy " + name);
+		}
+	}
+
+}
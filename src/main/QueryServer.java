@@ -0,0 +1,533 @@
+package main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP server that answers JSON queries, so many hands can be analyzed
+ * by one warm JVM instead of starting a new one for each hand
+ *
+ * <p>
+ * Every endpoint takes a {@code GET} request with a query string, where cards
+ * are in the notation of {@code UserInterface.checkValidCard}, separated by
+ * commas or spaces:
+ *
+ * <pre>
+ * /score?hand=5H,5C,JD,6S&amp;starter=KH[&amp;crib=true]  the points in a hand
+ * /discard?dealt=5H,5C,JD,6S,KH,4D[&amp;dealer=true][&amp;top=k]
+ *                                                  the result of each discard
+ * /crib?dealt=5H,5C,JD,6S,KH,4D&amp;discard=5H,5C     the average points in the crib
+ * /metrics                                         latency and throughput
+ * </pre>
+ *
+ * A request that can't be answered gets status 400 and an {@code error}
+ * message. The {@code /discard} results are in the same format as the
+ * {@code jsonl} batch format (see {@code BatchAnalyzer}), and {@code top}
+ * keeps only the k discards with the most expected points, best first
+ *
+ * <p>
+ * Each request is handled on its own virtual thread when the JVM has them
+ * (Java 21 or later), and on a cached pool of threads otherwise. The scorer,
+ * its tables, the discard database and the {@code ForkJoinPool} the analysis
+ * runs on are shared by every request. The metrics of each endpoint are
+ * counted in {@code LongAdder}s and a {@code LatencyHistogram}, so requests
+ * never wait on each other to record them
+ *
+ * <p>
+ * Deals that are calculated rather than looked up go through a shared
+ * {@code DiscardCache}, whose hits, misses and evictions are in the metrics
+ *
+ * <p>
+ * Usage: {@code QueryServer [--port=<n>] [--scoring=<mode>]
+ * [--advice=<file>] [--cache=<MB>]}. The server only listens on the loopback
+ * address
+ *
+ * @author Reid Moffat
+ */
+final class QueryServer {
+
+	/**
+	 * The port the server listens on by default
+	 */
+	static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * The number of connections that can wait to be accepted
+	 */
+	private static final int BACKLOG = 1024;
+
+	/**
+	 * The metrics of one endpoint
+	 */
+	private static final class EndpointMetrics {
+
+		/**
+		 * The number of requests that got an error
+		 */
+		private final LongAdder errors = new LongAdder();
+
+		/**
+		 * How long each request took to answer
+		 */
+		private final LatencyHistogram latency = new LatencyHistogram();
+	}
+
+	/**
+	 * A function that answers a request
+	 */
+	@FunctionalInterface
+	private interface Endpoint {
+
+		/**
+		 * Answers a request
+		 *
+		 * @param query the request's query parameters
+		 * @return the JSON response
+		 * @throws IllegalArgumentException if the query is invalid
+		 */
+		String answer(Map<String, String> query);
+	}
+
+	/**
+	 * Calculates the points in each hand and starter card
+	 */
+	private final HandScorer scorer;
+
+	/**
+	 * A precomputed database of six card discards, or null to calculate every
+	 * discard
+	 */
+	private final DiscardDatabase advice;
+
+	/**
+	 * The pool the analysis runs on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Analyzes the best discards of deals without the crib
+	 */
+	private final DiscardAnalyzer analyzer;
+
+	/**
+	 * The results of recent deals
+	 */
+	private final DiscardCache cache;
+
+	/**
+	 * The metrics of each endpoint, by path
+	 */
+	private final Map<String, EndpointMetrics> metrics = new LinkedHashMap<String, EndpointMetrics>();
+
+	/**
+	 * The time the server was made, for the throughput
+	 */
+	private final long start = System.nanoTime();
+
+	/**
+	 * The HTTP server
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The threads requests are handled on
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Initializes a {@code QueryServer} listening on the loopback address, which
+	 * doesn't accept requests until it is started
+	 *
+	 * @param scorer calculates the points in each hand and starter card
+	 * @param advice a precomputed database of six card discards, or null to
+	 *               calculate every discard
+	 * @param pool   the pool the analysis runs on
+	 * @param cache  the memory budget of the cache of recent deals in bytes
+	 * @param port   the port to listen on (0 for any free port)
+	 * @throws IOException if the server can't listen on the port
+	 */
+	QueryServer(HandScorer scorer, DiscardDatabase advice, ForkJoinPool pool, long cache, int port)
+			throws IOException {
+		this.scorer = scorer;
+		this.advice = advice;
+		this.pool = pool;
+		this.analyzer = new DiscardAnalyzer(scorer, pool);
+		this.cache = new DiscardCache(this.analyzer, cache);
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		this.executor = requestExecutor();
+		this.server.setExecutor(this.executor);
+
+		this.addEndpoint("/score", this::score);
+		this.addEndpoint("/discard", this::discard);
+		this.addEndpoint("/crib", this::crib);
+		this.server.createContext("/metrics", exchange -> respond(exchange, 200, this.metricsJson()));
+	}
+
+	/**
+	 * Returns an executor that runs each task on a new virtual thread if the JVM
+	 * has them, or on a cached pool of daemon threads if it doesn't
+	 *
+	 * @return the executor requests are handled on
+	 */
+	private static ExecutorService requestExecutor() {
+		try {
+			/* Virtual threads are only in Java 21 and later, and this is built for older versions */
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "query-server");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Adds an endpoint that answers {@code GET} requests and records its metrics
+	 *
+	 * @param path     the path of the endpoint
+	 * @param endpoint answers each request
+	 */
+	private void addEndpoint(String path, Endpoint endpoint) {
+		EndpointMetrics endpointMetrics = new EndpointMetrics();
+		this.metrics.put(path, endpointMetrics);
+		this.server.createContext(path, exchange -> {
+			long start = System.nanoTime();
+			int status = 200;
+			String response;
+			try {
+				if (!exchange.getRequestMethod().equals("GET")) {
+					status = 405;
+					response = error("only GET requests are supported");
+				} else if (!exchange.getRequestURI().getPath().equals(path)) {
+					status = 404;
+					response = error("no endpoint at " + exchange.getRequestURI().getPath());
+				} else {
+					response = endpoint.answer(query(exchange.getRequestURI()));
+				}
+			} catch (IllegalArgumentException e) {
+				status = 400;
+				response = error(e.getMessage());
+			} catch (RuntimeException e) {
+				status = 500;
+				response = error("the request could not be answered");
+			}
+			try {
+				respond(exchange, status, response);
+			} finally {
+				if (status != 200) {
+					endpointMetrics.errors.increment();
+				}
+				endpointMetrics.latency.record(System.nanoTime() - start);
+			}
+		});
+	}
+
+	/**
+	 * Starts accepting requests
+	 */
+	void start() {
+		this.server.start();
+	}
+
+	/**
+	 * Stops accepting requests and waits up to a second for the current ones to
+	 * finish
+	 */
+	void stop() {
+		this.server.stop(1);
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Returns the port the server listens on
+	 *
+	 * @return the port
+	 */
+	int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Scores a hand with a starter card
+	 *
+	 * @param query the parameters {@code hand} (four cards), {@code starter} and
+	 *              optionally {@code crib}
+	 * @return the points in the hand
+	 */
+	private String score(Map<String, String> query) {
+		long hand = cards(query, "hand", 4);
+		long starter = cards(query, "starter", 1);
+		if ((hand & starter) != 0) {
+			throw new IllegalArgumentException("the starter can't be in the hand");
+		}
+		boolean crib = bool(query, "crib", false);
+		int index = Long.numberOfTrailingZeros(starter);
+		int points = crib ? this.scorer.scoreCrib(hand, index) : this.scorer.score(hand, index);
+		return "{\"hand\":\"" + BatchAnalyzer.notation(hand) + "\",\"starter\":\"" + BatchAnalyzer.notation(starter)
+				+ "\",\"crib\":" + crib + ",\"points\":" + points + "}";
+	}
+
+	/**
+	 * Analyzes every discard of a deal, or only the best ones
+	 *
+	 * <p>
+	 * Deals without the crib that aren't looked up are analyzed with
+	 * {@code DiscardAnalyzer.best} if only the best discards are asked for, which
+	 * skips most of the others instead of going through the cache
+	 *
+	 * @param query the parameters {@code dealt} (five or six cards), and
+	 *              optionally {@code dealer} to include the crib and {@code top}
+	 *              for the number of best discards
+	 * @return the result of each discard
+	 */
+	private String discard(Map<String, String> query) {
+		long dealt = cards(query, "dealt", -1);
+		int top = query.containsKey("top") ? positive(query, "top") : 0;
+		List<DiscardResult> results;
+		StringBuilder sb = new StringBuilder("{\"dealt\":\"").append(BatchAnalyzer.notation(dealt)).append('"');
+		if (query.containsKey("dealer")) {
+			boolean dealer = bool(query, "dealer", false);
+			if (Long.bitCount(dealt) != 6) {
+				throw new IllegalArgumentException("only six card deals have a crib");
+			}
+			results = this.advice != null && this.advice.includesCrib() ? this.advice.lookup(dealt, dealer)
+					: this.cache.analyze(dealt, dealer);
+			sb.append(",\"dealer\":").append(dealer);
+		} else if (this.advice != null && Long.bitCount(dealt) == 6) {
+			results = this.advice.lookup(dealt);
+		} else {
+			results = top > 0 ? this.analyzer.best(dealt, top) : this.cache.analyze(dealt);
+		}
+		if (top > 0) {
+			results = DiscardAnalyzer.top(results, top);
+		}
+		sb.append(",\"discards\":");
+		BatchAnalyzer.appendJson(sb, results);
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Calculates the average points in the crib for a discard, over every discard
+	 * the opponent could make and every starter card
+	 *
+	 * @param query the parameters {@code dealt} (six cards) and {@code discard}
+	 *              (two of the dealt cards)
+	 * @return the average crib points
+	 */
+	private String crib(Map<String, String> query) {
+		long dealt = cards(query, "dealt", 6);
+		long discard = cards(query, "discard", 2);
+		if ((discard & ~dealt) != 0) {
+			throw new IllegalArgumentException("the discard must be two of the dealt cards");
+		}
+		long total = new CribAnalyzer(this.scorer, this.pool).totalPoints(dealt, new long[] { discard })[0];
+		return "{\"dealt\":\"" + BatchAnalyzer.notation(dealt) + "\",\"discard\":\""
+				+ BatchAnalyzer.notation(discard) + "\",\"crib\":"
+				+ BatchAnalyzer.decimal((double) total / CribAnalyzer.outcomes(dealt)) + "}";
+	}
+
+	/**
+	 * Returns the metrics of every endpoint
+	 *
+	 * @return the number of requests and errors, the throughput and the latency
+	 *         (in microseconds) of each endpoint, and the counters of the cache
+	 */
+	private String metricsJson() {
+		double seconds = (System.nanoTime() - this.start) / 1e9;
+		StringBuilder sb = new StringBuilder("{\"uptimeSeconds\":").append(BatchAnalyzer.decimal(seconds))
+				.append(",\"executor\":\"").append(this.executor.getClass().getSimpleName())
+				.append("\",\"cache\":{\"deals\":").append(this.cache.size()).append(",\"bytes\":")
+				.append(this.cache.weight()).append(",\"hits\":").append(this.cache.getHits())
+				.append(",\"misses\":").append(this.cache.getMisses()).append(",\"evictions\":")
+				.append(this.cache.getEvictions()).append(",\"hitRate\":")
+				.append(BatchAnalyzer.decimal(this.cache.hitRate())).append("},\"endpoints\":{");
+		boolean first = true;
+		for (Map.Entry<String, EndpointMetrics> entry : this.metrics.entrySet()) {
+			LatencyHistogram latency = entry.getValue().latency;
+			long requests = latency.count();
+			sb.append(first ? "" : ",").append('"').append(entry.getKey().substring(1)).append("\":{\"requests\":")
+					.append(requests).append(",\"errors\":").append(entry.getValue().errors.sum())
+					.append(",\"requestsPerSecond\":").append(BatchAnalyzer.decimal(requests / seconds))
+					.append(",\"meanMicros\":").append(BatchAnalyzer.decimal(latency.mean() / 1000))
+					.append(",\"p50Micros\":").append(latency.quantile(0.5) / 1000).append(",\"p99Micros\":")
+					.append(latency.quantile(0.99) / 1000).append(",\"maxMicros\":").append(latency.max() / 1000)
+					.append('}');
+			first = false;
+		}
+		return sb.append("}}").toString();
+	}
+
+	/**
+	 * Returns the parameters of a request's query string
+	 *
+	 * @param uri the request's URI
+	 * @return the decoded value of each parameter
+	 */
+	private static Map<String, String> query(URI uri) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		String query = uri.getRawQuery();
+		if (query == null || query.isEmpty()) {
+			return parameters;
+		}
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			String name = equals < 0 ? parameter : parameter.substring(0, equals);
+			String value = equals < 0 ? "" : parameter.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns the cards of a query parameter
+	 *
+	 * @param query the query parameters
+	 * @param name  the name of the parameter
+	 * @param count the number of cards there must be, or -1 for five or six
+	 * @return a bitmask of the cards
+	 * @throws IllegalArgumentException if the parameter is missing, has an
+	 *                                  invalid card or has the wrong number of
+	 *                                  cards
+	 */
+	private static long cards(Map<String, String> query, String name, int count) {
+		String value = query.get(name);
+		if (value == null || value.trim().isEmpty()) {
+			throw new IllegalArgumentException("missing parameter " + name);
+		}
+		String[] tokens = value.trim().split("[\\s,]+");
+		if (count < 0 ? tokens.length != 5 && tokens.length != 6 : tokens.length != count) {
+			throw new IllegalArgumentException(
+					name + " must have " + (count < 0 ? "five or six" : String.valueOf(count)) + " cards");
+		}
+		return BatchAnalyzer.parseCards(tokens, tokens.length);
+	}
+
+	/**
+	 * Returns the boolean value of a query parameter
+	 *
+	 * @param query        the query parameters
+	 * @param name         the name of the parameter
+	 * @param defaultValue the value if the parameter is missing
+	 * @return the value of the parameter
+	 * @throws IllegalArgumentException if the value isn't {@code true} or
+	 *                                  {@code false}
+	 */
+	private static boolean bool(Map<String, String> query, String name, boolean defaultValue) {
+		String value = query.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		switch (value.trim().toLowerCase(Locale.ROOT)) {
+		case "true":
+			return true;
+		case "false":
+			return false;
+		default:
+			throw new IllegalArgumentException(name + " must be true or false");
+		}
+	}
+
+	/**
+	 * Returns the value of a query parameter that must be a positive integer
+	 *
+	 * @param query the query parameters
+	 * @param name  the name of the parameter
+	 * @return the value of the parameter
+	 * @throws IllegalArgumentException if the value isn't a positive integer
+	 */
+	private static int positive(Map<String, String> query, String name) {
+		try {
+			int value = Integer.parseInt(query.get(name).trim());
+			if (value > 0) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			/* Reported below like any other invalid value */
+		}
+		throw new IllegalArgumentException(name + " must be a positive integer");
+	}
+
+	/**
+	 * Returns a JSON error response
+	 *
+	 * @param message why the request couldn't be answered
+	 * @return the error as a JSON object
+	 */
+	private static String error(String message) {
+		return "{\"error\":\"" + BatchAnalyzer.json(String.valueOf(message)) + "\"}";
+	}
+
+	/**
+	 * Sends a JSON response and closes the exchange
+	 *
+	 * @param exchange the request's exchange
+	 * @param status   the HTTP status code
+	 * @param json     the response body
+	 * @throws IOException if the response can't be sent
+	 */
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Runs a query server until the JVM is stopped
+	 *
+	 * @param args the options {@code --port=<n>}, {@code --scoring=<mode>},
+	 *             {@code --advice=<file>} and {@code --cache=<MB>} (64 by
+	 *             default)
+	 * @throws IOException if the score table or discard database can't be loaded,
+	 *                     or the server can't listen on the port
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		ScoringMode mode = ScoringMode.RANK_TABLE;
+		DiscardDatabase advice = null;
+		long cache = DiscardCache.DEFAULT_BUDGET;
+		for (String arg : args) {
+			if (arg.startsWith("--port=")) {
+				port = Integer.parseInt(arg.substring("--port=".length()));
+			} else if (arg.startsWith("--scoring=")) {
+				mode = ScoringMode.fromName(arg.substring("--scoring=".length()));
+			} else if (arg.startsWith("--advice=")) {
+				advice = DiscardDatabase.open(Paths.get(arg.substring("--advice=".length())));
+			} else if (arg.startsWith("--cache=")) {
+				cache = Long.parseLong(arg.substring("--cache=".length())) << 20;
+			} else {
+				throw new IllegalArgumentException("unknown option " + arg);
+			}
+		}
+
+		QueryServer server = new QueryServer(mode.scorer(), advice, ForkJoinPool.commonPool(), cache, port);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		server.start();
+		System.out.println("Listening on http://localhost:" + server.getPort() + " with "
+				+ server.executor.getClass().getSimpleName() + " (stop with Ctrl+C)");
+	}
+
+}
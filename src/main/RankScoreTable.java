@@ -0,0 +1,232 @@
+package main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A small precomputed table of the points in every multiset of five card ranks
+ *
+ * <p>
+ * Fifteens, multiples and runs only depend on the ranks of a hand and starter
+ * card, not their suits. There are only C(17, 5) = 6,188 sorted multisets of
+ * five ranks, so the points from those three combinations are stored in a
+ * 6 KB table that stays in the CPU cache. The suits are only needed for flushes
+ * and nobs, which are added with a few bit operations
+ *
+ * <p>
+ * A sorted multiset of ranks r1 &lt;= r2 &lt;= ... &lt;= r5 (zero-based) is
+ * turned into the strictly increasing combination r1 &lt; r2 + 1 &lt; ... &lt;
+ * r5 + 4 of the numbers 0-16, which is indexed by its rank in the combinatorial
+ * number system (see {@code ScoreTable})
+ *
+ * <p>
+ * The table is generated and checked against {@code CribbageHand} when the
+ * project is built (see {@code TableGenerator}), and read from the resource
+ * {@code rank-scores.dat} with one bulk read the first time it is used. If the
+ * resource is missing, for example when running from the source folder without
+ * building, the table is calculated instead
+ *
+ * @author Reid Moffat
+ */
+final class RankScoreTable implements HandScorer {
+
+	/**
+	 * The number of sorted multisets of five ranks (including the impossible five
+	 * of a kind)
+	 */
+	static final int MULTISETS = 6188;
+
+	/**
+	 * The name of the resource (next to this class) the table is read from
+	 */
+	static final String RESOURCE = "rank-scores.dat";
+
+	/**
+	 * Identifies a rank score table file ("CRBR" in ASCII)
+	 */
+	private static final int MAGIC = 0x43524252;
+
+	/**
+	 * The version of the file format, incremented whenever the layout changes
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The size in bytes of the file header (magic, version and number of entries)
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * {@code BINOMIAL[n][k]} is n choose k for every n up to 16 and k up to 5
+	 */
+	private static final int[][] BINOMIAL = ScoreTable.binomials(CardMask.SUIT_SIZE + 4, 5);
+
+	/**
+	 * The table read from the resource, which every scorer shares (declared
+	 * after {@code BINOMIAL}, which it needs to be initialized)
+	 */
+	static final RankScoreTable INSTANCE = load();
+
+	/**
+	 * The points from fifteens, multiples and runs for each multiset of ranks
+	 */
+	private final byte[] points;
+
+	/**
+	 * Initializes a {@code RankScoreTable}
+	 *
+	 * @param points the points from fifteens, multiples and runs for each
+	 *               multiset of ranks
+	 */
+	private RankScoreTable(byte[] points) {
+		this.points = points;
+	}
+
+	/**
+	 * Reads the table from its resource, or calculates it if the resource is
+	 * missing or invalid
+	 *
+	 * @return the table
+	 */
+	private static RankScoreTable load() {
+		try (InputStream in = RankScoreTable.class.getResourceAsStream(RESOURCE)) {
+			byte[] points = in == null ? null : read(in.readAllBytes());
+			if (points != null) {
+				return new RankScoreTable(points);
+			}
+		} catch (IOException e) {
+			/* The table can always be calculated instead */
+		}
+		return new RankScoreTable(calculate());
+	}
+
+	/**
+	 * Reads a rank score table file
+	 *
+	 * @param path the location of the table file
+	 * @return the {@code RankScoreTable}
+	 * @throws IOException if the file can't be read or isn't a valid rank score
+	 *                     table
+	 */
+	static RankScoreTable open(Path path) throws IOException {
+		byte[] points = read(Files.readAllBytes(path));
+		if (points == null) {
+			throw new IOException(path + " is not a valid rank score table");
+		}
+		return new RankScoreTable(points);
+	}
+
+	/**
+	 * Returns the entries of a rank score table file
+	 *
+	 * @param file the contents of the file
+	 * @return the points of each multiset of ranks, or null if the file isn't a
+	 *         valid rank score table
+	 */
+	private static byte[] read(byte[] file) {
+		ByteBuffer buffer = ByteBuffer.wrap(file);
+		if (file.length != HEADER_SIZE + MULTISETS || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+				|| buffer.getInt() != MULTISETS) {
+			return null;
+		}
+		byte[] points = new byte[MULTISETS];
+		buffer.get(points);
+		return points;
+	}
+
+	/**
+	 * Calculates the table and writes it to a file
+	 *
+	 * @param path the location of the table file
+	 * @throws IOException if the file can't be written
+	 */
+	static void generate(Path path) throws IOException {
+		ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + MULTISETS);
+		file.putInt(MAGIC).putInt(VERSION).putInt(MULTISETS).put(calculate());
+		MappedTable.write(file, path);
+	}
+
+	/**
+	 * Calculates the table by scoring one hand for each multiset of ranks
+	 *
+	 * @return the points from fifteens, multiples and runs for each multiset
+	 */
+	private static byte[] calculate() {
+		byte[] points = new byte[MULTISETS];
+		for (int r1 = 0; r1 < CardMask.SUIT_SIZE; r1++) {
+			for (int r2 = r1; r2 < CardMask.SUIT_SIZE; r2++) {
+				for (int r3 = r2; r3 < CardMask.SUIT_SIZE; r3++) {
+					for (int r4 = r3; r4 < CardMask.SUIT_SIZE; r4++) {
+						for (int r5 = r4; r5 < CardMask.SUIT_SIZE; r5++) {
+							/* Five of a kind is not possible with one deck */
+							if (r1 == r5) {
+								continue;
+							}
+
+							/* Duplicate ranks are given different suits so every card is unique */
+							long cards = 0;
+							for (int rank : new int[] { r1, r2, r3, r4, r5 }) {
+								int suit = 0;
+								while ((cards & 1L << suit * CardMask.SUIT_SIZE + rank) != 0) {
+									suit++;
+								}
+								cards |= 1L << suit * CardMask.SUIT_SIZE + rank;
+							}
+							points[index(BitmaskHand.rankCounts(cards))] = (byte) BitmaskHand.rankPoints(cards);
+						}
+					}
+				}
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Calculates the sum of point combinations for a four card hand and a starter
+	 * card
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the hand with the given starter
+	 */
+	@Override
+	public int score(long hand, int starter) {
+		return this.points[index(BitmaskHand.rankCounts(hand | 1L << starter))] + BitmaskHand.flushes(hand, starter)
+				+ BitmaskHand.nobs(hand, starter);
+	}
+
+	/**
+	 * Calculates the points from fifteens, multiples and runs for a four card hand
+	 * and a starter card with one table lookup
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the points in the hand without flushes and nobs
+	 */
+	@Override
+	public int rankPoints(long hand, int starter) {
+		return this.points[index(BitmaskHand.rankCounts(hand | 1L << starter))];
+	}
+
+	/**
+	 * Returns the index of a multiset of five ranks in the table
+	 *
+	 * @param counts the packed count of each rank (see
+	 *               {@code BitmaskHand.rankCounts})
+	 * @return the index of the multiset
+	 */
+	static int index(long counts) {
+		int index = 0;
+		int k = 1;
+		for (int rank = 0; counts != 0; rank++, counts >>>= 4) {
+			for (int n = (int) (counts & 0xF); n > 0; n--, k++) {
+				index += BINOMIAL[rank + k - 1][k];
+			}
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,222 @@
+package main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A precomputed table of the points in every combination of five cards,
+ * memory-mapped read-only from a file
+ *
+ * <p>
+ * There are only C(52, 5) = 2,598,960 combinations of a four card hand and a
+ * starter card. Each combination is stored as one byte, indexed by its rank in
+ * the combinatorial number system:
+ *
+ * <pre>
+ * rank = C(c1, 1) + C(c2, 2) + C(c3, 3) + C(c4, 4) + C(c5, 5)
+ * </pre>
+ *
+ * where c1 &lt; c2 &lt; ... &lt; c5 are the card indices (see {@code CardMask})
+ *
+ * <p>
+ * A byte only depends on which five cards there are, not which one is the
+ * starter, so it holds the points from fifteens, multiples and runs. Flushes and
+ * nobs depend on the starter and are added with a couple of bit operations when
+ * the table is read
+ *
+ * <p>
+ * The file is mapped read-only (see {@code MappedTable}), so the table is
+ * outside of the Java heap and every JVM on the same machine shares the same
+ * pages of the operating system's page cache
+ *
+ * <p>
+ * The table is generated and checked against {@code CribbageHand} when the
+ * project is built (see {@code TableGenerator}) and bundled as the resource
+ * {@code hand-scores.dat}. The first time a table file is opened it is copied
+ * from the resource, or generated if the resource is missing. By default the
+ * copy is cached in the user's own cache directory (see {@code MappedTable}),
+ * so it is only made once instead of in every working directory the calculator
+ * runs in, and no other user can replace it
+ *
+ * @author Reid Moffat
+ */
+final class ScoreTable implements HandScorer {
+
+	/**
+	 * The default location of the table file, which can be changed with the
+	 * system property {@code cribbage.scoreTable}: a copy in the user's cache
+	 * directory named after the file format's version, so a copy of an older
+	 * format is never mapped
+	 */
+	static final Path DEFAULT_PATH = MappedTable.cacheFile("cribbage.scoreTable",
+			"hand-scores-v" + ScoreTable.VERSION + ".dat");
+
+	/**
+	 * The number of five card combinations (and bytes in the table)
+	 */
+	static final int COMBINATIONS = 2598960;
+
+	/**
+	 * The name of the resource (next to this class) that table files are copied
+	 * from
+	 */
+	static final String RESOURCE = "hand-scores.dat";
+
+	/**
+	 * Identifies a score table file ("CRIB" in ASCII)
+	 */
+	private static final int MAGIC = 0x43524942;
+
+	/**
+	 * The version of the file format, incremented whenever the layout changes
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The size in bytes of the file header (magic, version and number of entries)
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * {@code BINOMIAL[n][k]} is n choose k for every card index n and k up to 5
+	 */
+	private static final int[][] BINOMIAL = binomials(CardMask.DECK_SIZE, 5);
+
+	/**
+	 * The entries of the mapped file, where entry <i>i</i> is at byte <i>i</i>
+	 */
+	private final MappedTable scores;
+
+	/**
+	 * Initializes a {@code ScoreTable} from a mapped file
+	 *
+	 * @param file the mapped table file, including the header
+	 */
+	private ScoreTable(MappedTable file) {
+		this.scores = file.slice(HEADER_SIZE, COMBINATIONS);
+	}
+
+	/**
+	 * Memory-maps a score table file, copying it from the resource (or generating
+	 * it) first if it doesn't exist
+	 *
+	 * @param path the location of the table file
+	 * @return the mapped {@code ScoreTable}
+	 * @throws IOException if the file can't be read or written, or it isn't a
+	 *                     valid score table
+	 */
+	static ScoreTable open(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			try (InputStream resource = ScoreTable.class.getResourceAsStream(RESOURCE)) {
+				if (resource != null) {
+					MappedTable.write(resource, path);
+				} else {
+					generate(path);
+				}
+			}
+		}
+
+		MappedTable file = MappedTable.open(path);
+		if (file.size() != HEADER_SIZE + COMBINATIONS || file.getInt(0) != MAGIC || file.getInt(4) != VERSION
+				|| file.getInt(8) != COMBINATIONS) {
+			throw new IOException(path + " is not a valid score table");
+		}
+		return new ScoreTable(file);
+	}
+
+	/**
+	 * Calculates every entry of the table and writes it to a file
+	 *
+	 * <p>
+	 * The table is built outside of the Java heap and written to a temporary file
+	 * that is then moved into place, so another process never sees a partially
+	 * written table
+	 *
+	 * @param path the location of the table file
+	 * @throws IOException if the file can't be written
+	 */
+	static void generate(Path path) throws IOException {
+		ByteBuffer table = ByteBuffer.allocateDirect(HEADER_SIZE + COMBINATIONS);
+		table.putInt(MAGIC).putInt(VERSION).putInt(COMBINATIONS);
+
+		/* Every combination of five card indices */
+		for (int c1 = 0; c1 < CardMask.DECK_SIZE; c1++) {
+			for (int c2 = c1 + 1; c2 < CardMask.DECK_SIZE; c2++) {
+				for (int c3 = c2 + 1; c3 < CardMask.DECK_SIZE; c3++) {
+					for (int c4 = c3 + 1; c4 < CardMask.DECK_SIZE; c4++) {
+						for (int c5 = c4 + 1; c5 < CardMask.DECK_SIZE; c5++) {
+							long cards = 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4 | 1L << c5;
+							table.put(HEADER_SIZE + rank(cards), (byte) BitmaskHand.rankPoints(cards));
+						}
+					}
+				}
+			}
+		}
+
+		MappedTable.write(table, path);
+	}
+
+	/**
+	 * Returns the total number of points in a four card hand with a starter card
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the hand with the given starter
+	 */
+	@Override
+	public int score(long hand, int starter) {
+		return this.scores.getByte(rank(hand | 1L << starter)) + BitmaskHand.flushes(hand, starter)
+				+ BitmaskHand.nobs(hand, starter);
+	}
+
+	/**
+	 * Calculates the points from fifteens, multiples and runs for a four card hand
+	 * and a starter card with one table lookup
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the points in the hand without flushes and nobs
+	 */
+	@Override
+	public int rankPoints(long hand, int starter) {
+		return this.scores.getByte(rank(hand | 1L << starter));
+	}
+
+	/**
+	 * Returns the rank of a combination of five cards in the combinatorial number
+	 * system (between 0 and {@code COMBINATIONS - 1})
+	 *
+	 * @param cards a bitmask of five cards
+	 * @return the index of the combination in the table
+	 */
+	static int rank(long cards) {
+		int rank = 0;
+		int k = 1;
+		for (long m = cards; m != 0; m &= m - 1) {
+			rank += BINOMIAL[Long.numberOfTrailingZeros(m)][k++];
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns a table of binomial coefficients
+	 *
+	 * @param n the largest n (exclusive)
+	 * @param k the largest k (inclusive)
+	 * @return a table where entry [n][k] is n choose k
+	 */
+	static int[][] binomials(int n, int k) {
+		int[][] table = new int[n][k + 1];
+		for (int i = 0; i < n; i++) {
+			table[i][0] = 1;
+			for (int j = 1; j <= k && j <= i; j++) {
+				table[i][j] = table[i - 1][j - 1] + (j < i ? table[i - 1][j] : 0);
+			}
+		}
+		return table;
+	}
+
+}
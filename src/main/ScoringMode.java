@@ -0,0 +1,71 @@
+package main;
+
+import java.io.IOException;
+
+/**
+ * The ways the calculator can score a hand and starter card
+ * 
+ * <p>
+ * Every mode gives exactly the same points; they only differ in speed and
+ * memory use
+ * 
+ * @author Reid Moffat
+ */
+enum ScoringMode {
+
+	/**
+	 * Scores each hand from scratch with {@code BitmaskHand}
+	 */
+	BITMASK,
+
+	/**
+	 * Looks up each hand in the memory-mapped table of every five card
+	 * combination ({@code ScoreTable})
+	 */
+	FULL_TABLE,
+
+	/**
+	 * Looks up the ranks of each hand in the small table of every rank multiset
+	 * ({@code RankScoreTable}), adding flushes and nobs separately
+	 */
+	RANK_TABLE,
+
+	/**
+	 * Scores each hand from scratch with the branch-free kernel of
+	 * {@code BatchScorer}, which also scores arrays of hands at once, with the
+	 * Vector API if the JVM has {@code jdk.incubator.vector}
+	 */
+	BATCH;
+
+	/**
+	 * Returns a {@code HandScorer} that scores hands using this mode
+	 * 
+	 * @return a {@code HandScorer} for this mode
+	 * @throws IOException if the mode's table can't be loaded
+	 */
+	HandScorer scorer() throws IOException {
+		switch (this) {
+		case BITMASK:
+			return BitmaskHand::score;
+		case FULL_TABLE:
+			return ScoreTable.open(ScoreTable.DEFAULT_PATH);
+		case BATCH:
+			return BatchScorer.INSTANCE;
+		default:
+			return RankScoreTable.INSTANCE;
+		}
+	}
+
+	/**
+	 * Returns the mode with the given command line name (for example
+	 * {@code rank-table})
+	 * 
+	 * @param name the name of the mode (not case sensitive)
+	 * @return the mode with the given name
+	 * @throws IllegalArgumentException if no mode has the given name
+	 */
+	static ScoringMode fromName(String name) {
+		return ScoringMode.valueOf(name.trim().toUpperCase().replace('-', '_'));
+	}
+
+}
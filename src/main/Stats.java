@@ -0,0 +1,228 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional instrumentation of the scoring engine and discard analyzer: the
+ * number of calls to each phase, a histogram of how long they took, estimates
+ * of how much they allocated, and a Java Flight Recorder event for each
+ * analysis (see {@code AnalysisEvent})
+ *
+ * <p>
+ * Instrumentation is turned on by the system property {@code cribbage.stats}
+ * (or the {@code --stats} option), which is read once when this class is
+ * loaded. {@code ENABLED} is a static final constant, so when it is false the
+ * JIT compiler removes every {@code if (Stats.ENABLED)} block from the
+ * instrumented code and nothing is measured, created or recorded
+ *
+ * <p>
+ * Phases that run on one thread record the bytes allocated by that thread. An
+ * analysis runs on many threads of a {@code ForkJoinPool}, so it records the
+ * bytes allocated by every thread while it ran instead, which also counts any
+ * other work that ran at the same time
+ *
+ * @author Reid Moffat
+ */
+final class Stats {
+
+	/**
+	 * The system property that turns on instrumentation
+	 */
+	static final String PROPERTY = "cribbage.stats";
+
+	/**
+	 * True if instrumentation is on
+	 */
+	static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+	/**
+	 * The parts of scoring and analysis that are measured
+	 */
+	enum Phase {
+
+		// @formatter:off
+		CRIBBAGE_HAND_COUNTS    ("CribbageHand.rankCounts", true),
+		CRIBBAGE_HAND_FIFTEENS  ("CribbageHand.fifteens", true),
+		CRIBBAGE_HAND_MULTIPLES ("CribbageHand.multiples", true),
+		CRIBBAGE_HAND_RUNS      ("CribbageHand.runs", true),
+		CRIBBAGE_HAND_FLUSHES   ("CribbageHand.flushes", true),
+		CRIBBAGE_HAND_NOBS      ("CribbageHand.nobs", true),
+		BITMASK_FIFTEENS        ("BitmaskHand.fifteens", false),
+		BITMASK_MULTIPLES       ("BitmaskHand.multiples", false),
+		BITMASK_RUNS            ("BitmaskHand.runs", false),
+		SWEEP                   ("HandScorer.sweep", false),
+		SWEEP_CRIB              ("HandScorer.sweepCrib", false),
+		HAND_ANALYSIS           ("DiscardAnalyzer.analyze", true),
+		BEST_ANALYSIS           ("DiscardAnalyzer.best", true),
+		CRIB_ANALYSIS           ("CribAnalyzer.totalPoints", true),
+		PEGGING_ANALYSIS        ("DiscardAnalyzer.peggingPoints", true),
+		WIN_ANALYSIS            ("DiscardAnalyzer.winProbabilities", true);
+		// @formatter:on
+
+		/**
+		 * The name of the phase in the report
+		 */
+		private final String label;
+
+		/**
+		 * True if the phase records how much it allocates
+		 */
+		private final boolean allocation;
+
+		/**
+		 * How long each call took
+		 */
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		/**
+		 * The bytes allocated by every call
+		 */
+		private final LongAdder allocated = new LongAdder();
+
+		/**
+		 * Initializes a {@code Phase}
+		 *
+		 * @param label      the name of the phase in the report
+		 * @param allocation true if the phase records how much it allocates
+		 */
+		Phase(String label, boolean allocation) {
+			this.label = label;
+			this.allocation = allocation;
+		}
+	}
+
+	/**
+	 * Reads the bytes allocated by each thread, or null if the JVM can't
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	/**
+	 * This class only contains static methods and should not be initialized
+	 */
+	private Stats() {
+	}
+
+	/**
+	 * Returns the bean that reads the bytes allocated by each thread
+	 *
+	 * @return the bean, or null if the JVM doesn't support it
+	 */
+	private static com.sun.management.ThreadMXBean threads() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records a call to a phase that started at a given time
+	 *
+	 * @param phase the phase
+	 * @param start the value of {@code System.nanoTime()} when the call started
+	 * @return the value of {@code System.nanoTime()} now, so the next phase can
+	 *         start from it
+	 */
+	static long record(Phase phase, long start) {
+		long now = System.nanoTime();
+		phase.latency.record(now - start);
+		return now;
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread so far
+	 *
+	 * @return the allocated bytes, or 0 if the JVM can't measure them
+	 */
+	static long threadAllocated() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Records a call to a phase that ran on the current thread, including how much
+	 * it allocated
+	 *
+	 * @param phase     the phase
+	 * @param start     the value of {@code System.nanoTime()} when the call
+	 *                  started
+	 * @param allocated the value of {@code threadAllocated()} when the call
+	 *                  started
+	 * @return the value of {@code System.nanoTime()} now, so the next phase can
+	 *         start from it
+	 */
+	static long record(Phase phase, long start, long allocated) {
+		phase.allocated.add(threadAllocated() - allocated);
+		return record(phase, start);
+	}
+
+	/**
+	 * Returns the bytes allocated by every live thread so far
+	 *
+	 * @return the allocated bytes, or 0 if the JVM can't measure them
+	 */
+	private static long totalAllocated() {
+		if (THREADS == null) {
+			return 0;
+		}
+		long total = 0;
+		for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+			total += Math.max(bytes, 0);
+		}
+		return total;
+	}
+
+	/**
+	 * Starts measuring an analysis
+	 *
+	 * @return the measurement of the analysis, which has started
+	 */
+	static AnalysisEvent beginAnalysis() {
+		return new AnalysisEvent(totalAllocated());
+	}
+
+	/**
+	 * Records an analysis and commits its flight recorder event
+	 *
+	 * @param event    the event from {@code beginAnalysis}
+	 * @param phase    what was analyzed
+	 * @param dealt    a bitmask of the dealt cards
+	 * @param discards the number of discards analyzed
+	 */
+	static void endAnalysis(AnalysisEvent event, Phase phase, long dealt, int discards) {
+		record(phase, event.startNanos);
+		long allocated = totalAllocated() - event.startAllocated;
+		phase.allocated.add(allocated);
+		event.commit(phase.label, dealt, discards, allocated);
+	}
+
+	/**
+	 * Returns a table of every phase that was called, with the number of calls,
+	 * the total and mean time, the latency quantiles and the average bytes
+	 * allocated per call
+	 *
+	 * @return the report, one line per phase
+	 */
+	static String report() {
+		StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-34s %12s %11s %10s %10s %10s %12s %14s%n",
+				"Phase", "Calls", "Total ms", "Mean ns", "p50 ns", "p99 ns", "Max ns", "Bytes/call"));
+		for (Phase phase : Phase.values()) {
+			long calls = phase.latency.count();
+			if (calls == 0) {
+				continue;
+			}
+			double mean = phase.latency.mean();
+			sb.append(String.format(Locale.ROOT, "%-34s %12d %11.1f %10.0f %10d %10d %12d %14s%n", phase.label,
+					calls, mean * calls / 1e6, mean, phase.latency.quantile(0.5), phase.latency.quantile(0.99),
+					phase.latency.max(),
+					phase.allocation && THREADS != null ? String.valueOf(phase.allocated.sum() / calls) : "-"));
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,100 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+/**
+ * Generates the scoring tables that are bundled with the calculator, so they
+ * never have to be calculated when it runs
+ *
+ * <p>
+ * The Maven build runs this after compiling, writing
+ * {@code rank-scores.dat} ({@code RankScoreTable}) and {@code hand-scores.dat}
+ * ({@code ScoreTable}) into the output folder next to their classes, where
+ * they are loaded as resources. Every five card combination is then scored
+ * with both tables and with {@code CribbageHand}, and the build fails if any of
+ * them disagree
+ *
+ * <p>
+ * Usage: {@code TableGenerator <directory>}
+ *
+ * @author Reid Moffat
+ */
+final class TableGenerator {
+
+	/**
+	 * This class only contains static methods and should not be initialized
+	 */
+	private TableGenerator() {
+	}
+
+	/**
+	 * Checks that two tables give the same points as {@code CribbageHand} for
+	 * every four card hand and starter card, taking each of the five cards of
+	 * every combination as the starter in turn
+	 *
+	 * @param rankTable the rank score table
+	 * @param fullTable the full score table
+	 * @return the number of hands that don't match
+	 */
+	private static long mismatches(HandScorer rankTable, HandScorer fullTable) {
+		/* The combinations are split by their lowest card */
+		return IntStream.range(0, CardMask.DECK_SIZE).parallel().mapToLong(c1 -> {
+			long mismatches = 0;
+			for (int c2 = c1 + 1; c2 < CardMask.DECK_SIZE; c2++) {
+				for (int c3 = c2 + 1; c3 < CardMask.DECK_SIZE; c3++) {
+					for (int c4 = c3 + 1; c4 < CardMask.DECK_SIZE; c4++) {
+						for (int c5 = c4 + 1; c5 < CardMask.DECK_SIZE; c5++) {
+							long cards = 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4 | 1L << c5;
+							for (int starter : new int[] { c1, c2, c3, c4, c5 }) {
+								long hand = cards & ~(1L << starter);
+								int points = CribbageHand.score(CardMask.cards(hand), CardMask.card(starter));
+								if (rankTable.score(hand, starter) != points
+										|| fullTable.score(hand, starter) != points) {
+									mismatches++;
+								}
+							}
+						}
+					}
+				}
+			}
+			return mismatches;
+		}).sum();
+	}
+
+	/**
+	 * Generates and checks the tables
+	 *
+	 * @param args the folder to write the tables to
+	 * @throws IOException              if a table can't be written
+	 * @throws IllegalArgumentException if there isn't exactly one argument
+	 * @throws IllegalStateException    if a table doesn't match
+	 *                                  {@code CribbageHand}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			throw new IllegalArgumentException("Usage: TableGenerator <directory>");
+		}
+		Path directory = Paths.get(args[0]);
+		Files.createDirectories(directory);
+
+		long start = System.nanoTime();
+		Path rankPath = directory.resolve(RankScoreTable.RESOURCE);
+		Path fullPath = directory.resolve(ScoreTable.RESOURCE);
+		RankScoreTable.generate(rankPath);
+		ScoreTable.generate(fullPath);
+
+		long mismatches = mismatches(RankScoreTable.open(rankPath), ScoreTable.open(fullPath));
+		if (mismatches != 0) {
+			Files.delete(rankPath);
+			Files.delete(fullPath);
+			throw new IllegalStateException(mismatches + " hands in the generated tables don't match CribbageHand");
+		}
+		System.out.printf("Generated and checked %s and %s in %d ms%n", rankPath.getFileName(),
+				fullPath.getFileName(), (System.nanoTime() - start) / 1000000);
+	}
+
+}
@@ -1,9 +1,21 @@
 package main;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import card.Card;
 import card.Rank;
@@ -21,12 +33,6 @@ import card.Suit;
  */
 final class UserInterface {
 
-	/**
-	 * A set the contains a {@code Card} object for each card in a standard 52-card
-	 * deck
-	 */
-	private static final HashSet<Card> cardPile = initialzeDeck();
-
 	/**
 	 * A set of 5 or 6 cards the player is dealt at the beginning of the round
 	 * 
@@ -40,6 +46,38 @@ final class UserInterface {
 	 */
 	private final Scanner input;
 
+	/**
+	 * Calculates the points in each hand and starter card
+	 */
+	private final HandScorer scorer;
+
+	/**
+	 * A precomputed database of six card discards, or null to calculate every
+	 * discard
+	 */
+	private final DiscardDatabase advice;
+
+	/**
+	 * The win probabilities of each board position, or null to leave them out
+	 */
+	private final EndgameTable endgame;
+
+	/**
+	 * The number of best discards to show, or 0 to show every discard
+	 */
+	private final int top;
+
+	/**
+	 * True if the player is the dealer (and owns the crib) in a two player game
+	 */
+	private boolean dealer;
+
+	/**
+	 * The player's and the opponent's scores before the deal, if the win
+	 * probabilities are shown
+	 */
+	private int score, opponentScore;
+
 	/**
 	 * A list of valid card ranks used to check if a user input is valid
 	 * 
@@ -74,6 +112,18 @@ final class UserInterface {
 	 */
 	private static final ArrayList<Character> VALID_SUITS = new ArrayList<Character>(Arrays.asList('C', 'D', 'H', 'S'));
 
+	/**
+	 * A string that asks the user if they are the dealer, which decides whether
+	 * the crib's points are theirs or their opponent's
+	 */
+	private static final String ENTER_DEALER = "\nAre you the dealer (y/n)?";
+
+	/**
+	 * A string that asks the user for the scores before the deal, which decide the
+	 * chance of winning with each drop
+	 */
+	private static final String ENTER_SCORES = "\nWhat are the scores (yours, then your opponent's)?";
+
 	// @formatter:off
 	/**
 	 * A string that gives a short introduction to the program and asks the user to
@@ -102,26 +152,22 @@ final class UserInterface {
 	 * 
 	 * <p>
 	 * Use the method {@code .run()} to run the UI
+	 * 
+	 * @param scorer calculates the points in each hand and starter card
+	 * @param advice  a precomputed database of six card discards, or null to
+	 *                calculate every discard
+	 * @param endgame the win probabilities of each board position, or null to
+	 *                leave them out
+	 * @param top     the number of best discards to show, or 0 to show every
+	 *                discard
 	 */
-	public UserInterface() {
+	public UserInterface(HandScorer scorer, DiscardDatabase advice, EndgameTable endgame, int top) {
 		this.dealthHand = new HashSet<Card>();
 		this.input = new Scanner(System.in);
-	}
-
-	/**
-	 * Returns a {@code HashSet} that includes each of the cards (as a {@code Card}
-	 * object) in a standard 52-card deck
-	 * 
-	 * @return a {@code HashSet} with all standard playing cards
-	 */
-	private static HashSet<Card> initialzeDeck() {
-		HashSet<Card> deck = new HashSet<Card>();
-		for (Rank r : Card.RANKS) {
-			for (Suit s : Card.SUITS) {
-				deck.add(new Card(r, s));
-			}
-		}
-		return deck;
+		this.scorer = scorer;
+		this.advice = advice;
+		this.endgame = endgame;
+		this.top = top;
 	}
 
 	/**
@@ -130,6 +176,12 @@ final class UserInterface {
 	 */
 	public void run() {
 		int numCards = this.getNumCards();
+		if (numCards == 6) {
+			this.dealer = this.getDealer();
+			if (this.endgame != null) {
+				this.getScores();
+			}
+		}
 		this.getCards(numCards);
 		this.printAveragePoints();
 	}
@@ -165,6 +217,49 @@ final class UserInterface {
 		return numPlayers.equals("2") ? 6 : 5;
 	}
 
+	/**
+	 * Prompts the user to enter whether or not they are the dealer
+	 * 
+	 * <p>
+	 * Loops until a valid answer (y or n, not case sensitive) is inputed
+	 * 
+	 * @return true if the user is the dealer, false otherwise
+	 */
+	private boolean getDealer() {
+		System.out.println(UserInterface.ENTER_DEALER);
+
+		/* Loops until a valid answer is inputted */
+		String answer = input.nextLine().trim().toLowerCase();
+		while (!(answer.equals("y") || answer.equals("n"))) {
+			System.out.println("Invalid input. Try again:");
+			answer = input.nextLine().trim().toLowerCase();
+		}
+		return answer.equals("y");
+	}
+
+	/**
+	 * Prompts the user to enter their score and their opponent's score
+	 * 
+	 * <p>
+	 * Loops until two valid scores (0-120) are inputed
+	 */
+	private void getScores() {
+		System.out.println(UserInterface.ENTER_SCORES);
+
+		/* Loops until two valid scores are inputted */
+		while (true) {
+			String[] scores = input.nextLine().trim().split("[\\s,]+");
+			if (scores.length == 2 && scores[0].matches("\\d{1,3}") && scores[1].matches("\\d{1,3}")) {
+				this.score = Integer.parseInt(scores[0]);
+				this.opponentScore = Integer.parseInt(scores[1]);
+				if (this.score < GameStats.WINNING_SCORE && this.opponentScore < GameStats.WINNING_SCORE) {
+					return;
+				}
+			}
+			System.out.println("Invalid input. Try again:");
+		}
+	}
+
 	/**
 	 * Prompts the user to enter the playing cards in their hand and stores their
 	 * values
@@ -198,65 +293,78 @@ final class UserInterface {
 	 * <p>
 	 * The average number of points takes into account the number of points gained
 	 * from each possible starter card to be flipped up
+	 * 
+	 * <p>
+	 * In a two player game, the expected points in the crib are added for the
+	 * dealer or subtracted for the opponent. The expected net points from pegging
+	 * are shown separately, since they assume an opponent who plays randomly
+	 * 
+	 * <p>
+	 * The worst case, median, best case and standard deviation of the hand's
+	 * points are shown when the discard was calculated rather than looked up
+	 * 
+	 * <p>
+	 * If only the best discards are shown, they are shown best first. Five card
+	 * hands are then analyzed with {@code DiscardAnalyzer.best}, which skips most
+	 * of the discards that can't be among them
 	 */
 	private void printAveragePoints() {
 		StringBuilder sb = new StringBuilder();
-		CribbageHand hand = new CribbageHand(new HashSet<Card>(this.dealthHand));
-
-		/*
-		 * The player has seen either 5 or 6 cards so far (from their hand), implying
-		 * that the remaining 47 or 48 cards respectively could all possibly be the
-		 * starter
-		 */
-		final int unknownCards = 52 - hand.size();
-
-		/* With 6 cards, 2 must be dropped */
-		if (hand.size() == 6) {
-			sb.append("Average points for each drop combination:");
-
-			/*
-			 * Each combination of cards in the hand is temporarily removed and the average
-			 * number of points (from all starter card possibilities) from the remaining
-			 * hand is calculated
-			 */
-			for (Card[] combination : subset2(hand.getCards())) {
-				/* The two cards to be dropped */
-				hand.remove(combination[0]);
-				hand.remove(combination[1]);
-
-				/* Calculate the total number of points (all starters) for this combination */
-				double totalPoints = cardPile.stream().filter(this::notInHand).mapToInt(hand::totalPoints).sum();
-
-				/* The combination and its average number of points to 2 decimals */
-				sb.append("\n" + combination[0].toString() + " and " + combination[1].toString() + ": "
-						+ Math.round(100 * (totalPoints / unknownCards)) / 100.0);
-
-				/* Put the dropped cards back in the hand */
-				hand.add(combination[0]);
-				hand.add(combination[1]);
+		DiscardAnalyzer analyzer = new DiscardAnalyzer(this.scorer);
+		List<DiscardResult> results;
+		double[] pegging = null;
+		double[] wins = null;
+
+		/* With 6 cards, 2 must be dropped. With 5 cards, only one needs to be dropped */
+		if (this.dealthHand.size() == 6) {
+			sb.append("Average points for each drop combination (hand " + (this.dealer ? "+" : "-") + " crib):");
+
+			/* Six card hands are looked up if the database has the crib */
+			if (this.advice != null && this.advice.includesCrib()) {
+				results = this.advice.lookup(CardMask.mask(this.dealthHand), this.dealer);
+			} else {
+				results = analyzer.analyze(CardMask.mask(this.dealthHand), this.dealer);
+			}
+			pegging = analyzer.peggingPoints(CardMask.mask(this.dealthHand), this.dealer);
+			if (this.endgame != null) {
+				wins = analyzer.winProbabilities(CardMask.mask(this.dealthHand), this.dealer, this.score,
+						this.opponentScore, this.endgame);
 			}
-
-			/* With 5 cards, only one needs to be dropped */
 		} else {
 			sb.append("Average points for each card dropped:");
+			results = this.top > 0 ? analyzer.best(CardMask.mask(this.dealthHand), this.top)
+					: analyzer.analyze(CardMask.mask(this.dealthHand));
+		}
+		int[] shown = this.top > 0 ? DiscardAnalyzer.ranking(results, this.top)
+				: IntStream.range(0, results.size()).toArray();
 
-			/*
-			 * Each card in the hand is temporarily removed and the average number of points
-			 * (from all starter card possibilities) from the remaining hand is calculated
-			 */
-			for (Card droppedCard : hand.getCards()) {
-				/* The card to be dropped */
-				hand.remove(droppedCard);
-
-				/* Calculate the total number of points (all starters) for this combination */
-				double totalPoints = cardPile.stream().filter(this::notInHand).mapToInt(hand::totalPoints).sum();
+		/*
+		 * Each combination of cards in the hand is dropped and the average number of
+		 * points (from all starter card possibilities) from the remaining hand is
+		 * calculated
+		 */
+		for (int i : shown) {
+			DiscardResult result = results.get(i);
+			/* The combination and its average number of points to 2 decimals */
+			sb.append("\n" + result.discardedCards().stream().map(Card::toString).collect(Collectors.joining(" and "))
+					+ ": " + round(result.expectedPoints()));
+
+			/* The hand and crib points that make up the expected points */
+			if (result.includesCrib()) {
+				sb.append(" (hand " + round(result.averagePoints()) + ", crib " + (this.dealer ? "+" : "-")
+						+ round(result.averageCribPoints()) + ", pegging " + (pegging[i] >= 0 ? "+" : "")
+						+ round(pegging[i]) + ")");
+			}
 
-				/* The combination and its average number of points to 2 decimals */
-				sb.append(
-						"\n" + droppedCard.toString() + ": " + Math.round(100 * (totalPoints / unknownCards)) / 100.0);
+			/* The spread of the hand's points over the starter cards */
+			if (result.includesDistribution()) {
+				sb.append(" [hand " + result.minPoints() + " to " + result.maxPoints() + ", median "
+						+ result.quantile(0.5) + ", sd " + round(result.standardDeviation()) + "]");
+			}
 
-				/* Put the dropped card back in the hand */
-				hand.add(droppedCard);
+			/* The chance of winning the game from the board position */
+			if (wins != null) {
+				sb.append(", win " + round(100 * wins[i]) + "%");
 			}
 		}
 
@@ -264,6 +372,16 @@ final class UserInterface {
 		System.out.println(sb.toString());
 	}
 
+	/**
+	 * Rounds a number of points to 2 decimals
+	 * 
+	 * @param points a number of points
+	 * @return the points rounded to 2 decimals
+	 */
+	private static double round(double points) {
+		return Math.round(100 * points) / 100.0;
+	}
+
 	/**
 	 * Checks if a String represents a valid card, and returns the {@code Card}
 	 * object that it represents if it does
@@ -283,7 +401,7 @@ final class UserInterface {
 	 * @return the card object the String represents if the string is valid, null
 	 *         otherwise
 	 */
-	private static Card checkValidCard(String card) {
+	static Card checkValidCard(String card) {
 		card = card.trim().toUpperCase(); // Not case sensitive
 		/*
 		 * If a card is a ten, change the "10" part of the string to "T" This makes it
@@ -299,7 +417,27 @@ final class UserInterface {
 		Rank rank = Card.RANKS[VALID_RANKS.indexOf(card.charAt(0))];
 		Suit suit = Card.SUITS[VALID_SUITS.indexOf(card.charAt(1))];
 
-		return new Card(rank, suit);
+		return Card.of(rank, suit);
+	}
+
+	/**
+	 * Returns the string that represents a card, the reverse of
+	 * {@code checkValidCard}
+	 * 
+	 * <p>
+	 * Examples:
+	 * 
+	 * <ul>
+	 * <li>"3D": Three of diamonds</li>
+	 * <li>"10C": Ten of clubs</li>
+	 * </ul>
+	 * 
+	 * @param card a {@code Card} object
+	 * @return the rank (1-10, J, Q or K) followed by the first letter of the suit
+	 */
+	static String cardNotation(Card card) {
+		char rank = VALID_RANKS.get(card.getRank().ordinal());
+		return (rank == 'T' ? "10" : String.valueOf(rank)) + VALID_SUITS.get(card.getSuit().ordinal());
 	}
 
 	/**
@@ -314,27 +452,112 @@ final class UserInterface {
 	}
 
 	/**
-	 * Generates a {@code HashSet} of all 2-{@code Card} combinations in
-	 * {@code cards}
+	 * Runs the cribbage calculator
+	 * 
+	 * <p>
+	 * The option {@code --scoring=<mode>} chooses how hands are scored:
+	 * {@code rank-table} (the default), {@code full-table}, {@code bitmask} or
+	 * {@code batch}
+	 * 
+	 * <p>
+	 * The option {@code --advice=<file>} looks up six card hands in a discard
+	 * database built with {@code DiscardDatabaseBuilder --crib} instead of
+	 * calculating them
+	 * 
+	 * <p>
+	 * The option {@code --endgame} also asks for the scores in a two player game
+	 * and shows the chance of winning with each drop (see {@code EndgameTable}),
+	 * generating the table file the first time it is used
+	 * 
+	 * <p>
+	 * The option {@code --batch} analyzes deals from standard input without any
+	 * prompts, and {@code --batch=<file>} analyzes deals from a file (see
+	 * {@code BatchAnalyzer}). The results are written to standard output in the
+	 * format chosen with {@code --format=<csv|jsonl>} (CSV by default), using the
+	 * number of threads chosen with {@code --threads=<n>} (every core by default)
+	 * and caching recent deals in up to {@code --cache=<MB>} megabytes (64 by
+	 * default, or 0 to analyze every deal)
 	 * 
-	 * @param cards a {@code HashSet} of {@code Card} objects
-	 * @return a {@code HashSet} of 2-element subsets (stored as {@code Card[]})
+	 * <p>
+	 * The option {@code --top=<k>} only shows the k discards with the most
+	 * expected points, best first, in both the prompts and batches
+	 * 
+	 * <p>
+	 * The option {@code --stats} times each part of scoring and analysis and
+	 * prints a report to standard error at the end (see {@code Stats})
+	 * 
+	 * @param args the command line options
+	 * @throws IOException if the score table, discard database or endgame table
+	 *                     can't be loaded, or a batch can't be read or written
 	 */
-	private static HashSet<Card[]> subset2(HashSet<Card> cards) {
-		HashSet<Card[]> subsets = new HashSet<Card[]>();
-		HashSet<Card> remaining = new HashSet<Card>(cards);
-		for (Card card1 : cards) {
-			remaining.remove(card1);
-			for (Card card2 : remaining) {
-				Card[] temp = { card1, card2 };
-				subsets.add(temp);
+	public static void main(String[] args) throws IOException {
+		/* Instrumentation has to be turned on before any scoring code is loaded */
+		if (Arrays.asList(args).contains("--stats")) {
+			System.setProperty(Stats.PROPERTY, "true");
+		}
+
+		ScoringMode mode = ScoringMode.RANK_TABLE;
+		DiscardDatabase advice = null;
+		EndgameTable endgame = null;
+		String batch = null;
+		BatchAnalyzer.Format format = BatchAnalyzer.Format.CSV;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long cache = DiscardCache.DEFAULT_BUDGET;
+		int top = 0;
+		for (String arg : args) {
+			if (arg.startsWith("--scoring=")) {
+				mode = ScoringMode.fromName(arg.substring("--scoring=".length()));
+			} else if (arg.startsWith("--advice=")) {
+				advice = DiscardDatabase.open(Paths.get(arg.substring("--advice=".length())));
+			} else if (arg.equals("--endgame")) {
+				endgame = EndgameTable.open(EndgameTable.DEFAULT_PATH);
+			} else if (arg.equals("--batch")) {
+				batch = "-";
+			} else if (arg.startsWith("--batch=")) {
+				batch = arg.substring("--batch=".length());
+			} else if (arg.startsWith("--format=")) {
+				format = BatchAnalyzer.Format.fromName(arg.substring("--format=".length()));
+			} else if (arg.startsWith("--threads=")) {
+				threads = Integer.parseInt(arg.substring("--threads=".length()));
+			} else if (arg.startsWith("--cache=")) {
+				cache = Long.parseLong(arg.substring("--cache=".length())) << 20;
+			} else if (arg.startsWith("--top=")) {
+				top = Integer.parseInt(arg.substring("--top=".length()));
+				if (top < 1) {
+					throw new IllegalArgumentException("--top must be at least 1");
+				}
+			} else if (!arg.equals("--stats")) {
+				throw new IllegalArgumentException("unknown option " + arg);
 			}
 		}
-		return subsets;
-	}
 
-	public static void main(String[] args) {
-		new UserInterface().run();
+		if (batch == null) {
+			new UserInterface(mode.scorer(), advice, endgame, top).run();
+			if (Stats.ENABLED) {
+				System.err.print(Stats.report());
+			}
+			return;
+		}
+
+		/* Batch mode reads deals from a file or standard input */
+		BatchAnalyzer analyzer = new BatchAnalyzer(mode.scorer(), advice, format, threads, cache, top);
+		try (BufferedReader in = batch.equals("-")
+				? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+				: Files.newBufferedReader(Paths.get(batch));
+				Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+			long start = System.nanoTime();
+			int deals = analyzer.run(in, out);
+			System.err.println("Analyzed " + deals + " deals (" + analyzer.getErrors() + " with errors) in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+			if (analyzer.getCache() != null) {
+				DiscardCache recent = analyzer.getCache();
+				System.err.println("Cache: " + recent.getHits() + " hits, " + recent.getMisses() + " misses, "
+						+ recent.getEvictions() + " evictions");
+			}
+			if (Stats.ENABLED) {
+				System.err.print(Stats.report());
+			}
+		}
 	}
 
 }
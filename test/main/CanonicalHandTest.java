@@ -0,0 +1,152 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import card.Card;
+import card.Suit;
+
+/**
+ * Checks the suit renaming of {@code CanonicalHand} on random hands
+ *
+ * @author Reid Moffat
+ */
+class CanonicalHandTest {
+
+	/**
+	 * The number of random hands of each size
+	 */
+	private static final int HANDS = 20000;
+
+	/**
+	 * Every permutation of the four suits, as the new suit of each suit
+	 */
+	private static final int[][] PERMUTATIONS = permutations();
+
+	/**
+	 * Checks that renaming a hand, any other cards, each suit and each card into
+	 * canonical form and back gives the original
+	 */
+	@Test
+	void fromCanonicalInvertsToCanonical() {
+		SplittableRandom random = new SplittableRandom(6);
+		for (int size = 4; size <= 6; size++) {
+			for (int i = 0; i < HANDS; i++) {
+				long hand = randomCards(random, size);
+				CanonicalHand canonical = CanonicalHand.of(hand);
+				assertEquals(canonical.getMask(), canonical.toCanonical(hand));
+				assertEquals(hand, canonical.fromCanonical(canonical.getMask()));
+				assertEquals(canonical.getMask(), CanonicalHand.canonicalize(hand));
+
+				long others = randomCards(random, 1 + random.nextInt(CardMask.DECK_SIZE));
+				assertEquals(others, canonical.fromCanonical(canonical.toCanonical(others)));
+				for (Suit suit : Card.SUITS) {
+					assertEquals(suit, canonical.fromCanonical(canonical.toCanonical(suit)));
+				}
+				for (int index = 0; index < CardMask.DECK_SIZE; index++) {
+					long renamed = canonical.toCanonical(1L << index);
+					assertEquals(Card.of(index), canonical.fromCanonical(Card.of(Long.numberOfTrailingZeros(renamed))));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that all 24 ways of renaming the suits of a hand give the same
+	 * canonical hand, and that its suits are sorted by their number of cards
+	 */
+	@Test
+	void everySuitPermutationHasTheSameCanonicalForm() {
+		SplittableRandom random = new SplittableRandom(24);
+		for (int size = 4; size <= 6; size++) {
+			for (int i = 0; i < HANDS; i++) {
+				long hand = randomCards(random, size);
+				long mask = CanonicalHand.of(hand).getMask();
+				for (int[] permutation : PERMUTATIONS) {
+					assertEquals(mask, CanonicalHand.of(permute(hand, permutation)).getMask());
+				}
+				for (int suit = 1; suit < 4; suit++) {
+					assertTrue(Integer.bitCount(CardMask.suitRanks(mask, suit - 1)) >= Integer
+							.bitCount(CardMask.suitRanks(mask, suit)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that a four card hand scores the same points in canonical form with
+	 * the starter renamed the same way
+	 */
+	@Test
+	void canonicalHandKeepsItsPoints() {
+		SplittableRandom random = new SplittableRandom(4);
+		for (int i = 0; i < HANDS; i++) {
+			long hand = randomCards(random, 4);
+			CanonicalHand canonical = CanonicalHand.of(hand);
+			for (int starter = 0; starter < CardMask.DECK_SIZE; starter++) {
+				if ((hand >>> starter & 1) == 0) {
+					int canonicalStarter = Long.numberOfTrailingZeros(canonical.toCanonical(1L << starter));
+					assertEquals(BitmaskHand.score(hand, starter),
+							BitmaskHand.score(canonical.getMask(), canonicalStarter));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a random bitmask of distinct cards
+	 *
+	 * @param random the random numbers
+	 * @param size   the number of cards
+	 * @return a bitmask of {@code size} cards
+	 */
+	static long randomCards(SplittableRandom random, int size) {
+		long cards = 0;
+		while (Long.bitCount(cards) < size) {
+			cards |= 1L << random.nextInt(CardMask.DECK_SIZE);
+		}
+		return cards;
+	}
+
+	/**
+	 * Renames the suits of a bitmask of cards one card at a time
+	 *
+	 * @param cards       a bitmask of cards
+	 * @param permutation the new suit of each suit
+	 * @return a bitmask of the renamed cards
+	 */
+	private static long permute(long cards, int[] permutation) {
+		long permuted = 0;
+		for (long m = cards; m != 0; m &= m - 1) {
+			Card card = Card.of(Long.numberOfTrailingZeros(m));
+			permuted |= 1L << CardMask.index(Card.of(card.getRank(), Card.SUITS[permutation[card.getSuit().ordinal()]]));
+		}
+		return permuted;
+	}
+
+	/**
+	 * Returns every permutation of the four suits
+	 *
+	 * @return the 24 permutations
+	 */
+	private static int[][] permutations() {
+		int[][] permutations = new int[24][];
+		int n = 0;
+		for (int a = 0; a < 4; a++) {
+			for (int b = 0; b < 4; b++) {
+				for (int c = 0; c < 4; c++) {
+					int d = 6 - a - b - c;
+					if (a != b && a != c && b != c && d != a && d != b && d != c && d >= 0 && d < 4) {
+						permutations[n++] = new int[] { a, b, c, d };
+					}
+				}
+			}
+		}
+		return permutations;
+	}
+
+}
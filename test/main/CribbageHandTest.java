@@ -0,0 +1,222 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import card.Card;
+import card.Rank;
+import card.Suit;
+
+/**
+ * Checks the rank count scoring of {@code CribbageHand} and {@code BitmaskHand}
+ * against the power set scoring they replaced
+ *
+ * @author Reid Moffat
+ */
+class CribbageHandTest {
+
+	/**
+	 * A multiple of n cards is worth n*n - n points
+	 */
+	@Test
+	void multiples() {
+		assertEquals(2, BitmaskHand.multiples(BitmaskHand.rankCounts(cards(0, 13))));
+		assertEquals(6, BitmaskHand.multiples(BitmaskHand.rankCounts(cards(0, 13, 26))));
+		assertEquals(12, BitmaskHand.multiples(BitmaskHand.rankCounts(cards(0, 13, 26, 39))));
+	}
+
+	/**
+	 * Scores every five card set with each of its cards as the starter and
+	 * compares fifteens, multiples and runs from {@code BitmaskHand} and the
+	 * total from {@code CribbageHand.score} with the power set scoring
+	 */
+	@Test
+	void matchesPowerSetScoring() {
+		Card[] cards = new Card[5];
+		for (int c1 = 0; c1 < CardMask.DECK_SIZE; c1++) {
+			cards[0] = Card.of(c1);
+			for (int c2 = c1 + 1; c2 < CardMask.DECK_SIZE; c2++) {
+				cards[1] = Card.of(c2);
+				for (int c3 = c2 + 1; c3 < CardMask.DECK_SIZE; c3++) {
+					cards[2] = Card.of(c3);
+					for (int c4 = c3 + 1; c4 < CardMask.DECK_SIZE; c4++) {
+						cards[3] = Card.of(c4);
+						for (int c5 = c4 + 1; c5 < CardMask.DECK_SIZE; c5++) {
+							cards[4] = Card.of(c5);
+							check(cards, 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4 | 1L << c5);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares the scoring of five cards with the power set scoring
+	 *
+	 * @param cards the five cards
+	 * @param mask  a bitmask of the same cards
+	 */
+	private static void check(Card[] cards, long mask) {
+		long counts = BitmaskHand.rankCounts(mask);
+		int fifteens = powerSetFifteens(cards);
+		int multiples = powerSetMultiples(cards);
+		int runs = powerSetRuns(cards);
+		assertEquals(fifteens, BitmaskHand.fifteens(counts), () -> "fifteens of " + CardMask.cards(mask));
+		assertEquals(multiples, BitmaskHand.multiples(counts), () -> "multiples of " + CardMask.cards(mask));
+		assertEquals(runs, BitmaskHand.runs(counts), () -> "runs of " + CardMask.cards(mask));
+
+		for (int s = 0; s < cards.length; s++) {
+			Set<Card> hand = new HashSet<Card>();
+			for (int i = 0; i < cards.length; i++) {
+				if (i != s) {
+					hand.add(cards[i]);
+				}
+			}
+			Card starter = cards[s];
+			int expected = fifteens + multiples + runs + powerSetFlushes(hand, starter) + powerSetNobs(hand, starter);
+			assertEquals(expected, CribbageHand.score(hand, starter), () -> hand + " with " + starter);
+		}
+	}
+
+	/**
+	 * Returns 2 points for every subset of the cards that adds up to 15
+	 *
+	 * @param cards the five cards
+	 * @return the number of points obtained from fifteens
+	 */
+	private static int powerSetFifteens(Card[] cards) {
+		int points = 0;
+		for (int subset = 1; subset < 1 << cards.length; subset++) {
+			int sum = 0;
+			for (int i = 0; i < cards.length; i++) {
+				if ((subset >>> i & 1) != 0) {
+					sum += cards[i].getValue();
+				}
+			}
+			points += sum == 15 ? 2 : 0;
+		}
+		return points;
+	}
+
+	/**
+	 * Returns 2 points for every pair of cards with the same rank
+	 *
+	 * @param cards the five cards
+	 * @return the number of points obtained from multiples
+	 */
+	private static int powerSetMultiples(Card[] cards) {
+		int points = 0;
+		for (int subset = 1; subset < 1 << cards.length; subset++) {
+			if (Integer.bitCount(subset) == 2 && isMultiple(cards, subset)) {
+				points += 2;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the length of every run of five cards, or if there are none every
+	 * run of four cards, or if there are none every run of three cards
+	 *
+	 * @param cards the five cards
+	 * @return the number of points obtained from runs
+	 */
+	private static int powerSetRuns(Card[] cards) {
+		for (int length = cards.length; length >= 3; length--) {
+			int points = 0;
+			for (int subset = 1; subset < 1 << cards.length; subset++) {
+				if (Integer.bitCount(subset) == length && isRun(cards, subset)) {
+					points += length;
+				}
+			}
+			if (points != 0) {
+				return points;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks if every card in a subset has the same rank
+	 *
+	 * @param cards  the five cards
+	 * @param subset a bitmask of the indices of the cards in the subset
+	 * @return true if the cards have the same rank
+	 */
+	private static boolean isMultiple(Card[] cards, int subset) {
+		int rank = -1;
+		for (int i = 0; i < cards.length; i++) {
+			if ((subset >>> i & 1) != 0) {
+				if (rank != -1 && rank != cards[i].getRankNumber()) {
+					return false;
+				}
+				rank = cards[i].getRankNumber();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the cards in a subset have distinct consecutive ranks
+	 *
+	 * @param cards  the five cards
+	 * @param subset a bitmask of the indices of the cards in the subset
+	 * @return true if the cards form a run
+	 */
+	private static boolean isRun(Card[] cards, int subset) {
+		int ranks = 0;
+		for (int i = 0; i < cards.length; i++) {
+			if ((subset >>> i & 1) != 0) {
+				ranks |= 1 << cards[i].getRankNumber();
+			}
+		}
+		int lowest = Integer.numberOfTrailingZeros(ranks);
+		return ranks == ((1 << Integer.bitCount(subset)) - 1) << lowest;
+	}
+
+	/**
+	 * Returns 4 points if the hand has one suit, and 5 if the starter has it too
+	 *
+	 * @param hand    the four cards in the hand
+	 * @param starter the starter card
+	 * @return the number of points obtained from flushes
+	 */
+	private static int powerSetFlushes(Set<Card> hand, Card starter) {
+		Set<Suit> suits = new HashSet<Suit>();
+		for (Card card : hand) {
+			suits.add(card.getSuit());
+		}
+		return suits.size() == 1 ? suits.contains(starter.getSuit()) ? 5 : 4 : 0;
+	}
+
+	/**
+	 * Returns 1 point if the hand has the jack of the starter's suit
+	 *
+	 * @param hand    the four cards in the hand
+	 * @param starter the starter card
+	 * @return the number of points obtained from nobs
+	 */
+	private static int powerSetNobs(Set<Card> hand, Card starter) {
+		return hand.contains(Card.of(Rank.JACK, starter.getSuit())) ? 1 : 0;
+	}
+
+	/**
+	 * Returns a bitmask of cards
+	 *
+	 * @param indices the indices of the cards
+	 * @return a bitmask of the cards
+	 */
+	private static long cards(int... indices) {
+		long mask = 0;
+		for (int index : indices) {
+			mask |= 1L << index;
+		}
+		return mask;
+	}
+
+}
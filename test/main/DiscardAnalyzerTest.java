@@ -0,0 +1,102 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the pruned search of {@code DiscardAnalyzer.best} gives the same
+ * discards as analyzing every discard and sorting them
+ *
+ * @author Reid Moffat
+ */
+class DiscardAnalyzerTest {
+
+	/**
+	 * Deals where discards keep hands that differ only in suit, so several
+	 * discards have exactly the same points
+	 */
+	private static final String[] TIES = { "5H 5C JD 6S KH 4D", "5H 5C 5D 5S JH", "9C 9D 9H 2S 7C",
+			"2C 2D 2H 9S 9C 9D" };
+
+	/**
+	 * The analyzer being tested
+	 */
+	private final DiscardAnalyzer analyzer = new DiscardAnalyzer(RankScoreTable.INSTANCE);
+
+	/**
+	 * Deals with ties, which {@code best} orders by the dropped cards like a
+	 * stable sort of {@code analyze}
+	 */
+	@Test
+	void ties() {
+		for (String deal : TIES) {
+			String[] cards = deal.split(" ");
+			long dealt = BatchAnalyzer.parseCards(cards, cards.length);
+			assertTrue(hasTie(this.analyzer.analyze(dealt)), deal + " has no tie");
+			check(dealt);
+		}
+	}
+
+	/**
+	 * Random five and six card deals, for every k up to one more than the number
+	 * of discards
+	 */
+	@Test
+	void randomDeals() {
+		SplittableRandom random = new SplittableRandom(25);
+		for (int i = 0; i < 300; i++) {
+			check(CanonicalHandTest.randomCards(random, 5 + i % 2));
+		}
+	}
+
+	/**
+	 * At least one discard has to be asked for
+	 */
+	@Test
+	void kMustBePositive() {
+		long dealt = CanonicalHandTest.randomCards(new SplittableRandom(1), 6);
+		assertThrows(IllegalArgumentException.class, () -> this.analyzer.best(dealt, 0));
+	}
+
+	/**
+	 * Compares {@code best} for every k with the results of {@code analyze}
+	 * sorted by total points, which keeps discards with the same points in the
+	 * order of their dropped cards
+	 *
+	 * @param dealt a bitmask of the dealt cards
+	 */
+	private void check(long dealt) {
+		List<DiscardResult> sorted = new ArrayList<DiscardResult>(this.analyzer.analyze(dealt));
+		sorted.sort(Comparator.comparingLong(DiscardResult::getTotalPoints).reversed());
+		for (int k = 1; k <= sorted.size() + 1; k++) {
+			List<DiscardResult> best = this.analyzer.best(dealt, k);
+			assertEquals(Math.min(k, sorted.size()), best.size());
+			for (int i = 0; i < best.size(); i++) {
+				String message = "discard " + i + " of the best " + k + " for " + CardMask.cards(dealt);
+				assertEquals(sorted.get(i).getDiscard(), best.get(i).getDiscard(), message);
+				assertEquals(sorted.get(i).getTotalPoints(), best.get(i).getTotalPoints(), message);
+				assertArrayEquals(sorted.get(i).getHistogram(), best.get(i).getHistogram(), message);
+			}
+		}
+	}
+
+	/**
+	 * Checks if two discards have the same total points
+	 *
+	 * @param results the result of each discard
+	 * @return true if any two totals are equal
+	 */
+	private static boolean hasTie(List<DiscardResult> results) {
+		return results.stream().mapToLong(DiscardResult::getTotalPoints).distinct().count() < results.size();
+	}
+
+}
@@ -0,0 +1,70 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the cards thrown into the crib change the chance of winning
+ *
+ * @author Reid Moffat
+ */
+class EndgameTableTest {
+
+	/**
+	 * A table generated for these tests
+	 */
+	private static EndgameTable table;
+
+	/**
+	 * Generates the table once for every test
+	 *
+	 * @param directory a temporary directory for the table's file
+	 * @throws IOException if the table can't be written
+	 */
+	@BeforeAll
+	static void generate(@TempDir Path directory) throws IOException {
+		table = EndgameTable.open(directory.resolve("endgame.dat"));
+	}
+
+	/**
+	 * Two discards that keep hands with the same points but give a poor and a
+	 * rich crib: the dealer wins more often with the rich crib and the pone wins
+	 * less often, while the same crib gives the same chance. The scores are low
+	 * enough that the game isn't always over before the crib is shown
+	 */
+	@Test
+	void richerCribHelpsItsOwner() {
+		int[] hand = points(8);
+		int[][] hands = { hand, hand, hand };
+		int[][] cribs = { points(2), points(12), points(2) };
+		for (int score = 80; score <= 100; score += 10) {
+			double[] dealer = table.winProbabilities(score, score, true, hands, cribs);
+			assertTrue(dealer[1] > dealer[0], "dealer at " + score);
+			assertEquals(dealer[0], dealer[2]);
+
+			double[] pone = table.winProbabilities(score, score, false, hands, cribs);
+			assertTrue(pone[1] < pone[0], "pone at " + score);
+			assertEquals(pone[0], pone[2]);
+		}
+	}
+
+	/**
+	 * Returns a histogram where every outcome gives the same points
+	 *
+	 * @param points the number of points
+	 * @return the histogram
+	 */
+	private static int[] points(int points) {
+		int[] histogram = new int[HandScorer.MAX_POINTS + 1];
+		histogram[points] = 46;
+		return histogram;
+	}
+
+}
@@ -0,0 +1,164 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import card.Card;
+
+/**
+ * Checks that every {@code HandScorer} gives exactly the same points as
+ * {@code CribbageHand} for every four card hand and starter card
+ *
+ * @author Reid Moffat
+ */
+class HandScorerTest {
+
+	/**
+	 * Scores all 270,725 four card hands with each of the 48 other starter cards
+	 * with every scorer and compares them with {@code CribbageHand.score}
+	 *
+	 * @param directory a temporary directory for the full table's file
+	 * @throws IOException if a table can't be loaded
+	 */
+	@Test
+	void everyScorerMatchesCribbageHand(@TempDir Path directory) throws IOException {
+		Map<String, HandScorer> scorers = new LinkedHashMap<String, HandScorer>();
+		scorers.put("BitmaskHand", BitmaskHand::score);
+		scorers.put("ScoreTable", ScoreTable.open(directory.resolve("hand-scores.dat")));
+		scorers.put("RankScoreTable", RankScoreTable.INSTANCE);
+		scorers.put("BatchScorer", BatchScorer.INSTANCE);
+
+		for (int c1 = 0; c1 < CardMask.DECK_SIZE; c1++) {
+			for (int c2 = c1 + 1; c2 < CardMask.DECK_SIZE; c2++) {
+				for (int c3 = c2 + 1; c3 < CardMask.DECK_SIZE; c3++) {
+					for (int c4 = c3 + 1; c4 < CardMask.DECK_SIZE; c4++) {
+						long hand = 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4;
+						HashSet<Card> cards = CardMask.cards(hand);
+						for (int starter = 0; starter < CardMask.DECK_SIZE; starter++) {
+							if ((hand >>> starter & 1) != 0) {
+								continue;
+							}
+							int expected = CribbageHand.score(cards, Card.of(starter));
+							for (Map.Entry<String, HandScorer> scorer : scorers.entrySet()) {
+								int points = scorer.getValue().score(hand, starter);
+								if (points != expected) {
+									assertEquals(expected, points, scorer.getKey() + " scored " + cards + " with "
+											+ Card.of(starter));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scores every four card hand with each of the 48 other starter cards as
+	 * arrays, with uneven lengths so the last vector isn't full, and compares the
+	 * hands, cribs and byte scores of {@code BatchScorer.INSTANCE} with the
+	 * scalar kernel one hand at a time
+	 */
+	@Test
+	void batchScoringMatchesScalarKernel() {
+		if (Runtime.version().feature() >= 17) {
+			assertTrue(BatchScorer.INSTANCE.isVectorized(), "the Vector API kernel wasn't loaded");
+		}
+		int size = 4099;
+		long[] hands = new long[size];
+		int[] starters = new int[size];
+		int n = 0;
+		for (long hand = 0xF; hand < 1L << CardMask.DECK_SIZE; hand = nextHand(hand)) {
+			for (int starter = 0; starter < CardMask.DECK_SIZE; starter++) {
+				if ((hand >>> starter & 1) == 0) {
+					hands[n] = hand;
+					starters[n++] = starter;
+					if (n == size) {
+						checkBatch(hands, starters, n);
+						n = 0;
+						size = size == 4099 ? 4093 : 4099;
+					}
+				}
+			}
+		}
+		checkBatch(hands, starters, n);
+	}
+
+	/**
+	 * Sweeps random hands and cribs over random sets of starter cards and checks
+	 * that the totals and histograms of {@code BatchScorer}, which scores the
+	 * starters as arrays, match the default sweep of {@code BitmaskHand}
+	 */
+	@Test
+	void batchSweepsMatchDefaultSweeps() {
+		HandScorer bitmask = BitmaskHand::score;
+		SplittableRandom random = new SplittableRandom(22);
+		for (int i = 0; i < 20000; i++) {
+			long hand = CanonicalHandTest.randomCards(random, 4);
+			long starters = random.nextLong() & CardMask.DECK & ~hand;
+			for (BatchScorer scorer : new BatchScorer[] { BatchScorer.INSTANCE, BatchScorer.SCALAR }) {
+				int[] expected = new int[HandScorer.MAX_POINTS + 1];
+				int[] histogram = new int[HandScorer.MAX_POINTS + 1];
+				assertEquals(bitmask.sweep(hand, starters, expected), scorer.sweep(hand, starters, histogram));
+				assertArrayEquals(expected, histogram);
+
+				expected = new int[HandScorer.MAX_POINTS + 1];
+				histogram = new int[HandScorer.MAX_POINTS + 1];
+				assertEquals(bitmask.sweepCrib(hand, starters, expected), scorer.sweepCrib(hand, starters, histogram));
+				assertArrayEquals(expected, histogram);
+			}
+		}
+	}
+
+	/**
+	 * Scores the first hands of arrays as hands, bytes and cribs and compares
+	 * them with the scalar kernel
+	 *
+	 * @param hands    bitmasks of the hands
+	 * @param starters the starter card of each hand
+	 * @param n        the number of hands to score
+	 */
+	private static void checkBatch(long[] hands, int[] starters, int n) {
+		int[] points = new int[n];
+		byte[] bytes = new byte[n];
+		int[] cribs = new int[n];
+		BatchScorer.INSTANCE.scoreAll(hands, starters, points, 0, n);
+		BatchScorer.INSTANCE.scoreAll(hands, starters, bytes, 0, n);
+		BatchScorer.INSTANCE.scoreAllCribs(hands, starters, cribs, 0, n);
+		for (int i = 0; i < n; i++) {
+			int expected = BatchScorer.points(hands[i], starters[i], false);
+			if (points[i] != expected || bytes[i] != expected) {
+				assertEquals(expected, points[i], CardMask.cards(hands[i]) + " with " + Card.of(starters[i]));
+				assertEquals(expected, bytes[i], CardMask.cards(hands[i]) + " with " + Card.of(starters[i]));
+			}
+			int expectedCrib = BatchScorer.points(hands[i], starters[i], true);
+			if (cribs[i] != expectedCrib) {
+				assertEquals(expectedCrib, cribs[i], "crib " + CardMask.cards(hands[i]) + " with " + Card.of(starters[i]));
+			}
+		}
+	}
+
+	/**
+	 * Returns the next larger bitmask with the same number of cards
+	 *
+	 * @param hand a bitmask of cards
+	 * @return the next bitmask with as many cards
+	 */
+	private static long nextHand(long hand) {
+		long lowest = hand & -hand;
+		long carried = hand + lowest;
+		return carried | ((hand ^ carried) >>> 2) / lowest;
+	}
+
+}
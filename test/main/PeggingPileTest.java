@@ -0,0 +1,168 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the packed scoring of {@code PeggingPile} against rescanning the whole
+ * pile after each card
+ *
+ * @author Reid Moffat
+ */
+class PeggingPileTest {
+
+	/**
+	 * A run played out of order still scores once the ranks are consecutive
+	 */
+	@Test
+	void runOutOfOrder() {
+		assertEquals(List.of(0, 0, 3, 4), play(3, 5, 4, 2));
+		assertEquals(List.of(0, 0, 3, 4), play(9, 7, 8, 6));
+	}
+
+	/**
+	 * A pair in the middle of the pile breaks a run, until cards above it make
+	 * one on their own
+	 */
+	@Test
+	void runBrokenByPair() {
+		assertEquals(List.of(0, 0, 2, 0), play(3, 4, 4, 5));
+		assertEquals(List.of(0, 0, 2, 0, 3), play(3, 4, 4, 5, 6));
+	}
+
+	/**
+	 * Pairs, three and four of a kind score 2, 6 and 12 points
+	 */
+	@Test
+	void fourOfAKind() {
+		assertEquals(List.of(0, 2, 6, 12), play(2, 2, 2, 2));
+	}
+
+	/**
+	 * Fifteen and thirty-one score 2 points, and the count starts again after
+	 * thirty-one without any runs or pairs carrying over
+	 */
+	@Test
+	void thirtyOneResets() {
+		assertEquals(List.of(0, 2, 0, 2), play(10, 5, 6, 10));
+		long pile = PeggingPile.EMPTY;
+		for (int rank : new int[] { 10, 5, 6, 10 }) {
+			pile = PeggingPile.play(pile, rank);
+		}
+		assertEquals(PeggingPile.MAX_COUNT, PeggingPile.count(pile));
+
+		/* A reset pile doesn't pair with the ten played before the reset */
+		assertEquals(0, PeggingPile.points(PeggingPile.EMPTY, 10));
+	}
+
+	/**
+	 * Plays random cards from shuffled decks, starting again when no card can be
+	 * played or the count reaches 31, and checks every play's points and count
+	 * against a rescan of the pile. The scoring pile of each state must also
+	 * score every possible next card the same way
+	 */
+	@Test
+	void matchesRescanOfThePile() {
+		SplittableRandom random = new SplittableRandom(12);
+		for (int deal = 0; deal < 20000; deal++) {
+			int[] deck = shuffledRanks(random);
+			List<Integer> cards = new ArrayList<Integer>();
+			long pile = PeggingPile.EMPTY;
+			for (int rank : deck) {
+				if (!PeggingPile.canPlay(pile, rank)) {
+					cards.clear();
+					pile = PeggingPile.EMPTY;
+				}
+				cards.add(rank);
+				assertEquals(rescan(cards), PeggingPile.points(pile, rank), "points for " + cards);
+				pile = PeggingPile.play(pile, rank);
+				assertEquals(cards.stream().mapToInt(PeggingPile::value).sum(), PeggingPile.count(pile));
+				if (PeggingPile.count(pile) == PeggingPile.MAX_COUNT) {
+					cards.clear();
+					pile = PeggingPile.EMPTY;
+				}
+				long scoring = PeggingPile.scoringPile(pile);
+				for (int next = 1; next <= CardMask.SUIT_SIZE; next++) {
+					if (PeggingPile.canPlay(pile, next)) {
+						assertEquals(PeggingPile.points(pile, next), PeggingPile.points(scoring, next));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plays rank numbers on an empty pile
+	 *
+	 * @param ranks the rank numbers of the cards in order
+	 * @return the points of each play
+	 */
+	private static List<Integer> play(int... ranks) {
+		List<Integer> points = new ArrayList<Integer>();
+		long pile = PeggingPile.EMPTY;
+		for (int rank : ranks) {
+			points.add(PeggingPile.points(pile, rank));
+			pile = PeggingPile.play(pile, rank);
+		}
+		return points;
+	}
+
+	/**
+	 * Scores the last card of a pile by looking at the whole pile again
+	 *
+	 * @param cards the rank numbers of the pile, the last card on top
+	 * @return the points for playing the last card
+	 */
+	private static int rescan(List<Integer> cards) {
+		int count = cards.stream().mapToInt(PeggingPile::value).sum();
+		int points = count == 15 || count == PeggingPile.MAX_COUNT ? 2 : 0;
+
+		/* The cards at the top with the same rank as the last card */
+		int top = cards.get(cards.size() - 1);
+		int same = 0;
+		for (int i = cards.size() - 1; i >= 0 && cards.get(i) == top; i--) {
+			same++;
+		}
+		points += same * (same - 1);
+
+		/* The longest run of distinct consecutive ranks at the top */
+		for (int length = cards.size(); length >= 3; length--) {
+			List<Integer> last = new ArrayList<Integer>(cards.subList(cards.size() - length, cards.size()));
+			last.sort(null);
+			boolean run = true;
+			for (int i = 1; i < length; i++) {
+				run &= last.get(i) == last.get(i - 1) + 1;
+			}
+			if (run) {
+				return points + length;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the rank numbers of a shuffled deck
+	 *
+	 * @param random the random numbers
+	 * @return the 52 rank numbers in a random order
+	 */
+	private static int[] shuffledRanks(SplittableRandom random) {
+		int[] deck = new int[CardMask.DECK_SIZE];
+		for (int i = 0; i < deck.length; i++) {
+			deck[i] = i % CardMask.SUIT_SIZE + 1;
+		}
+		for (int i = deck.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = deck[i];
+			deck[i] = deck[j];
+			deck[j] = t;
+		}
+		return deck;
+	}
+
+}
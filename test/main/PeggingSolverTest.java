@@ -0,0 +1,39 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the transposition table of {@code PeggingSolver} doesn't change
+ * any values
+ *
+ * @author Reid Moffat
+ */
+class PeggingSolverTest {
+
+	/**
+	 * Solves random hands, as dealer and pone, with one solver that keeps its
+	 * table between hands and with a solver that searches every state again,
+	 * and checks that they give exactly the same values
+	 */
+	@Test
+	void transpositionTableMatchesUncachedSearch() {
+		PeggingSolver cached = new PeggingSolver();
+		PeggingSolver uncached = new PeggingSolver(false);
+		SplittableRandom random = new SplittableRandom(11);
+		for (int i = 0; i < 6; i++) {
+			long hand = CanonicalHandTest.randomCards(random, 4);
+			long dead;
+			do {
+				dead = CanonicalHandTest.randomCards(random, 2);
+			} while ((dead & hand) != 0);
+			for (boolean dealer : new boolean[] { true, false }) {
+				assertEquals(uncached.expectedPoints(hand, dead, dealer), cached.expectedPoints(hand, dead, dealer));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,552 @@
+package main;
+
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scores arrays of hands with the Vector API ({@code jdk.incubator.vector}),
+ * one hand per lane of the widest {@code long} vectors the CPU has
+ *
+ * <p>
+ * This is the kernel of {@code BatchScorer} with every step written as a
+ * lane-wise operation, so there are no table lookups or loops that depend on
+ * the cards:
+ * <ul>
+ * <li>fifteens: the packed subset-sum count of {@code BitmaskHand.fifteens},
+ * stepped once for each of the five cards by taking the lowest card left. A
+ * card of zero-based rank r multiplies the count by 1 + 16^value, and 16^value
+ * is 16 * (2^min(r, 9))^4</li>
+ * <li>multiples: the six intersections of the suit masks are packed into two
+ * longs and their bits are counted together</li>
+ * <li>runs: every three consecutive ranks in the hand start a window, and the
+ * windows together are the only stretch of three or more ranks five cards can
+ * have. The number of runs in it is found the same way as
+ * {@code BatchScorer}, counting the extra cards from the at most two cards
+ * outside the stretch</li>
+ * <li>flushes: whether the hand, and the hand with the starter, have cards in
+ * exactly one suit</li>
+ * <li>nobs: the hand's jacks are spread over their suits and masked with the
+ * starter card</li>
+ * </ul>
+ *
+ * <p>
+ * The JIT compiler only turns Vector API calls into vector instructions when
+ * it can inline all of them into one method, and it stops inlining in large
+ * methods. So each of these is a separate pass over the whole array, small
+ * enough to be compiled on its own, which adds its points to a {@code long}
+ * array of totals. The passes are called through an array of {@code Pass}
+ * objects, a call site with too many targets to inline, so they aren't
+ * inlined back into one large method when they are called often on short
+ * arrays (as a sweep over 13 starters does). The arrays are padded to a whole
+ * number of vectors
+ *
+ * <p>
+ * This class is compiled separately for Java 17 or later with
+ * {@code --add-modules jdk.incubator.vector}, and {@code BatchScorer} only
+ * uses it if it can be loaded (see {@code BatchScorer.INSTANCE}). Single hands
+ * are scored with the scalar kernel
+ *
+ * @author Reid Moffat
+ */
+final class VectorScorer implements HandScorer {
+
+	/**
+	 * The only instance of this scorer
+	 */
+	static final VectorScorer INSTANCE = new VectorScorer();
+
+	/**
+	 * The widest {@code long} vectors, with one hand in each lane
+	 */
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+	/**
+	 * A vector of 1s
+	 */
+	private static final LongVector ONE = LongVector.broadcast(LONGS, 1);
+
+	/**
+	 * A vector of 3s, the length of the stretch for its first window
+	 */
+	private static final LongVector THREE = LongVector.broadcast(LONGS, 3);
+
+	/**
+	 * A vector of 5s, the number of cards
+	 */
+	private static final LongVector FIVE = LongVector.broadcast(LONGS, 5);
+
+	/**
+	 * The rank mask of a ten, the lowest rank worth 10
+	 */
+	private static final LongVector TEN = LongVector.broadcast(LONGS, 1L << 9);
+
+	/**
+	 * The mask of the ranks of one suit
+	 */
+	private static final LongVector RANKS = LongVector.broadcast(LONGS, CardMask.SUIT_MASK);
+
+	/**
+	 * The first and third suits, which have a suit of space above each
+	 */
+	private static final LongVector EVEN_SUITS = LongVector.broadcast(LONGS,
+			CardMask.SUIT_MASK | (long) CardMask.SUIT_MASK << 2 * CardMask.SUIT_SIZE);
+
+	/**
+	 * The bits just above the first and third suits, which adding
+	 * {@code EVEN_SUITS} carries into if the suit has any cards
+	 */
+	private static final LongVector CARRIES = LongVector
+			.broadcast(LONGS, 1L << CardMask.SUIT_SIZE | 1L << 3 * CardMask.SUIT_SIZE);
+
+	/**
+	 * A rank mask with a bit in every suit (see {@code BatchScorer})
+	 */
+	private static final LongVector EVERY_SUIT = LongVector.broadcast(LONGS, 1L | 1L << CardMask.SUIT_SIZE
+			| 1L << 2 * CardMask.SUIT_SIZE | 1L << 3 * CardMask.SUIT_SIZE);
+
+	/**
+	 * The arrays of each thread that the passes read and write
+	 */
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(() -> new Scratch(0));
+
+	/**
+	 * The passes that score hands, in order
+	 */
+	private static final Pass[] HAND_PASSES = passes((s, end) -> flushes(s.hand, s.starter, s.total, end));
+
+	/**
+	 * The passes that score cribs, in order
+	 */
+	private static final Pass[] CRIB_PASSES = passes((s, end) -> cribFlushes(s.hand, s.starter, s.total, end));
+
+	/**
+	 * This class is only initialized once, as {@code INSTANCE}
+	 */
+	private VectorScorer() {
+	}
+
+	/**
+	 * Calculates the sum of point combinations for a four card hand and a starter
+	 * card with the scalar kernel
+	 *
+	 * @param hand    a bitmask of the four cards in the hand
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the hand with the given starter
+	 */
+	@Override
+	public int score(long hand, int starter) {
+		return BatchScorer.points(hand, starter, false);
+	}
+
+	/**
+	 * Calculates the sum of point combinations for a four card crib and a starter
+	 * card with the scalar kernel
+	 *
+	 * @param crib    a bitmask of the four cards in the crib
+	 * @param starter the index of the starter card
+	 * @return the total number of points in the crib with the given starter
+	 */
+	@Override
+	public int scoreCrib(long crib, int starter) {
+		return BatchScorer.points(crib, starter, true);
+	}
+
+	/**
+	 * Scores each hand with its starter card, a vector of hands at a time
+	 *
+	 * @param hands    bitmasks of the four cards in each hand
+	 * @param starters the index of each hand's starter card
+	 * @param points   the points of each hand are stored here
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 */
+	@Override
+	public void scoreAll(long[] hands, int[] starters, int[] points, int from, int to) {
+		long[] total = totals(hands, starters, from, to, false);
+		for (int i = from; i < to; i++) {
+			points[i] = (int) total[i - from];
+		}
+	}
+
+	/**
+	 * Scores each hand with its starter card into a byte array, a vector of hands
+	 * at a time
+	 *
+	 * @param hands    bitmasks of the four cards in each hand
+	 * @param starters the index of each hand's starter card
+	 * @param points   the points of each hand are stored here
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 */
+	@Override
+	public void scoreAll(long[] hands, int[] starters, byte[] points, int from, int to) {
+		long[] total = totals(hands, starters, from, to, false);
+		for (int i = from; i < to; i++) {
+			points[i] = (byte) total[i - from];
+		}
+	}
+
+	/**
+	 * Scores each crib with its starter card, a vector of cribs at a time
+	 *
+	 * @param cribs    bitmasks of the four cards in each crib
+	 * @param starters the index of each crib's starter card
+	 * @param points   the points of each crib are stored here
+	 * @param from     the first crib to score
+	 * @param to       the index after the last crib to score
+	 */
+	@Override
+	public void scoreAllCribs(long[] cribs, int[] starters, int[] points, int from, int to) {
+		long[] total = totals(cribs, starters, from, to, true);
+		for (int i = from; i < to; i++) {
+			points[i] = (int) total[i - from];
+		}
+	}
+
+	/**
+	 * Scores a range of hands or cribs with every pass of the kernel
+	 *
+	 * @param hands    bitmasks of the four cards in each hand or crib
+	 * @param starters the index of each starter card
+	 * @param from     the first hand to score
+	 * @param to       the index after the last hand to score
+	 * @param crib     true if the cards are cribs
+	 * @return the points of each hand from {@code from}, followed by the points
+	 *         of whatever hands pad the range to a whole number of vectors
+	 */
+	private static long[] totals(long[] hands, int[] starters, int from, int to, boolean crib) {
+		int length = LONGS.loopBound(to - from + LONGS.length() - 1);
+		Scratch scratch = SCRATCH.get();
+		if (scratch.total.length < length) {
+			scratch = new Scratch(length);
+			SCRATCH.set(scratch);
+		}
+		long[] hand = scratch.hand;
+		long[] starter = scratch.starter;
+		for (int i = from; i < to; i++) {
+			hand[i - from] = hands[i];
+			starter[i - from] = 1L << starters[i];
+		}
+
+		for (Pass pass : crib ? CRIB_PASSES : HAND_PASSES) {
+			pass.run(scratch, length);
+		}
+		return scratch.total;
+	}
+
+	/**
+	 * Lists the passes of the kernel
+	 *
+	 * @param flushes the pass that adds the points from flushes
+	 * @return every pass, in the order they are run
+	 */
+	private static Pass[] passes(Pass flushes) {
+		return new Pass[] { (s, end) -> subsets(s.hand, s.starter, s.total, end),
+				(s, end) -> fifteens(s.hand, s.total, end), (s, end) -> multiples(s.hand, s.starter, s.total, end),
+				(s, end) -> stretches(s.hand, s.starter, s.stretches, end),
+				(s, end) -> triples(s.hand, s.starter, s.stretches, end),
+				(s, end) -> runs(s.hand, s.starter, s.stretches, s.total, end), flushes,
+				(s, end) -> nobs(s.hand, s.starter, s.total, end) };
+	}
+
+	/**
+	 * Sets each total to the number of subsets of the starter and the two lowest
+	 * cards of the hand with each total value, 4 bits per total
+	 *
+	 * @param hand    bitmasks of the four cards in each hand
+	 * @param starter a bitmask of each starter card
+	 * @param total   the subsets of each hand are stored here
+	 * @param end     the index after the last hand, a whole number of vectors
+	 */
+	private static void subsets(long[] hand, long[] starter, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector rest = LongVector.fromArray(LONGS, hand, i);
+			LongVector ways = count(ONE, LongVector.fromArray(LONGS, starter, i));
+			ways = count(ways, rest.and(rest.neg()));
+			rest = rest.and(rest.sub(ONE));
+			count(ways, rest.and(rest.neg())).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Adds the two highest cards of each hand to its subsets, and replaces them
+	 * with the points from fifteens
+	 *
+	 * @param hand  bitmasks of the four cards in each hand
+	 * @param total the subsets of each hand (see {@code subsets})
+	 * @param end   the index after the last hand, a whole number of vectors
+	 */
+	private static void fifteens(long[] hand, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector rest = LongVector.fromArray(LONGS, hand, i);
+			rest = rest.and(rest.sub(ONE));
+			rest = rest.and(rest.sub(ONE));
+			LongVector ways = count(LongVector.fromArray(LONGS, total, i), rest.and(rest.neg()));
+			ways = count(ways, rest.and(rest.sub(ONE)));
+			ways.lanewise(LSHR, 60).lanewise(LSHL, 1).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Adds one card to the subsets counted for each total value
+	 *
+	 * @param ways the number of subsets with each total value, 4 bits per total
+	 * @param card a bitmask of the card
+	 * @return the number of subsets with each total value, with or without the
+	 *         card
+	 */
+	private static LongVector count(LongVector ways, LongVector card) {
+		/* Folds the suits onto the first one to give the card's rank mask */
+		LongVector folded = card.or(card.lanewise(LSHR, 2 * CardMask.SUIT_SIZE));
+		LongVector power = folded.or(folded.lanewise(LSHR, CardMask.SUIT_SIZE)).and(RANKS).min(TEN);
+		power = power.mul(power);
+		return ways.add(ways.mul(power.mul(power).lanewise(LSHL, 4)));
+	}
+
+	/**
+	 * Adds the points from multiples to each total
+	 *
+	 * @param hand    bitmasks of the four cards in each hand
+	 * @param starter a bitmask of each starter card
+	 * @param total   the points of each hand
+	 * @param end     the index after the last hand, a whole number of vectors
+	 */
+	private static void multiples(long[] hand, long[] starter, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector cards = LongVector.fromArray(LONGS, hand, i).or(LongVector.fromArray(LONGS, starter, i));
+			LongVector s0 = cards.and(RANKS);
+			LongVector s1 = cards.lanewise(LSHR, CardMask.SUIT_SIZE).and(RANKS);
+			LongVector s2 = cards.lanewise(LSHR, 2 * CardMask.SUIT_SIZE).and(RANKS);
+			LongVector s3 = cards.lanewise(LSHR, 3 * CardMask.SUIT_SIZE);
+			LongVector p = s0.and(s1).or(s0.and(s2).lanewise(LSHL, CardMask.SUIT_SIZE))
+					.or(s0.and(s3).lanewise(LSHL, 2 * CardMask.SUIT_SIZE))
+					.or(s1.and(s2).lanewise(LSHL, 3 * CardMask.SUIT_SIZE));
+			LongVector q = s1.and(s3).or(s2.and(s3).lanewise(LSHL, CardMask.SUIT_SIZE));
+
+			/* Counts the bits of both in pairs of bits, then nibbles, bytes and the whole long */
+			p = p.sub(p.lanewise(LSHR, 1).and(0x5555555555555555L));
+			q = q.sub(q.lanewise(LSHR, 1).and(0x5555555555555555L));
+			p = p.and(0x3333333333333333L).add(p.lanewise(LSHR, 2).and(0x3333333333333333L))
+					.add(q.and(0x3333333333333333L)).add(q.lanewise(LSHR, 2).and(0x3333333333333333L));
+			p = p.add(p.lanewise(LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+			LongVector pairs = p.mul(0x0101010101010101L).lanewise(LSHR, 56);
+			LongVector.fromArray(LONGS, total, i).add(pairs.lanewise(LSHL, 1)).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Finds the stretch of three or more ranks in each hand, and stores its mask
+	 * and its length shifted left by {@code SUIT_SIZE}
+	 *
+	 * @param hand      bitmasks of the four cards in each hand
+	 * @param starter   a bitmask of each starter card
+	 * @param stretches the stretch of each hand is stored here
+	 * @param end       the index after the last hand, a whole number of vectors
+	 */
+	private static void stretches(long[] hand, long[] starter, long[] stretches, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector cards = LongVector.fromArray(LONGS, hand, i).or(LongVector.fromArray(LONGS, starter, i));
+			LongVector s0 = cards.and(RANKS);
+			LongVector s1 = cards.lanewise(LSHR, CardMask.SUIT_SIZE).and(RANKS);
+			LongVector s2 = cards.lanewise(LSHR, 2 * CardMask.SUIT_SIZE).and(RANKS);
+			LongVector s3 = cards.lanewise(LSHR, 3 * CardMask.SUIT_SIZE);
+			LongVector ranks = s0.or(s1).or(s2).or(s3);
+			LongVector windows = ranks.and(ranks.lanewise(LSHR, 1)).and(ranks.lanewise(LSHR, 2));
+			LongVector stretch = windows.or(windows.lanewise(LSHL, 1)).or(windows.lanewise(LSHL, 2));
+
+			/* The windows are at most three consecutive ranks, one for each rank past the third */
+			LongVector length = nonZero(windows).mul(THREE).add(nonZero(windows.and(windows.lanewise(LSHR, 1))))
+					.add(nonZero(windows.and(windows.lanewise(LSHR, 2))));
+			stretch.or(length.lanewise(LSHL, CardMask.SUIT_SIZE)).intoArray(stretches, i);
+		}
+	}
+
+	/**
+	 * Sets the sign bit of each stretch if one of its ranks has three cards
+	 *
+	 * @param hand      bitmasks of the four cards in each hand
+	 * @param starter   a bitmask of each starter card
+	 * @param stretches the stretch of each hand (see {@code stretches})
+	 * @param end       the index after the last hand, a whole number of vectors
+	 */
+	private static void triples(long[] hand, long[] starter, long[] stretches, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector cards = LongVector.fromArray(LONGS, hand, i).or(LongVector.fromArray(LONGS, starter, i));
+			LongVector s0 = cards.and(RANKS);
+			LongVector s1 = cards.lanewise(LSHR, CardMask.SUIT_SIZE).and(RANKS);
+			LongVector s2 = cards.lanewise(LSHR, 2 * CardMask.SUIT_SIZE).and(RANKS);
+			LongVector s3 = cards.lanewise(LSHR, 3 * CardMask.SUIT_SIZE);
+			LongVector stretch = LongVector.fromArray(LONGS, stretches, i);
+			LongVector triples = s0.and(s1).and(s2.or(s3)).or(s2.and(s3).and(s0.or(s1))).and(stretch);
+			stretch.or(triples.neg().and(Long.MIN_VALUE)).intoArray(stretches, i);
+		}
+	}
+
+	/**
+	 * Adds the points from runs to each total
+	 *
+	 * @param hand      bitmasks of the four cards in each hand
+	 * @param starter   a bitmask of each starter card
+	 * @param stretches the stretch of each hand (see {@code stretches})
+	 * @param total     the points of each hand
+	 * @param end       the index after the last hand, a whole number of vectors
+	 */
+	private static void runs(long[] hand, long[] starter, long[] stretches, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector cards = LongVector.fromArray(LONGS, hand, i).or(LongVector.fromArray(LONGS, starter, i));
+			LongVector stretch = LongVector.fromArray(LONGS, stretches, i);
+			LongVector length = stretch.lanewise(LSHR, CardMask.SUIT_SIZE).and(7);
+
+			/* The cards that aren't extra cards in the stretch, at most two if there is a stretch */
+			LongVector ranks = stretch.and(RANKS);
+			ranks = ranks.or(ranks.lanewise(LSHL, CardMask.SUIT_SIZE));
+			LongVector outside = cards.and(ranks.or(ranks.lanewise(LSHL, 2 * CardMask.SUIT_SIZE)).not());
+			LongVector extra = FIVE.sub(length).sub(nonZero(outside)).sub(nonZero(outside.and(outside.sub(ONE))));
+			LongVector runs = length.mul(ONE.lanewise(LSHL, extra).sub(stretch.lanewise(LSHR, 63)));
+			LongVector.fromArray(LONGS, total, i).add(runs).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Adds the points from flushes in a hand to each total
+	 *
+	 * @param hand    bitmasks of the four cards in each hand
+	 * @param starter a bitmask of each starter card
+	 * @param total   the points of each hand
+	 * @param end     the index after the last hand, a whole number of vectors
+	 */
+	private static void flushes(long[] hand, long[] starter, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector cards = LongVector.fromArray(LONGS, hand, i);
+			LongVector handSuits = suits(cards);
+			LongVector suits = suits(cards.or(LongVector.fromArray(LONGS, starter, i)));
+			LongVector flushes = oneSuit(handSuits).lanewise(LSHL, 2).add(oneSuit(suits));
+			LongVector.fromArray(LONGS, total, i).add(flushes).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Adds the points from flushes in a crib to each total
+	 *
+	 * @param crib    bitmasks of the four cards in each crib
+	 * @param starter a bitmask of each starter card
+	 * @param total   the points of each crib
+	 * @param end     the index after the last hand, a whole number of vectors
+	 */
+	private static void cribFlushes(long[] crib, long[] starter, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			LongVector suits = suits(LongVector.fromArray(LONGS, crib, i).or(LongVector.fromArray(LONGS, starter, i)));
+			LongVector.fromArray(LONGS, total, i).add(oneSuit(suits).mul(FIVE)).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Adds the points from nobs to each total
+	 *
+	 * @param hand    bitmasks of the four cards in each hand
+	 * @param starter a bitmask of each starter card
+	 * @param total   the points of each hand
+	 * @param end     the index after the last hand, a whole number of vectors
+	 */
+	private static void nobs(long[] hand, long[] starter, long[] total, int end) {
+		for (int i = 0; i < end; i += LONGS.length()) {
+			/* Each jack becomes its whole suit, which has the starter if it's the same suit */
+			LongVector jacks = LongVector.fromArray(LONGS, hand, i).lanewise(LSHR, CardMask.JACK).and(EVERY_SUIT);
+			LongVector nobs = nonZero(
+					jacks.lanewise(LSHL, CardMask.SUIT_SIZE).sub(jacks).and(LongVector.fromArray(LONGS, starter, i)));
+			LongVector.fromArray(LONGS, total, i).add(nobs).intoArray(total, i);
+		}
+	}
+
+	/**
+	 * Returns a bit for each suit with cards, above the first and third suits for
+	 * the even and odd suits
+	 *
+	 * @param cards bitmasks of cards
+	 * @return a bit set for each suit with cards
+	 */
+	private static LongVector suits(LongVector cards) {
+		return cards.and(EVEN_SUITS).add(EVEN_SUITS).and(CARRIES)
+				.or(cards.lanewise(LSHR, CardMask.SUIT_SIZE).and(EVEN_SUITS).add(EVEN_SUITS).and(CARRIES)
+						.lanewise(LSHL, 1));
+	}
+
+	/**
+	 * Returns 1 if exactly one bit of a set of suits is set
+	 *
+	 * @param suits a non-empty set of suits (see {@code suits})
+	 * @return 1 if the cards are all one suit, 0 if not
+	 */
+	private static LongVector oneSuit(LongVector suits) {
+		return nonZero(suits.and(suits.sub(ONE))).lanewise(XOR, 1);
+	}
+
+	/**
+	 * Returns 1 for each lane that isn't zero
+	 *
+	 * @param x non-negative numbers
+	 * @return 1 if the number isn't zero, 0 if it is
+	 */
+	private static LongVector nonZero(LongVector x) {
+		return x.or(x.neg()).lanewise(LSHR, 63);
+	}
+
+	/**
+	 * One pass of the kernel over the whole of a thread's arrays
+	 */
+	@FunctionalInterface
+	private interface Pass {
+
+		/**
+		 * Runs the pass
+		 *
+		 * @param scratch the thread's arrays
+		 * @param end     the index after the last hand, a whole number of vectors
+		 */
+		void run(Scratch scratch, int end);
+	}
+
+	/**
+	 * The arrays that the passes read and write, with one element for each hand
+	 */
+	private static final class Scratch {
+
+		/**
+		 * Bitmasks of the four cards in each hand
+		 */
+		final long[] hand;
+
+		/**
+		 * A bitmask of each starter card
+		 */
+		final long[] starter;
+
+		/**
+		 * The points of each hand
+		 */
+		final long[] total;
+
+		/**
+		 * The stretch of each hand (see {@code stretches})
+		 */
+		final long[] stretches;
+
+		/**
+		 * Allocates the arrays
+		 *
+		 * @param length the number of hands the arrays can hold
+		 */
+		Scratch(int length) {
+			this.hand = new long[length];
+			this.starter = new long[length];
+			this.total = new long[length];
+			this.stretches = new long[length];
+		}
+
+	}
+
+}